@@ -0,0 +1,120 @@
+package com.squarespace.less;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.squarespace.less.exec.LessRenderer;
+import com.squarespace.less.model.Stylesheet;
+
+/**
+ * Measures each phase of compiling the test suite, end to end. Imports are
+ * served from memory, so no time is spent waiting on the disk. Run with
+ * {@code -prof gc} to report the allocation rate alongside the throughput.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompileBenchmark {
+
+  @Benchmark
+  public void parse(BenchmarkState state, Blackhole blackhole) throws LessException {
+    for (Path path : state.paths) {
+      blackhole.consume(state.compiler.parse(state.sources.get(path), state.context(), path.getParent(),
+          path.getFileName()));
+    }
+  }
+
+  @Benchmark
+  public void expand(BenchmarkState state, Blackhole blackhole) throws LessException {
+    for (Stylesheet sheet : state.parsed) {
+      blackhole.consume(state.compiler.expand(sheet.copy(), state.context()));
+    }
+  }
+
+  @Benchmark
+  public void render(BenchmarkState state, Blackhole blackhole) throws LessException {
+    for (Stylesheet sheet : state.expanded) {
+      blackhole.consume(LessRenderer.render(state.context(), sheet));
+    }
+  }
+
+  @Benchmark
+  public void compile(BenchmarkState state, Blackhole blackhole) throws LessException {
+    for (Path path : state.paths) {
+      blackhole.consume(state.compiler.compile(state.sources.get(path), state.context(), path.getParent(),
+          path.getFileName(), true));
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    final LessCompiler compiler = new LessCompiler();
+    final Map<Path, String> sources = new HashMap<>();
+    final List<Path> paths = new ArrayList<>();
+    final List<Stylesheet> parsed = new ArrayList<>();
+    final List<Stylesheet> expanded = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+      Path root = Paths.get("src/test/resources/test-suite/less").toAbsolutePath().normalize();
+      try (Stream<Path> files = Files.walk(root)) {
+        for (Path path : (Iterable<Path>) files.sorted()::iterator) {
+          if (path.toString().endsWith(".less")) {
+            sources.put(path, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+          }
+        }
+      }
+
+      // Benchmark the top-level stylesheets which compile, skipping those
+      // which exercise errors.
+      try (Stream<Path> files = Files.list(root)) {
+        for (Path path : (Iterable<Path>) files.sorted()::iterator) {
+          if (!path.toString().endsWith(".less")) {
+            continue;
+          }
+          try {
+            Stylesheet sheet = compiler.parse(sources.get(path), context(), path.getParent(), path.getFileName());
+            Stylesheet result = compiler.expand(sheet.copy(), context());
+            LessRenderer.render(context(), result);
+            paths.add(path);
+            parsed.add(sheet);
+            expanded.add(result);
+          } catch (LessException e) {
+            // Skip
+          }
+        }
+      }
+    }
+
+    LessContext context() {
+      LessContext ctx = new LessContext(new LessOptions(), new HashMapLessLoader(sources));
+      ctx.setCompiler(compiler);
+      return ctx;
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.squarespace.less.model.Stylesheet;
+
+/**
+ * Measures how the compiler scales with the size and shape of a stylesheet,
+ * using stylesheets made by {@link StylesheetGenerator}. Override a knob with
+ * {@code -p name=value,...} to sweep it, and run with {@code -prof gc} to report
+ * the allocation rate.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GeneratedStylesheetBenchmark {
+
+  @Benchmark
+  public void parse(BenchmarkState state, Blackhole blackhole) throws LessException {
+    blackhole.consume(state.compiler.parse(state.source, state.context(), state.dir, state.main));
+  }
+
+  @Benchmark
+  public void expand(BenchmarkState state, Blackhole blackhole) throws LessException {
+    blackhole.consume(state.compiler.expand(state.parsed.copy(), state.context()));
+  }
+
+  @Benchmark
+  public void compile(BenchmarkState state, Blackhole blackhole) throws LessException {
+    blackhole.consume(state.compiler.compile(state.source, state.context(), state.dir, state.main, true));
+  }
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    @Param({"100", "1000", "10000"})
+    int rulesets;
+
+    @Param({"2"})
+    int nestingDepth;
+
+    @Param({"20"})
+    int mixins;
+
+    @Param({"0.25"})
+    double guardDensity;
+
+    @Param({"4"})
+    int importFanout;
+
+    @Param({"50"})
+    int variables;
+
+    @Param({"2"})
+    int selectorWidth;
+
+    final LessCompiler compiler = new LessCompiler();
+    final Path dir = Paths.get("generated").toAbsolutePath();
+    final Path main = Paths.get(StylesheetGenerator.MAIN);
+    Map<Path, String> files;
+    String source;
+    Stylesheet parsed;
+
+    @Setup
+    public void setup() throws LessException {
+      StylesheetGenerator generator = new StylesheetGenerator(1);
+      generator.rulesets(rulesets);
+      generator.nestingDepth(nestingDepth);
+      generator.mixins(mixins);
+      generator.guardDensity(guardDensity);
+      generator.importFanout(importFanout);
+      generator.variables(variables);
+      generator.selectorWidth(selectorWidth);
+      files = generator.generate(dir);
+      source = files.get(dir.resolve(main));
+      parsed = compiler.parse(source, context(), dir, main);
+    }
+
+    LessContext context() {
+      LessContext ctx = new LessContext(new LessOptions(), new HashMapLessLoader(files));
+      ctx.setCompiler(compiler);
+      return ctx;
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates large synthetic stylesheets, with knobs for the features which
+ * drive the cost of a compile. The output depends only on the knobs and the seed.
+ *
+ * The main stylesheet imports the others, which hold the variables and mixins.
+ * Each top-level ruleset nests a chain of rulesets, and every ruleset calls a
+ * mixin and references variables.
+ */
+public class StylesheetGenerator {
+
+  public static final String MAIN = "main.less";
+
+  private static final String[] COLORS = {"#336699", "#aa3311", "#99cc00", "#777777"};
+
+  private final long seed;
+
+  private int rulesets = 100;
+
+  private int nestingDepth = 2;
+
+  private int mixins = 20;
+
+  private double guardDensity = 0.25;
+
+  private int importFanout = 4;
+
+  private int variables = 50;
+
+  private int selectorWidth = 2;
+
+  public StylesheetGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Number of top-level rulesets.
+   */
+  public void rulesets(int count) {
+    this.rulesets = count;
+  }
+
+  /**
+   * Number of rulesets nested within each top-level ruleset.
+   */
+  public void nestingDepth(int depth) {
+    this.nestingDepth = depth;
+  }
+
+  /**
+   * Number of distinct mixins defined and called.
+   */
+  public void mixins(int count) {
+    this.mixins = count;
+  }
+
+  /**
+   * Fraction of mixins defined as a pair of guarded mixins.
+   */
+  public void guardDensity(double density) {
+    this.guardDensity = density;
+  }
+
+  /**
+   * Number of stylesheets imported by the main stylesheet.
+   */
+  public void importFanout(int count) {
+    this.importFanout = count;
+  }
+
+  /**
+   * Number of variables defined. Most are defined in terms of another.
+   */
+  public void variables(int count) {
+    this.variables = count;
+  }
+
+  /**
+   * Number of selectors in each ruleset's selector list. Nested rulesets
+   * multiply the number of combined selectors.
+   */
+  public void selectorWidth(int width) {
+    this.selectorWidth = Math.max(1, width);
+  }
+
+  /**
+   * Returns the generated stylesheets keyed by their path in the directory,
+   * starting with the main stylesheet.
+   */
+  public Map<Path, String> generate(Path dir) {
+    Random random = new Random(seed);
+    StringBuilder main = new StringBuilder();
+    StringBuilder[] imports = new StringBuilder[importFanout];
+    for (int i = 0; i < importFanout; i++) {
+      imports[i] = new StringBuilder();
+      main.append("@import '").append(importName(i)).append("';\n");
+    }
+    for (int i = 0; i < variables; i++) {
+      variable(target(main, imports, i), i);
+    }
+    for (int i = 0; i < mixins; i++) {
+      mixin(target(main, imports, i), random, i, random.nextDouble() < guardDensity);
+    }
+    main.append('\n');
+    for (int i = 0; i < rulesets; i++) {
+      ruleset(main, random, "r" + i, nestingDepth, 0);
+    }
+
+    Map<Path, String> files = new LinkedHashMap<>();
+    files.put(dir.resolve(MAIN), main.toString());
+    for (int i = 0; i < importFanout; i++) {
+      files.put(dir.resolve(importName(i)), imports[i].toString());
+    }
+    return files;
+  }
+
+  private static StringBuilder target(StringBuilder main, StringBuilder[] imports, int index) {
+    return imports.length == 0 ? main : imports[index % imports.length];
+  }
+
+  private static String importName(int index) {
+    return "import-" + index + ".less";
+  }
+
+  /**
+   * Even variables hold sizes and odd ones colors. Each refers to the previous
+   * one of its kind, forming chains of up to 8 definitions.
+   */
+  private static void variable(StringBuilder buf, int index) {
+    buf.append("@v").append(index).append(": ");
+    boolean size = index % 2 == 0;
+    if (index % 16 < 2) {
+      buf.append(size ? (index / 16 + 1) + "px" : COLORS[(index / 16) % COLORS.length]);
+    } else if (size) {
+      buf.append("(@v").append(index - 2).append(" + 1px)");
+    } else {
+      buf.append("lighten(@v").append(index - 2).append(", 2%)");
+    }
+    buf.append(";\n");
+  }
+
+  private void mixin(StringBuilder buf, Random random, int index, boolean guarded) {
+    String name = ".mixin-" + index;
+    if (guarded) {
+      buf.append(name).append("(@a) when (@a > 5px) {\n");
+      buf.append("  width: (@a + ").append(size(random)).append(");\n");
+      buf.append("}\n");
+      buf.append(name).append("(@a) when (@a =< 5px) {\n");
+      buf.append("  height: (@a * 2);\n");
+      buf.append("  border-color: ").append(color(random)).append(";\n");
+      buf.append("}\n");
+    } else {
+      buf.append(name).append("(@a) {\n");
+      buf.append("  margin: @a ").append(size(random)).append(";\n");
+      buf.append("  background-color: darken(").append(color(random)).append(", 5%);\n");
+      buf.append("}\n");
+    }
+  }
+
+  private void ruleset(StringBuilder buf, Random random, String name, int depth, int indent) {
+    indent(buf, indent);
+    for (int i = 0; i < selectorWidth; i++) {
+      if (i > 0) {
+        buf.append(", ");
+      }
+      buf.append('.').append(name).append('-').append(i);
+    }
+    buf.append(" {\n");
+    indent(buf, indent + 1);
+    buf.append("color: ").append(color(random)).append(";\n");
+    indent(buf, indent + 1);
+    buf.append("padding: ").append(size(random)).append(' ').append(random.nextInt(10)).append("px;\n");
+    if (mixins > 0) {
+      indent(buf, indent + 1);
+      buf.append(".mixin-").append(random.nextInt(mixins)).append('(').append(random.nextInt(10) + 1).append("px);\n");
+    }
+    if (depth > 0) {
+      ruleset(buf, random, "n" + depth, depth - 1, indent + 1);
+    }
+    indent(buf, indent);
+    buf.append("}\n");
+  }
+
+  private String size(Random random) {
+    int count = (variables + 1) / 2;
+    return count == 0 ? "4px" : "@v" + (random.nextInt(count) * 2);
+  }
+
+  private String color(Random random) {
+    int count = variables / 2;
+    return count == 0 ? COLORS[0] : "@v" + (random.nextInt(count) * 2 + 1);
+  }
+
+  private static void indent(StringBuilder buf, int indent) {
+    for (int i = 0; i < indent; i++) {
+      buf.append("  ");
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+package com.squarespace.less.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecimalFormatterBenchmark {
+
+  @Benchmark
+  public void bigDecimal(BenchmarkState state, Blackhole blackhole) {
+    Buffer buf = state.buf;
+    buf.reset();
+    for (double value : state.values) {
+      DecimalFormatter.formatBigDecimal(buf, value, Buffer.DEFAULT_PRECISION);
+    }
+    blackhole.consume(buf.length());
+  }
+
+  @Benchmark
+  public void direct(BenchmarkState state, Blackhole blackhole) {
+    Buffer buf = state.buf;
+    buf.reset();
+    for (double value : state.values) {
+      DecimalFormatter.format(buf, value, Buffer.DEFAULT_PRECISION);
+    }
+    blackhole.consume(buf.length());
+  }
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    // Typical fractional dimensions, percentages and alpha channels.
+    final double[] values = new double[] {
+      1.5, 0.5, 0.25, 1.125, 0.875, 33.333333333333336, 66.66666666666667, 12.5, -0.5,
+      0.8, 0.15, 1.4285714285714286, 0.0625, 2.75, 16.666666666666668, 0.3, -1.25, 4.8
+    };
+
+    final Buffer buf = new Buffer(0);
+  }
+
+}
@@ -0,0 +1,77 @@
+package com.squarespace.less.exec;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.model.Stylesheet;
+
+/**
+ * Expands a ruleset holding many mixin calls, each of which resolves a
+ * variable defined in the ruleset after the earlier calls have been spliced in.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MixinExpansionBenchmark {
+
+  @Benchmark
+  public void expand(BenchmarkState state, Blackhole blackhole) throws LessException {
+    blackhole.consume(state.compiler.expand(state.parsed.copy(), state.context()));
+  }
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    @Param({"100", "1000"})
+    int calls;
+
+    @Param({"4"})
+    int definitions;
+
+    final LessCompiler compiler = new LessCompiler();
+    Stylesheet parsed;
+
+    @Setup
+    public void setup() throws LessException {
+      StringBuilder buf = new StringBuilder();
+      buf.append(".mixin(@i) {\n");
+      for (int i = 0; i < definitions; i++) {
+        buf.append("  @local-").append(i).append(": (@i * @base);\n");
+      }
+      buf.append("  width: @local-0;\n");
+      buf.append("}\n");
+      buf.append(".ruleset {\n");
+      buf.append("  @base: 2px;\n");
+      for (int i = 0; i < calls; i++) {
+        buf.append("  .mixin(").append(i).append(");\n");
+      }
+      buf.append("}\n");
+      parsed = compiler.parse(buf.toString(), context());
+    }
+
+    LessContext context() {
+      LessContext ctx = new LessContext(new LessOptions());
+      ctx.setCompiler(compiler);
+      return ctx;
+    }
+  }
+
+}
@@ -2,17 +2,26 @@ package com.squarespace.less.match;
 
 
 import static com.squarespace.less.match.Recognizers.characters;
+import static com.squarespace.less.match.Recognizers.compile;
 import static com.squarespace.less.match.Recognizers.decimal;
 import static com.squarespace.less.match.Recognizers.digits;
 import static com.squarespace.less.match.Recognizers.literal;
 import static com.squarespace.less.match.Recognizers.oneOrMore;
 import static com.squarespace.less.match.Recognizers.sequence;
 import static com.squarespace.less.match.Recognizers.units;
+import static com.squarespace.less.match.Recognizers.whitespace;
+import static com.squarespace.less.match.Recognizers.zeroOrMore;
 import static com.squarespace.less.match.Recognizers.zeroOrOne;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -21,6 +30,7 @@ import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
@@ -357,9 +367,73 @@ public class PatternBenchmark {
     blackhole.consume(state.matches(state.benchPercent.recognizer, PERCENT_FAIL, 3));
   }
 
+  @Benchmark
+  public void interpretedStylesheets(BenchmarkState state, Blackhole blackhole) {
+    blackhole.consume(state.scan(state.interpreted));
+  }
+
+  @Benchmark
+  public void compiledStylesheets(BenchmarkState state, Blackhole blackhole) {
+    blackhole.consume(state.scan(state.compiled));
+  }
+
   @State(Scope.Benchmark)
   public static class BenchmarkState {
 
+    // Combinator-built patterns, as constructed before being compiled in Patterns.
+    public final Recognizer[] interpreted = new Recognizer[] {
+        sequence(literal("alpha"), zeroOrMore(whitespace()), literal("(")),
+        Recognizers.attributeKey(),
+        Recognizers.callName(),
+        Recognizers.element0(),
+        Recognizers.element2(),
+        Recognizers.hexcolor(),
+        Recognizers.mixinName(),
+        sequence(digits(), literal("/"), digits()),
+        Recognizers.shorthand(),
+        Recognizers.unicode(),
+        sequence(literal("url", true), zeroOrMore(whitespace()), literal("(")),
+        Recognizers.word()
+    };
+
+    public final Recognizer[] compiled = new Recognizer[interpreted.length];
+
+    public String stylesheets;
+
+    @Setup
+    public void setup() throws IOException {
+      for (int i = 0; i < interpreted.length; i++) {
+        compiled[i] = compile(interpreted[i]);
+      }
+
+      StringBuilder buf = new StringBuilder();
+      try (Stream<Path> paths = Files.walk(Paths.get("src/test/resources/test-suite/less"))) {
+        for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+          if (path.toString().endsWith(".less")) {
+            buf.append(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+          }
+        }
+      }
+      stylesheets = buf.toString();
+    }
+
+    /**
+     * Attempts each pattern at every position of the stylesheets.
+     */
+    public int scan(Recognizer[] patterns) {
+      String str = stylesheets;
+      int len = str.length();
+      int matched = 0;
+      for (int pos = 0; pos < len; pos++) {
+        for (Recognizer pattern : patterns) {
+          if (pattern.match(str, pos, len) != Recognizers.FAIL) {
+            matched++;
+          }
+        }
+      }
+      return matched;
+    }
+
     public final BenchCase benchAlpha = benchCase(
         "alpha\\s*\\(",
         Patterns.ALPHA_START
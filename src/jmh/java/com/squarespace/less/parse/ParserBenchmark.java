@@ -0,0 +1,67 @@
+package com.squarespace.less.parse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+  @Benchmark
+  public void parseSuite(BenchmarkState state, Blackhole blackhole) {
+    for (String source : state.sources) {
+      try {
+        blackhole.consume(state.compiler.parse(source, new LessContext()));
+      } catch (LessException e) {
+        // Some suite files exercise parse errors.
+        blackhole.consume(e);
+      }
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    final LessCompiler compiler = new LessCompiler();
+    final List<String> sources = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+      Path root = Paths.get("src/test/resources/test-suite/less");
+      try (Stream<Path> paths = Files.walk(root)) {
+        for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+          if (path.toString().endsWith(".less")) {
+            sources.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,507 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.squarespace.less.core.LessInternalException;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.parse.LessImporter;
+
+
+/**
+ * Caches the CSS output of {@link LessCompiler} compiles.
+ *
+ * The key combines a hash of the source, the compile options, the root path and
+ * file name, and any variable overrides. Each entry records the content hash of
+ * every file imported during the compile and the candidate paths searched for
+ * imports which didn't exist. It is only used if all of those files still have
+ * the same content and none of the missing paths has been created, as checked
+ * with the loader of the compile requesting it.
+ *
+ * Entries are held in a size-bounded LRU map and optionally written to a local
+ * directory, so they survive restarts. When several threads request the same key
+ * at once only one compile runs and the others wait for its result.
+ *
+ * Compiles with variable overrides share a {@link Recompiler} for each parsed
+ * source, which re-evaluates only the parts depending on the changed values.
+ */
+public class CompileCache {
+
+  /**
+   * Default in-memory size limit of 64 MB.
+   */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * First line of each file in the disk tier.
+   */
+  private static final String DISK_HEADER = "less-compile-cache 2";
+
+  /**
+   * Approximate bytes retained for each recorded import.
+   */
+  private static final int BYTES_PER_IMPORT = 128;
+
+  /**
+   * Maximum number of parsed sources kept for compiles with overrides.
+   */
+  private static final int MAX_TEMPLATES = 64;
+
+  private final LessCompiler compiler;
+
+  private final long maxBytes;
+
+  private final Path diskPath;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+
+  private final LinkedHashMap<String, Template> templates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+      return size() > MAX_TEMPLATES;
+    }
+  };
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder diskHits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  private long bytes;
+
+  public CompileCache(LessCompiler compiler) {
+    this(compiler, DEFAULT_MAX_BYTES, null);
+  }
+
+  /**
+   * Constructs a cache holding up to {@code maxBytes} of output in memory. If
+   * {@code diskPath} is not null, entries are also stored in that directory.
+   */
+  public CompileCache(LessCompiler compiler, long maxBytes, Path diskPath) {
+    this.compiler = compiler;
+    this.maxBytes = maxBytes;
+    this.diskPath = diskPath;
+  }
+
+  public String compile(String raw, LessContext ctx) throws LessException {
+    return compile(raw, ctx, null, null, true, null);
+  }
+
+  public String compile(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode)
+      throws LessException {
+    return compile(raw, ctx, rootPath, fileName, safeMode, null);
+  }
+
+  /**
+   * Compiles the source with the given variable overrides, which may be null,
+   * returning the cached output if available.
+   */
+  public String compile(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode,
+      Map<String, Node> overrides) throws LessException {
+
+    String key = key(raw, ctx.options(), rootPath, fileName, safeMode, overrides);
+    LessLoader loader = ctx.importer().loader();
+    Entry entry = get(key);
+    if (entry != null && entry.valid(loader)) {
+      hits.increment();
+      return entry.css;
+    }
+
+    // Only one thread compiles each key; the others wait for its result.
+    CompletableFuture<Entry> future = new CompletableFuture<>();
+    CompletableFuture<Entry> existing = inflight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+
+      // The compile may have used another loader, so check its imports against ours.
+      entry = awaitQuietly(existing);
+      if (entry != null && entry.valid(loader)) {
+        return entry.css;
+      }
+      misses.increment();
+      return compile(raw, ctx, rootPath, fileName, safeMode, overrides, loader).css;
+    }
+
+    try {
+      // An identical compile may have completed since we checked.
+      entry = get(key);
+      if (entry != null && entry.valid(loader)) {
+        hits.increment();
+        future.complete(entry);
+        return entry.css;
+      }
+
+      entry = read(key);
+      if (entry != null && entry.valid(loader)) {
+        diskHits.increment();
+      } else {
+        misses.increment();
+        entry = compile(raw, ctx, rootPath, fileName, safeMode, overrides, loader);
+        if (entry.dependencies != null) {
+          write(key, entry);
+        }
+      }
+      if (entry.dependencies != null) {
+        put(key, entry);
+      }
+      future.complete(entry);
+      return entry.css;
+
+    } catch (LessException | RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+
+    } finally {
+      inflight.remove(key, future);
+    }
+  }
+
+  /**
+   * Number of compiles answered from memory.
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * Number of compiles answered from the disk tier.
+   */
+  public long diskHits() {
+    return diskHits.sum();
+  }
+
+  /**
+   * Number of compiles which were executed.
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * Number of compiles which waited for an identical compile already in progress.
+   */
+  public long coalesced() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Number of entries held in memory.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all entries held in memory.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+    synchronized (templates) {
+      templates.clear();
+    }
+  }
+
+  private Entry compile(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode,
+      Map<String, Node> overrides, LessLoader loader) throws LessException {
+    if (overrides == null || overrides.isEmpty()) {
+      String css = compiler.compile(raw, ctx, rootPath, fileName, safeMode);
+      return new Entry(css, Dependencies.of(ctx.importer()));
+    }
+
+    String key = key(raw, ctx.options(), rootPath, fileName, safeMode, null);
+    Template template = null;
+    synchronized (templates) {
+      template = templates.get(key);
+    }
+    if (template == null || !template.dependencies.valid(loader)) {
+      Stylesheet sheet = compiler.parse(raw, ctx, rootPath, fileName, safeMode);
+      template = new Template(compiler.recompiler(sheet), Dependencies.of(ctx.importer()));
+      if (template.dependencies != null) {
+        synchronized (templates) {
+          templates.put(key, template);
+        }
+      }
+    }
+    return new Entry(template.recompiler.compile(overrides, ctx), template.dependencies);
+  }
+
+  private static Entry await(CompletableFuture<Entry> future) throws LessException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LessInternalException("Interrupted waiting for compile", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof LessException) {
+        throw (LessException)cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw new LessInternalException("Compile failed", cause);
+    }
+  }
+
+  /**
+   * Waits for a compile in progress, returning null if it failed. The failure
+   * may be specific to the other compile's loader.
+   */
+  private static Entry awaitQuietly(CompletableFuture<Entry> future) {
+    try {
+      return await(future);
+    } catch (LessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Builds the hashed cache key.
+   */
+  private static String key(String raw, LessOptions opts, Path rootPath, Path fileName, boolean safeMode,
+      Map<String, Node> overrides) {
+    StringBuilder buf = new StringBuilder();
+    buf.append(LessUtils.contentHash(raw));
+    buf.append('\n').append(opts.fingerprint());
+    buf.append('\n').append(safeMode ? 'S' : '-');
+    buf.append('\n').append(rootPath == null ? "" : rootPath.toAbsolutePath().normalize());
+    buf.append('\n').append(fileName == null ? "" : fileName);
+    if (overrides != null) {
+      for (Map.Entry<String, Node> override : new TreeMap<>(overrides).entrySet()) {
+        buf.append('\n').append(override.getKey()).append(": ").append(override.getValue().repr());
+      }
+    }
+    return LessUtils.contentHash(buf.toString());
+  }
+
+  private synchronized Entry get(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    long size = entry.estimateBytes();
+    if (size > maxBytes) {
+      return;
+    }
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      bytes -= previous.estimateBytes();
+    }
+    bytes += size;
+
+    // Evict least-recently used entries until we're within the limit.
+    Iterator<Entry> iter = entries.values().iterator();
+    while (bytes > maxBytes && iter.hasNext()) {
+      Entry eldest = iter.next();
+      iter.remove();
+      bytes -= eldest.estimateBytes();
+    }
+  }
+
+  /**
+   * Reads an entry from the disk tier. Any failure is treated as a miss.
+   */
+  private Entry read(String key) {
+    if (diskPath == null) {
+      return null;
+    }
+    Path path = diskPath.resolve(key);
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try {
+      String data = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+      int pos = data.indexOf('\n');
+      if (pos < 0 || !data.substring(0, pos).equals(DISK_HEADER)) {
+        return null;
+      }
+      int end = data.indexOf('\n', pos + 1);
+      int count = Integer.parseInt(data.substring(pos + 1, end));
+      Map<Path, String> imports = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        pos = end + 1;
+        end = data.indexOf('\n', pos);
+        String line = data.substring(pos, end);
+        int sep = line.indexOf(' ');
+        imports.put(Paths.get(line.substring(sep + 1)), line.substring(0, sep));
+      }
+      pos = end + 1;
+      end = data.indexOf('\n', pos);
+      count = Integer.parseInt(data.substring(pos, end));
+      Set<Path> missing = new HashSet<>();
+      for (int i = 0; i < count; i++) {
+        pos = end + 1;
+        end = data.indexOf('\n', pos);
+        missing.add(Paths.get(data.substring(pos, end)));
+      }
+      return new Entry(data.substring(end + 1), new Dependencies(imports, missing));
+
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes an entry to the disk tier, replacing the file atomically. Failures are ignored.
+   */
+  private void write(String key, Entry entry) {
+    if (diskPath == null) {
+      return;
+    }
+    StringBuilder buf = new StringBuilder();
+    buf.append(DISK_HEADER).append('\n');
+    Dependencies dependencies = entry.dependencies;
+    buf.append(dependencies.imports.size()).append('\n');
+    for (Map.Entry<Path, String> dependency : dependencies.imports.entrySet()) {
+      buf.append(dependency.getValue()).append(' ').append(dependency.getKey()).append('\n');
+    }
+    buf.append(dependencies.missing.size()).append('\n');
+    for (Path path : dependencies.missing) {
+      buf.append(path).append('\n');
+    }
+    buf.append(entry.css);
+    try {
+      Files.createDirectories(diskPath);
+      Path temp = Files.createTempFile(diskPath, key, ".tmp");
+      Files.write(temp, buf.toString().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, diskPath.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Disk tier is best-effort.
+    }
+  }
+
+  /**
+   * Compiled output and the files it depends on.
+   */
+  private static class Entry {
+
+    private final String css;
+
+    /**
+     * Files the output depends on, or null if the imports can't be verified
+     * and the output must not be cached.
+     */
+    private final Dependencies dependencies;
+
+    Entry(String css, Dependencies dependencies) {
+      this.css = css;
+      this.dependencies = dependencies;
+    }
+
+    boolean valid(LessLoader loader) {
+      return dependencies != null && dependencies.valid(loader);
+    }
+
+    long estimateBytes() {
+      return css.length() * 2L + dependencies.size() * BYTES_PER_IMPORT;
+    }
+  }
+
+  /**
+   * Parsed source shared by compiles with different overrides.
+   */
+  private static class Template {
+
+    private final Recompiler recompiler;
+
+    private final Dependencies dependencies;
+
+    Template(Recompiler recompiler, Dependencies dependencies) {
+      this.recompiler = recompiler;
+      this.dependencies = dependencies;
+    }
+  }
+
+  /**
+   * Content hash of each file imported by a compile, and the candidate paths
+   * searched for its imports which didn't exist.
+   */
+  private static class Dependencies {
+
+    private final Map<Path, String> imports;
+
+    private final Set<Path> missing;
+
+    Dependencies(Map<Path, String> imports, Set<Path> missing) {
+      this.imports = Collections.unmodifiableMap(imports);
+      this.missing = Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * Returns the importer's dependencies, or null if any import was
+     * satisfied by a stylesheet whose source is unknown.
+     */
+    static Dependencies of(LessImporter importer) {
+      Map<Path, String> imports = importer.importHashes();
+      return imports == null ? null : new Dependencies(imports, importer.missingPaths());
+    }
+
+    /**
+     * Indicates whether every imported file still has the same content, and
+     * none of the missing paths exists.
+     */
+    boolean valid(LessLoader loader) {
+      for (Path path : missing) {
+        if (loader.exists(path)) {
+          return false;
+        }
+      }
+      for (Map.Entry<Path, String> dependency : imports.entrySet()) {
+        Path path = dependency.getKey();
+        try {
+          CharSequence source = loader.tryLoad(path);
+          if (source == null || !LessUtils.contentHash(source).equals(dependency.getValue())) {
+            return false;
+          }
+        } catch (LessException e) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    int size() {
+      return imports.size() + missing.size();
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import com.squarespace.less.exec.Function;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Import;
+import com.squarespace.less.model.MixinCall;
+import com.squarespace.less.model.Node;
+
+
+/**
+ * Receives callbacks during a compile, to trace or profile where time is spent.
+ * Register one using {@link LessContext#setListener(CompileListener)}. When
+ * none is registered the compiler only checks for null.
+ *
+ * Times are from {@link System#nanoTime()}. Each end callback receives the
+ * time passed to its start callback, and the start and end callbacks nest
+ * within one another, forming a call tree. Structural nodes carry the file
+ * name and line offset where they were defined. Function calls carry no
+ * position, but are nested within the definition, mixin or block containing
+ * them.
+ *
+ * Callbacks are made on the compiling thread, and must not modify the nodes.
+ * Imports parsed ahead of time by a prefetch executor are not reported.
+ */
+public interface CompileListener {
+
+  /**
+   * An import is about to be resolved, loaded and parsed.
+   */
+  default void importStart(Import node, long started) {
+  }
+
+  /**
+   * An import is complete.
+   */
+  default void importEnd(Import node, long started, long ended) {
+  }
+
+  /**
+   * A mixin call is about to be resolved and executed.
+   */
+  default void mixinCallStart(MixinCall call, long started) {
+  }
+
+  /**
+   * A mixin call is complete, having expanded into the given number of rules.
+   * The resolution and execution of each match are nested within the call.
+   */
+  default void mixinCallEnd(MixinCall call, int rules, long started, long ended) {
+  }
+
+  /**
+   * The mixins and rulesets matching the call were found.
+   */
+  default void mixinResolved(MixinCall call, int matches, long started, long ended) {
+  }
+
+  /**
+   * A mixin or ruleset matched by the call is about to be executed.
+   */
+  default void mixinStart(MixinCall call, Node mixin, long started) {
+  }
+
+  /**
+   * Execution of a mixin or ruleset matched by the call is complete.
+   */
+  default void mixinEnd(MixinCall call, Node mixin, long started, long ended) {
+  }
+
+  /**
+   * A built-in function is about to be invoked.
+   */
+  default void functionStart(FunctionCall call, Function function, long started) {
+  }
+
+  /**
+   * A built-in function invocation is complete.
+   */
+  default void functionEnd(FunctionCall call, Function function, long started, long ended) {
+  }
+
+  /**
+   * A variable definition's value is about to be evaluated.
+   */
+  default void definitionStart(Definition definition, long started) {
+  }
+
+  /**
+   * Evaluation of a variable definition's value is complete.
+   */
+  default void definitionEnd(Definition definition, long started, long ended) {
+  }
+
+  /**
+   * A top-level ruleset, media block or block directive is about to be rendered.
+   */
+  default void renderStart(BlockNode node, long started) {
+  }
+
+  /**
+   * Rendering of a top-level block is complete.
+   */
+  default void renderEnd(BlockNode node, long started, long ended) {
+  }
+
+}
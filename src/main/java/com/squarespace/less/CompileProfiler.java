@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.squarespace.less.exec.Function;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.MixinCall;
+
+
+/**
+ * Profiles the evaluation of a stylesheet, collecting the time spent in each
+ * mixin call site and each built-in function. Register one on the context of
+ * the compile to profile. Unlike tracing, the output is unchanged.
+ *
+ * An instance records the calls made on one thread. To profile several
+ * compiles in parallel, give each its own instance and {@link #merge} them.
+ */
+public class CompileProfiler implements CompileListener {
+
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  private final Map<String, long[]> stacks = new HashMap<>();
+
+  private final Deque<Frame> frames = new ArrayDeque<>();
+
+  @Override
+  public void mixinCallStart(MixinCall call, long started) {
+    push(mixinName(call), started);
+  }
+
+  @Override
+  public void mixinCallEnd(MixinCall call, int rules, long started, long ended) {
+    pop(ended).rules += rules;
+  }
+
+  @Override
+  public void functionStart(FunctionCall call, Function function, long started) {
+    push(call.name() + "()", started);
+  }
+
+  @Override
+  public void functionEnd(FunctionCall call, Function function, long started, long ended) {
+    pop(ended);
+  }
+
+  /**
+   * Adds the results of another profiler to this one.
+   */
+  public synchronized void merge(CompileProfiler other) {
+    for (Entry entry : other.entries.values()) {
+      entry(entry.name).add(entry);
+    }
+    for (Map.Entry<String, long[]> stack : other.stacks.entrySet()) {
+      stacks.computeIfAbsent(stack.getKey(), k -> new long[1])[0] += stack.getValue()[0];
+    }
+  }
+
+  /**
+   * Returns a copy of the entries, sorted by decreasing self time.
+   */
+  public synchronized List<Entry> entries() {
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      Entry copy = new Entry(entry.name);
+      copy.add(entry);
+      result.add(copy);
+    }
+    result.sort((a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+    return result;
+  }
+
+  /**
+   * Returns the self time of each distinct stack of calls in the collapsed
+   * format read by flame graph tools: one line per stack, listing the frames
+   * from the outermost separated by semicolons, then the time in nanoseconds.
+   */
+  public synchronized String collapsedStacks() {
+    StringBuilder buf = new StringBuilder();
+    for (Map.Entry<String, long[]> stack : new TreeMap<>(stacks).entrySet()) {
+      buf.append(stack.getKey()).append(' ').append(stack.getValue()[0]).append('\n');
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Returns a report of the entries having the most self time.
+   */
+  public String report(int limit) {
+    List<Entry> entries = entries();
+    StringBuilder buf = new StringBuilder();
+    buf.append(String.format("%10s %10s %9s %9s  %s\n", "self ms", "total ms", "calls", "rules", "name"));
+    int size = Math.min(limit, entries.size());
+    for (int i = 0; i < size; i++) {
+      Entry entry = entries.get(i);
+      buf.append(String.format("%10.3f %10.3f %9d %9d  %s\n",
+          entry.selfNanos / 1000000.0, entry.totalNanos / 1000000.0, entry.calls, entry.rules, entry.name));
+    }
+    if (entries.size() > size) {
+      buf.append("... ").append(entries.size() - size).append(" more\n");
+    }
+    return buf.toString();
+  }
+
+  private void push(String name, long started) {
+    Entry entry = entry(name);
+    entry.active++;
+    Frame parent = frames.peek();
+    String stack = parent == null ? name : parent.stack + ';' + name;
+    frames.push(new Frame(entry, stack, started));
+  }
+
+  private Entry pop(long ended) {
+    Frame frame = frames.pop();
+    Entry entry = frame.entry;
+    long total = ended - frame.started;
+    long self = total - frame.children;
+    entry.calls++;
+    entry.selfNanos += self;
+
+    // Count the time of recursive calls once, in the outermost call.
+    entry.active--;
+    if (entry.active == 0) {
+      entry.totalNanos += total;
+    }
+    Frame parent = frames.peek();
+    if (parent != null) {
+      parent.children += total;
+    }
+    stacks.computeIfAbsent(frame.stack, k -> new long[1])[0] += self;
+    return entry;
+  }
+
+  private Entry entry(String name) {
+    return entries.computeIfAbsent(name, Entry::new);
+  }
+
+  private static String mixinName(MixinCall call) {
+    StringBuilder buf = new StringBuilder();
+    List<String> path = call.path();
+    for (int i = 0; i < path.size(); i++) {
+      if (i > 0) {
+        buf.append(" > ");
+      }
+      buf.append(path.get(i).replace(';', ','));
+    }
+    Path fileName = call.fileName();
+    buf.append(' ').append(fileName == null ? "" : fileName.getFileName().toString());
+    buf.append(':').append(call.lineOffset() + 1);
+    return buf.toString();
+  }
+
+  /**
+   * Accumulated costs of a mixin call site, or of a built-in function.
+   */
+  public static class Entry {
+
+    private final String name;
+
+    private int calls;
+
+    private int rules;
+
+    private long selfNanos;
+
+    private long totalNanos;
+
+    private int active;
+
+    Entry(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Name of the function, or the mixin call's selector and position.
+     */
+    public String name() {
+      return name;
+    }
+
+    public int calls() {
+      return calls;
+    }
+
+    /**
+     * Number of rules produced by the mixin calls.
+     */
+    public int rules() {
+      return rules;
+    }
+
+    /**
+     * Time spent in the calls, excluding nested calls.
+     */
+    public long selfNanos() {
+      return selfNanos;
+    }
+
+    /**
+     * Time spent in the calls, including nested calls.
+     */
+    public long totalNanos() {
+      return totalNanos;
+    }
+
+    private void add(Entry other) {
+      calls += other.calls;
+      rules += other.rules;
+      selfNanos += other.selfNanos;
+      totalNanos += other.totalNanos;
+    }
+
+  }
+
+  private static class Frame {
+
+    private final Entry entry;
+
+    private final String stack;
+
+    private final long started;
+
+    private long children;
+
+    Frame(Entry entry, String stack, long started) {
+      this.entry = entry;
+      this.stack = stack;
+      this.started = started;
+    }
+
+  }
+
+}
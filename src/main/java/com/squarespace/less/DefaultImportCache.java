@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.squarespace.less.exec.ImportRecord;
+
+
+/**
+ * Thread-safe {@link ImportCache} bounded by the estimated size of the
+ * parsed stylesheets it holds.
+ *
+ * Entries are spread over a fixed number of segments, each of which is an
+ * access-ordered LRU map with an equal share of the size budget. This keeps
+ * lock contention low when many compiles run concurrently.
+ */
+public class DefaultImportCache implements ImportCache {
+
+  /**
+   * Default size limit of 256 MB.
+   */
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  /**
+   * Approximate number of bytes of parse tree produced per character of source.
+   */
+  private static final int ESTIMATED_BYTES_PER_CHAR = 24;
+
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  public DefaultImportCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  public DefaultImportCache(long maxBytes) {
+    long segmentBytes = Math.max(1, maxBytes / SEGMENTS);
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(segmentBytes);
+    }
+  }
+
+  /**
+   * Estimates the number of bytes retained by the record's parse tree.
+   */
+  public static long estimateBytes(ImportRecord record) {
+    return (long) record.size() * ESTIMATED_BYTES_PER_CHAR;
+  }
+
+  @Override
+  public ImportRecord get(Path path, String contentHash, String optionsKey) {
+    Key key = new Key(path, contentHash, optionsKey);
+    ImportRecord record = segment(key).get(key);
+    if (record == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return record;
+  }
+
+  @Override
+  public void put(String optionsKey, ImportRecord record) {
+    if (record.contentHash() == null) {
+      return;
+    }
+    Key key = new Key(record.exactPath(), record.contentHash(), optionsKey);
+    segment(key).put(key, record);
+  }
+
+  @Override
+  public void invalidate(Path path) {
+    for (Segment segment : segments) {
+      segment.invalidate(path);
+    }
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public ImportCacheStats stats() {
+    int entries = 0;
+    long bytes = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        entries += segment.entries.size();
+        bytes += segment.bytes;
+      }
+    }
+    return new ImportCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries, bytes);
+  }
+
+  private Segment segment(Key key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[(hash & 0x7fffffff) % SEGMENTS];
+  }
+
+  /**
+   * Indicates whether the record or any of its dependencies was loaded from the
+   * path, or found the path missing when resolving an import.
+   */
+  private static boolean dependsOn(ImportRecord record, Path path) {
+    if (record.exactPath().equals(path) || record.missing().contains(path)) {
+      return true;
+    }
+    List<ImportRecord> dependencies = record.dependencies();
+    int size = dependencies.size();
+    for (int i = 0; i < size; i++) {
+      if (dependsOn(dependencies.get(i), path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Access-ordered map holding a portion of the cache's entries.
+   */
+  private class Segment {
+
+    private final LinkedHashMap<Key, ImportRecord> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxBytes;
+
+    private long bytes;
+
+    Segment(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized ImportRecord get(Key key) {
+      return entries.get(key);
+    }
+
+    synchronized void put(Key key, ImportRecord record) {
+      long size = estimateBytes(record);
+      if (size > maxBytes) {
+        return;
+      }
+      ImportRecord previous = entries.put(key, record);
+      if (previous != null) {
+        bytes -= estimateBytes(previous);
+      }
+      bytes += size;
+
+      // Evict least-recently used entries until we're within the limit.
+      Iterator<ImportRecord> iter = entries.values().iterator();
+      while (bytes > maxBytes && iter.hasNext()) {
+        ImportRecord eldest = iter.next();
+        iter.remove();
+        bytes -= estimateBytes(eldest);
+        evictions.increment();
+      }
+    }
+
+    synchronized void invalidate(Path path) {
+      Iterator<ImportRecord> iter = entries.values().iterator();
+      while (iter.hasNext()) {
+        ImportRecord record = iter.next();
+        if (dependsOn(record, path)) {
+          iter.remove();
+          bytes -= estimateBytes(record);
+        }
+      }
+    }
+
+    synchronized void clear() {
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  /**
+   * Identifies a parsed file by path, content and the options used to parse it.
+   */
+  private static class Key {
+
+    private final Path path;
+
+    private final String contentHash;
+
+    private final String optionsKey;
+
+    private final int hashCode;
+
+    Key(Path path, String contentHash, String optionsKey) {
+      this.path = path;
+      this.contentHash = contentHash;
+      this.optionsKey = optionsKey;
+      this.hashCode = (path.hashCode() * 31 + contentHash.hashCode()) * 31 + optionsKey.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Key) {
+        Key other = (Key)obj;
+        return path.equals(other.path)
+            && contentHash.equals(other.contentHash)
+            && optionsKey.equals(other.optionsKey);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
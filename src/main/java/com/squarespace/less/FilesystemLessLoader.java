@@ -19,44 +19,96 @@ package com.squarespace.less;
 import static com.squarespace.less.core.SyntaxErrorMaker.importError;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.squarespace.less.core.Constants;
-import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.core.MappedSource;
 
 
 /**
  * Loads the raw data for a given path from the filesystem.
+ *
+ * Files are opened once to both check that they exist and read them. Large
+ * files are memory-mapped, see {@link MappedSource}.
  */
 public class FilesystemLessLoader implements LessLoader {
 
+  /**
+   * Paths found not to exist, if caching of failed lookups is enabled.
+   */
+  private final Set<Path> missing;
+
+  public FilesystemLessLoader() {
+    this(false);
+  }
+
+  /**
+   * When cacheMissing is true, paths found not to exist are remembered for the
+   * life of the loader, so a loader shared across compiles doesn't look for the
+   * same missing file again. Use {@link #clearMissing()} when files are added.
+   */
+  public FilesystemLessLoader(boolean cacheMissing) {
+    this.missing = cacheMissing ? ConcurrentHashMap.newKeySet() : null;
+  }
+
+  /**
+   * Forget the paths found not to exist.
+   */
+  public void clearMissing() {
+    if (missing != null) {
+      missing.clear();
+    }
+  }
+
   @Override
   public boolean exists(Path path) {
-    return Files.exists(path);
+    if (missing != null && missing.contains(path)) {
+      return false;
+    }
+    if (Files.exists(path)) {
+      return true;
+    }
+    markMissing(path);
+    return false;
   }
 
   @Override
   public String load(Path path) throws LessException {
-    return readFile(path);
+    try {
+      return MappedSource.read(path);
+
+    } catch (NoSuchFileException e) {
+      throw new LessException(importError(path, "File cannot be found"));
+
+    } catch (IOException e) {
+      throw new LessException(importError(path, e.getMessage()));
+    }
   }
 
-  private String readFile(Path path) throws LessException {
-    try (InputStream input = Files.newInputStream(path)) {
-      try (Reader reader = new InputStreamReader(input, Constants.UTF8)) {
-        return LessUtils.readToString(reader);
-      }
+  @Override
+  public CharSequence tryLoad(Path path) throws LessException {
+    if (missing != null && missing.contains(path)) {
+      return null;
+    }
+    try {
+      return MappedSource.load(path);
 
     } catch (NoSuchFileException e) {
-      throw new LessException(importError(path, "File cannot be found"));
+      markMissing(path);
+      return null;
 
     } catch (IOException e) {
       throw new LessException(importError(path, e.getMessage()));
     }
   }
 
+  private void markMissing(Path path) {
+    if (missing != null) {
+      missing.add(path);
+    }
+  }
+
 }
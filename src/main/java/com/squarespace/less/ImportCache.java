@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+
+import com.squarespace.less.exec.ImportRecord;
+
+
+/**
+ * Cache of parsed imports which can be shared by many {@link LessContext}
+ * instances, possibly across threads. Implementations must be thread-safe.
+ *
+ * Entries are keyed by the normalized path of the imported file, the hash of
+ * its content, and a fingerprint of the options which affect how its nested
+ * imports were resolved.
+ */
+public interface ImportCache {
+
+  /**
+   * Returns the record for the given file and content hash, or null if no
+   * matching entry exists.
+   */
+  ImportRecord get(Path path, String contentHash, String optionsKey);
+
+  /**
+   * Adds the record to the cache.
+   */
+  void put(String optionsKey, ImportRecord record);
+
+  /**
+   * Removes all entries for the given path, and all entries which imported it
+   * or would have imported it had it existed.
+   */
+  void invalidate(Path path);
+
+  /**
+   * Removes all entries.
+   */
+  void clear();
+
+  /**
+   * Returns a snapshot of the cache's statistics.
+   */
+  ImportCacheStats stats();
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+
+/**
+ * Snapshot of the statistics for an {@link ImportCache}.
+ */
+public class ImportCacheStats {
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evictions;
+
+  private final int entries;
+
+  private final long estimatedBytes;
+
+  public ImportCacheStats(long hits, long misses, long evictions, int entries, long estimatedBytes) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.entries = entries;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /** Number of lookups which found an entry with matching path, content and options */
+  public long hits() {
+    return hits;
+  }
+
+  /** Number of lookups which found no matching entry */
+  public long misses() {
+    return misses;
+  }
+
+  /** Number of entries removed to stay within the size limit */
+  public long evictions() {
+    return evictions;
+  }
+
+  /** Number of entries currently held */
+  public int entries() {
+    return entries;
+  }
+
+  /** Estimated size of all entries currently held, in bytes */
+  public long estimatedBytes() {
+    return estimatedBytes;
+  }
+
+  /** Ratio of hits to total lookups */
+  public double hitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0.0 : hits / (double) total;
+  }
+
+  @Override
+  public String toString() {
+    return "ImportCacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+        + ", entries=" + entries + ", estimatedBytes=" + estimatedBytes + "}";
+  }
+
+}
@@ -16,7 +16,6 @@
 
 package com.squarespace.less;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,20 +43,37 @@ public class JailedFilesystemLessLoader extends FilesystemLessLoader {
   private final Path jailRoot;
 
   public JailedFilesystemLessLoader(Path jailRoot) {
+    this(jailRoot, false);
+  }
+
+  public JailedFilesystemLessLoader(Path jailRoot, boolean cacheMissing) {
+    super(cacheMissing);
     this.jailRoot = jailRoot.toAbsolutePath().normalize();
   }
 
   @Override
   public boolean exists(Path path) {
+    Path tempPath = jailed(path);
+    return tempPath != null && super.exists(tempPath);
+  }
+
+  @Override
+  public CharSequence tryLoad(Path path) throws LessException {
+    Path tempPath = jailed(path);
+    return tempPath == null ? null : super.tryLoad(tempPath);
+  }
+
+  /**
+   * Resolves the path against the root, returning null if the path falls outside
+   * the root or doesn't have a legal extension.
+   */
+  private Path jailed(Path path) {
     Matcher matcher = ACCEPT_IMPORT.matcher(path.getFileName().toString());
     if (!matcher.matches()) {
-      return false;
+      return null;
     }
     Path tempPath = jailRoot.resolve(path).toAbsolutePath().normalize();
-    if (!tempPath.startsWith(jailRoot)) {
-      return false;
-    }
-    return Files.exists(tempPath);
+    return tempPath.startsWith(jailRoot) ? tempPath : null;
   }
 
 }
@@ -21,6 +21,7 @@ import java.nio.file.Path;
 import com.squarespace.less.exec.FunctionTable;
 import com.squarespace.less.exec.LessEvaluator;
 import com.squarespace.less.exec.LessRenderer;
+import com.squarespace.less.jfr.LessParseEvent;
 import com.squarespace.less.model.Stylesheet;
 import com.squarespace.less.parse.LessParser;
 import com.squarespace.less.parse.LessSyntax;
@@ -72,64 +73,133 @@ public class LessCompiler {
   /**
    * Parse the source into a stylesheet, putting the parser into safe mode by default.
    */
-  public Stylesheet parse(String raw, LessContext ctx) throws LessException {
+  public Stylesheet parse(CharSequence raw, LessContext ctx) throws LessException {
     return parse(raw, ctx, null, null, true);
   }
 
+  public Stylesheet parse(String raw, LessContext ctx) throws LessException {
+    return parse((CharSequence) raw, ctx);
+  }
+
   /**
    * Parse the source into a stylesheet, setting the parser's safe mode flag.
    */
-  public Stylesheet parse(String raw, LessContext ctx, boolean safeMode) throws LessException {
+  public Stylesheet parse(CharSequence raw, LessContext ctx, boolean safeMode) throws LessException {
     return parse(raw, ctx, null, null, safeMode);
   }
 
+  public Stylesheet parse(String raw, LessContext ctx, boolean safeMode) throws LessException {
+    return parse((CharSequence) raw, ctx, safeMode);
+  }
+
   /**
    * Parse the source into a stylesheet, putting the parser into safe mode by default.
    */
-  public Stylesheet parse(String raw, LessContext ctx, Path rootPath, Path fileName) throws LessException {
+  public Stylesheet parse(CharSequence raw, LessContext ctx, Path rootPath, Path fileName) throws LessException {
     return parse(raw, ctx, rootPath, fileName, true);
   }
 
-  public Stylesheet parse(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode) throws LessException {
+  public Stylesheet parse(String raw, LessContext ctx, Path rootPath, Path fileName) throws LessException {
+    return parse((CharSequence) raw, ctx, rootPath, fileName);
+  }
+
+  public Stylesheet parse(CharSequence raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode) throws LessException {
     LessStats stats = ctx.stats();
     long started = stats.now();
+    if (ctx.prefetchExecutor() != null && ctx.importDepth() == 0) {
+      ctx.importer().prefetch(raw, rootPath, ctx.prefetchExecutor());
+    }
     LessParser parser = new LessParser(ctx, raw, rootPath, fileName);
     parser.safeMode(safeMode);
+    int rollbacks = stats.rollbacks();
+    LessParseEvent event = new LessParseEvent();
+    event.begin();
     Stylesheet sheet = null;
     try {
       sheet = (Stylesheet) parser.parse(LessSyntax.STYLESHEET);
     } finally {
-      stats.parseDone(raw.length(), started);
+      if (ctx.importDepth() == 0) {
+        stats.parseDone(raw.length(), started);
+      } else {
+        stats.importParseDone(raw.length());
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.path = fileName == null ? null : fileName.toString();
+        event.size = raw.length();
+        event.importDepth = ctx.importDepth();
+        event.rollbacks = stats.rollbacks() - rollbacks;
+        event.commit();
+      }
     }
     return sheet;
   }
 
+  public Stylesheet parse(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode)
+      throws LessException {
+    return parse((CharSequence) raw, ctx, rootPath, fileName, safeMode);
+  }
+
   public String render(Stylesheet stylesheet, LessContext ctx) throws LessException {
-    LessEvaluator engine = new LessEvaluator(ctx);
-    Stylesheet expanded = engine.evaluate(stylesheet);
-    return LessRenderer.render(ctx, expanded);
+    Stylesheet expanded = expand(stylesheet, ctx);
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    try {
+      return LessRenderer.render(ctx, expanded);
+    } finally {
+      stats.renderDone(started);
+    }
+  }
+
+  /**
+   * Returns a {@link Recompiler} which renders the parsed stylesheet with top-level
+   * variable overrides, re-evaluating only the parts which depend on changed values.
+   */
+  public Recompiler recompiler(Stylesheet stylesheet) {
+    return new Recompiler(stylesheet);
   }
 
   public Stylesheet expand(Stylesheet stylesheet, LessContext ctx) throws LessException {
-    LessEvaluator engine = new LessEvaluator(ctx);
-    return engine.evaluate(stylesheet);
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    try {
+      LessEvaluator engine = new LessEvaluator(ctx);
+      return engine.evaluate(stylesheet);
+    } finally {
+      stats.evalDone(started);
+    }
   }
 
-  public String compile(String raw, LessContext ctx) throws LessException {
+  public String compile(CharSequence raw, LessContext ctx) throws LessException {
     return compile(raw, ctx, null, null, true);
   }
 
-  public String compile(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode) throws LessException {
-    Stylesheet sheet = parse(raw, ctx, rootPath, fileName, safeMode);
+  public String compile(String raw, LessContext ctx) throws LessException {
+    return compile((CharSequence) raw, ctx);
+  }
+
+  public String compile(CharSequence raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode) throws LessException {
     LessStats stats = ctx.stats();
-    long started = stats.now();
-    String result = "";
+    long allocated = stats.threadAllocatedBytes();
     try {
-      result = render(sheet, ctx);
+      Stylesheet sheet = parse(raw, ctx, rootPath, fileName, safeMode);
+      long started = stats.now();
+      String result = "";
+      try {
+        result = render(sheet, ctx);
+      } finally {
+        stats.compileDone(started);
+      }
+      return result;
+
     } finally {
-      stats.compileDone(started);
+      stats.allocationDone(allocated);
     }
-    return result;
+  }
+
+  public String compile(String raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode)
+      throws LessException {
+    return compile((CharSequence) raw, ctx, rootPath, fileName, safeMode);
   }
 
   /**
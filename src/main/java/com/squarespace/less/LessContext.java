@@ -18,6 +18,7 @@ package com.squarespace.less;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.exec.BufferStack;
@@ -63,6 +64,10 @@ public class LessContext {
 
   private NodeBuilder nodeBuilder = DEFAULT_NODE_BUILDER;
 
+  private Executor prefetchExecutor;
+
+  private CompileListener listener;
+
   private int importDepth;
 
   private int mixinDepth;
@@ -80,8 +85,16 @@ public class LessContext {
   }
 
   public LessContext(LessOptions opts, LessLoader loader, Map<Path, Stylesheet> preCache) {
+    this(opts, loader, preCache, null);
+  }
+
+  /**
+   * Constructs a context whose imports are looked up in, and added to, the
+   * given {@link ImportCache}, which can be shared among many contexts.
+   */
+  public LessContext(LessOptions opts, LessLoader loader, Map<Path, Stylesheet> preCache, ImportCache importCache) {
     this.opts = opts;
-    this.importer = new LessImporter(this, loader, preCache);
+    this.importer = new LessImporter(this, loader, preCache, importCache);
   }
 
   public LessOptions options() {
@@ -96,6 +109,37 @@ public class LessContext {
     this.nodeBuilder = builder;
   }
 
+  /**
+   * Returns the executor used to prefetch imports, or null if prefetching is disabled.
+   */
+  public Executor prefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  /**
+   * Enables prefetching of imports. Before a top-level stylesheet is parsed its
+   * import graph will be loaded and parsed concurrently using this executor.
+   * The compiling thread runs any prefetch work still queued while it waits, so
+   * the executor may be the same one the compiles run on.
+   */
+  public void setPrefetchExecutor(Executor executor) {
+    this.prefetchExecutor = executor;
+  }
+
+  /**
+   * Returns the listener receiving compile callbacks, or null if none is set.
+   */
+  public CompileListener listener() {
+    return listener;
+  }
+
+  /**
+   * Sets the listener to receive callbacks during compiles using this context.
+   */
+  public void setListener(CompileListener listener) {
+    this.listener = listener;
+  }
+
   public MixinResolver mixinResolver() {
     return mixinResolver;
   }
@@ -173,6 +217,7 @@ public class LessContext {
   public void enterMixin() {
     this.mixinDepth++;
     stats.mixinDepth(this.mixinDepth);
+    stats.mixinCall();
   }
 
   public void exitMixin() {
@@ -34,4 +34,12 @@ public interface LessLoader {
    */
   String load(Path path) throws LessException;
 
+  /**
+   * Load the target file, returning null if it doesn't exist. Loaders which can
+   * check and read a file in a single attempt should override this.
+   */
+  default CharSequence tryLoad(Path path) throws LessException {
+    return exists(path) ? load(path) : null;
+  }
+
 }
@@ -62,8 +62,11 @@ public class LessMessages {
     buf.append("Squarespace LESS compiler ").append(LESSJS_VERSION).append(" Statistics for '");
     buf.append(path.toString()).append("':\n");
     buf.append("    parse time: ").append(formatMs(stats.parseTimeMs())).append('\n');
-    buf.append("  compile time: ").append(formatMs(stats.compileTimeMs())).append('\n');
+    buf.append("   import time: ").append(formatMs(stats.importTimeMs())).append('\n');
     buf.append("disk wait time: ").append(formatMs(stats.diskWaitTimeMs())).append('\n');
+    buf.append("     eval time: ").append(formatMs(stats.evalTimeMs())).append('\n');
+    buf.append("   render time: ").append(formatMs(stats.renderTimeMs())).append('\n');
+    buf.append("  compile time: ").append(formatMs(stats.compileTimeMs())).append('\n');
     buf.append("  import count: ").append(stats.importCount()).append('\n');
     buf.append("---------------------------------------------------------- */\n");
     return buf;
@@ -171,6 +171,23 @@ public class LessOptions {
     set(flag, Option.TRACING);
   }
 
+  /**
+   * Returns a string identifying this combination of options, for use in cache keys.
+   */
+  public String fingerprint() {
+    StringBuilder buf = new StringBuilder();
+    for (Option opt : Option.values()) {
+      buf.append(flags.contains(opt) ? '1' : '0');
+    }
+    buf.append(':').append(indent);
+    buf.append(':').append(mixinRecursionLimit);
+    buf.append(':').append(importRecursionLimit);
+    for (Path importPath : importPaths) {
+      buf.append(':').append(importPath.toAbsolutePath().normalize());
+    }
+    return buf.toString();
+  }
+
   private void set(boolean flag, Option opt) {
     if (flag) {
       flags.add(opt);
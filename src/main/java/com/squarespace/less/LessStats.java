@@ -16,20 +16,34 @@
 
 package com.squarespace.less;
 
+import java.lang.management.ManagementFactory;
+
 
 /**
  * Collects timing and stats for one execution of the LESS compiler.
+ *
+ * Parse time includes the time spent importing, which includes the time spent
+ * waiting for disk I/O. Evaluation and rendering time are disjoint, and together
+ * make up the compile time.
  */
 public class LessStats {
 
   private static final double FACTOR = 1000000.0;
 
+  private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
   private double parseTimeMs;
 
-  private double compileTimeMs;
+  private double importTimeMs;
 
   private double diskWaitTimeMs;
 
+  private double evalTimeMs;
+
+  private double renderTimeMs;
+
+  private double compileTimeMs;
+
   private int importCount;
 
   private int fileReads;
@@ -40,14 +54,26 @@ public class LessStats {
 
   private int maxMixinDepth;
 
+  private int mixinCalls;
+
+  private int functionCalls;
+
+  private int variableLookups;
+
+  private int rollbacks;
+
+  private int selectorCombinations;
+
+  private long allocatedBytes;
+
   /** Time spent parsing (including imports) */
   public double parseTimeMs() {
     return parseTimeMs;
   }
 
-  /** Time spent compiling (including imports) */
-  public double compileTimeMs() {
-    return compileTimeMs;
+  /** Time spent resolving, loading and parsing imports */
+  public double importTimeMs() {
+    return importTimeMs;
   }
 
   /** Time spent waiting for disk I/O of imported files */
@@ -55,6 +81,21 @@ public class LessStats {
     return diskWaitTimeMs;
   }
 
+  /** Time spent evaluating */
+  public double evalTimeMs() {
+    return evalTimeMs;
+  }
+
+  /** Time spent rendering */
+  public double renderTimeMs() {
+    return renderTimeMs;
+  }
+
+  /** Time spent compiling (including imports) */
+  public double compileTimeMs() {
+    return compileTimeMs;
+  }
+
   /** Number of imports, including cached references */
   public int importCount() {
     return importCount;
@@ -80,11 +121,49 @@ public class LessStats {
     return maxMixinDepth;
   }
 
+  /** Number of mixins and rulesets expanded by mixin calls */
+  public int mixinCalls() {
+    return mixinCalls;
+  }
+
+  /** Number of built-in function invocations */
+  public int functionCalls() {
+    return functionCalls;
+  }
+
+  /** Number of variable definitions looked up */
+  public int variableLookups() {
+    return variableLookups;
+  }
+
+  /** Number of times the parser backtracked */
+  public int rollbacks() {
+    return rollbacks;
+  }
+
+  /** Number of selectors produced by combining nested rulesets' selectors */
+  public int selectorCombinations() {
+    return selectorCombinations;
+  }
+
+  /** Bytes allocated by the compiling thread, or 0 if the JVM can't measure it */
+  public long allocatedBytes() {
+    return allocatedBytes;
+  }
+
   /** Time in nanoseconds */
   public long now() {
     return System.nanoTime();
   }
 
+  /** Bytes allocated so far by the current thread, or 0 if the JVM can't measure it */
+  public long threadAllocatedBytes() {
+    if (THREADS == null) {
+      return 0;
+    }
+    return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
   /** Sets maximum import depth reached for this compile */
   public void importDepth(int depth) {
     this.maxImportDepth = Math.max(this.maxImportDepth, depth);
@@ -97,9 +176,33 @@ public class LessStats {
 
   /** Indicate that a parse operation is complete. */
   public void parseDone(int size, long started) {
+    totalSize += size;
     parseTimeMs += deltaMs(started);
   }
 
+  /**
+   * Indicate that the parse of an imported file is complete. Its time is
+   * included in the parse of the importing file.
+   */
+  public void importParseDone(int size) {
+    totalSize += size;
+  }
+
+  /** Indicate that resolving, loading and parsing a top-level import is complete. */
+  public void importTimeDone(long started) {
+    importTimeMs += deltaMs(started);
+  }
+
+  /** Indicate that evaluation is complete. */
+  public void evalDone(long started) {
+    evalTimeMs += deltaMs(started);
+  }
+
+  /** Indicate that rendering is complete. */
+  public void renderDone(long started) {
+    renderTimeMs += deltaMs(started);
+  }
+
   /** Indicate that a compile operation is complete. */
   public void compileDone(long started) {
     compileTimeMs += deltaMs(started);
@@ -110,6 +213,14 @@ public class LessStats {
     diskWaitTimeMs += deltaMs(started);
   }
 
+  /**
+   * Indicate that the current thread has finished allocating for this compile,
+   * given the value of {@link #threadAllocatedBytes()} when it started.
+   */
+  public void allocationDone(long startedBytes) {
+    allocatedBytes += threadAllocatedBytes() - startedBytes;
+  }
+
   /**
    * Indicate that an import is complete, with a flag to indicate whether
    * the tree was cached or not.
@@ -121,8 +232,48 @@ public class LessStats {
     }
   }
 
+  /** Count a mixin or ruleset expanded by a mixin call */
+  public void mixinCall() {
+    mixinCalls++;
+  }
+
+  /** Count a built-in function invocation */
+  public void functionCall() {
+    functionCalls++;
+  }
+
+  /** Count a variable definition lookup */
+  public void variableLookup() {
+    variableLookups++;
+  }
+
+  /** Count a parser rollback */
+  public void rollback() {
+    rollbacks++;
+  }
+
+  /** Count the selectors produced by combining a ruleset's selectors with its ancestors' */
+  public void selectorsCombined(int count) {
+    selectorCombinations += count;
+  }
+
   private double deltaMs(long started) {
     return (now() - started) / FACTOR;
   }
 
+  private static com.sun.management.ThreadMXBean threadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+          return threads;
+        }
+      }
+    } catch (LinkageError | SecurityException e) {
+      // Management extensions are unavailable.
+    }
+    return null;
+  }
+
 }
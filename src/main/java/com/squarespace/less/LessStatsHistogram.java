@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+
+/**
+ * Accumulates the stats of many compiles into base-2 logarithmic histograms of
+ * each phase's time, in microseconds, and of the bytes allocated, in kilobytes.
+ * Safe for use by multiple threads.
+ */
+public class LessStatsHistogram {
+
+  private final Log2IntegerHistogram parse = new Log2IntegerHistogram();
+
+  private final Log2IntegerHistogram imports = new Log2IntegerHistogram();
+
+  private final Log2IntegerHistogram diskWait = new Log2IntegerHistogram();
+
+  private final Log2IntegerHistogram eval = new Log2IntegerHistogram();
+
+  private final Log2IntegerHistogram render = new Log2IntegerHistogram();
+
+  private final Log2IntegerHistogram allocated = new Log2IntegerHistogram();
+
+  /**
+   * Adds the stats of one compile.
+   */
+  public synchronized void add(LessStats stats) {
+    parse.add(micros(stats.parseTimeMs()));
+    imports.add(micros(stats.importTimeMs()));
+    diskWait.add(micros(stats.diskWaitTimeMs()));
+    eval.add(micros(stats.evalTimeMs()));
+    render.add(micros(stats.renderTimeMs()));
+    allocated.add((int) Math.min(Integer.MAX_VALUE, stats.allocatedBytes() / 1024));
+  }
+
+  public synchronized void reset() {
+    parse.reset();
+    imports.reset();
+    diskWait.reset();
+    eval.reset();
+    render.reset();
+    allocated.reset();
+  }
+
+  /**
+   * Returns one line per histogram, listing the counts in each bucket as
+   * formatted by {@link Log2IntegerHistogram#toString()}.
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuilder buf = new StringBuilder();
+    buf.append("    parse us: ").append(parse).append('\n');
+    buf.append("   import us: ").append(imports).append('\n');
+    buf.append("disk wait us: ").append(diskWait).append('\n');
+    buf.append("     eval us: ").append(eval).append('\n');
+    buf.append("   render us: ").append(render).append('\n');
+    buf.append("allocated KB: ").append(allocated).append('\n');
+    return buf.toString();
+  }
+
+  private static int micros(double ms) {
+    return (int) Math.min(Integer.MAX_VALUE, ms * 1000.0);
+  }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.exec.IncrementalEvaluator;
+import com.squarespace.less.exec.IncrementalEvaluator.Snapshot;
+import com.squarespace.less.exec.LessRenderer;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Compiles a parsed stylesheet repeatedly with different values for a set of
+ * top-level variables, e.g. per-site design settings applied to a shared template.
+ *
+ * Each override is added as a top-level definition, taking precedence over any
+ * definition of the same name in the stylesheet. The first compile evaluates the
+ * whole stylesheet, recording which definitions each top-level rule, ruleset,
+ * media block and mixin call depends on. Later compiles evaluate and render only
+ * the top-level nodes that depend on an override whose value changed.
+ *
+ * Instances are thread-safe; compiles are serialized.
+ */
+public class Recompiler {
+
+  private final Stylesheet stylesheet;
+
+  /**
+   * Rendered output of each top-level block in the last evaluated stylesheet.
+   */
+  private final Map<Node, String> fragments = new IdentityHashMap<>();
+
+  private Snapshot snapshot;
+
+  public Recompiler(Stylesheet stylesheet) {
+    this.stylesheet = stylesheet;
+  }
+
+  /**
+   * Compiles the stylesheet with the given variable overrides, keyed by name including
+   * the '@' prefix.
+   */
+  public synchronized String compile(Map<String, Node> overrides, LessContext ctx) throws LessException {
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    long allocated = stats.threadAllocatedBytes();
+    try {
+      IncrementalEvaluator engine = new IncrementalEvaluator(ctx);
+      Snapshot result = engine.evaluate(stylesheet, overrides, snapshot);
+      Stylesheet sheet = result.result();
+      stats.evalDone(started);
+      long rendering = stats.now();
+      if (ctx.options().tracing()) {
+        fragments.clear();
+        snapshot = result;
+        String output = LessRenderer.render(ctx, sheet);
+        stats.renderDone(rendering);
+        return output;
+      }
+
+      String output = LessRenderer.render(ctx, sheet, fragments);
+      stats.renderDone(rendering);
+      Set<Node> current = Collections.newSetFromMap(new IdentityHashMap<>());
+      FlexList<Node> rules = sheet.block().rules();
+      for (int i = 0; i < rules.size(); i++) {
+        current.add(rules.get(i));
+      }
+      fragments.keySet().retainAll(current);
+      snapshot = result;
+      return output;
+
+    } finally {
+      stats.compileDone(started);
+      stats.allocationDone(allocated);
+    }
+  }
+
+  /**
+   * Returns the number of top-level nodes evaluated by the last compile.
+   */
+  public synchronized int lastEvaluated() {
+    return snapshot == null ? 0 : snapshot.evaluated();
+  }
+
+}
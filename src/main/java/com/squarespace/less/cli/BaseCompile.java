@@ -16,15 +16,19 @@
 
 package com.squarespace.less.cli;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
+import com.squarespace.less.CompileProfiler;
 import com.squarespace.less.LessCompiler;
 import com.squarespace.less.LessStats;
 import com.squarespace.less.cli.LessC.Args;
 import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.LessUtils;
 import com.squarespace.less.jsonast.AstEmitter;
 import com.squarespace.less.jsonast.AstPrinter;
 import com.squarespace.less.model.Stylesheet;
@@ -41,6 +45,8 @@ abstract class BaseCompile {
 
   protected static final long MEGABYTE = 1024 * 1024;
 
+  protected static final int PROFILE_LIMIT = 25;
+
   protected final LessCompiler compiler = new LessCompiler();
 
   protected final Args args;
@@ -87,15 +93,39 @@ abstract class BaseCompile {
     nl();
     log(" Statistics:");
     log("      parse time: " + stats.parseTimeMs() + "ms");
-    log("    compile time: " + stats.compileTimeMs() + "ms");
+    log("     import time: " + stats.importTimeMs() + "ms");
     log("  disk wait time: " + stats.diskWaitTimeMs() + "ms");
+    log("       eval time: " + stats.evalTimeMs() + "ms");
+    log("     render time: " + stats.renderTimeMs() + "ms");
+    log("    compile time: " + stats.compileTimeMs() + "ms");
     log("      total size: " + stats.totalSize());
     log("    import count: " + stats.importCount());
     log("max import depth: " + stats.maxImportDepth());
     log(" max mixin depth: " + stats.maxMixinDepth());
+    log("     mixin calls: " + stats.mixinCalls());
+    log("  function calls: " + stats.functionCalls());
+    log("variable lookups: " + stats.variableLookups());
+    log("       rollbacks: " + stats.rollbacks());
+    log(" selector combos: " + stats.selectorCombinations());
+    log(" allocated bytes: " + stats.allocatedBytes());
     log("\n");
   }
 
+  protected void emitProfile(CompileProfiler profiler) {
+    if (args.profile()) {
+      nl();
+      log(" Profile, by self time:\n" + profiler.report(PROFILE_LIMIT));
+    }
+    String stacks = args.profileStacks();
+    if (stacks != null) {
+      try {
+        LessUtils.writeFile(Paths.get(stacks), profiler.collapsedStacks());
+      } catch (IOException e) {
+        log("ERROR: " + e.getMessage());
+      }
+    }
+  }
+
   protected void emitMemory(String phase) {
     Runtime runtime = Runtime.getRuntime();
     long maxMemory = runtime.maxMemory();
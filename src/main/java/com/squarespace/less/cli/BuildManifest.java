@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Records the content hash of each stylesheet compiled in batch mode, along with
+ * the path and content hash of every file it imported, and the candidate paths
+ * searched for its imports which didn't exist. Saved in the output directory so
+ * a later incremental build can skip stylesheets whose inputs are unchanged.
+ */
+class BuildManifest {
+
+  static final String FILE_NAME = ".lessc-manifest";
+
+  private static final String HEADER = "lessc-manifest 2";
+
+  /**
+   * Fingerprint of the compiler options used for the build.
+   */
+  private final String options;
+
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+  BuildManifest(String options) {
+    this.options = options;
+  }
+
+  /**
+   * Loads the manifest from the output directory, returning null if it doesn't
+   * exist, can't be read, or was built with different options.
+   */
+  static BuildManifest load(Path outputDir, String options) {
+    Path path = outputDir.resolve(FILE_NAME);
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try {
+      List<String> lines = Files.readAllLines(path);
+      if (lines.size() < 2 || !lines.get(0).equals(HEADER) || !lines.get(1).equals(options)) {
+        return null;
+      }
+      BuildManifest manifest = new BuildManifest(options);
+      Entry entry = null;
+      for (int i = 2; i < lines.size(); i++) {
+        String line = lines.get(i);
+        int sep1 = line.indexOf(' ');
+        int sep2 = line.indexOf(' ', sep1 + 1);
+        String type = line.substring(0, sep1);
+        String hash = line.substring(sep1 + 1, sep2);
+        Path file = Paths.get(line.substring(sep2 + 1));
+        if (type.equals("file")) {
+          entry = new Entry(hash, new HashMap<>(), new HashSet<>());
+          manifest.entries.put(file, entry);
+        } else if (type.equals("import") && entry != null) {
+          entry.imports.put(file, hash);
+        } else if (type.equals("missing") && entry != null) {
+          entry.missing.add(file);
+        } else {
+          return null;
+        }
+      }
+      return manifest;
+
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the manifest to the output directory.
+   */
+  void save(Path outputDir) throws IOException {
+    StringBuilder buf = new StringBuilder();
+    buf.append(HEADER).append('\n');
+    buf.append(options).append('\n');
+    for (Map.Entry<Path, Entry> file : new TreeMap<>(entries).entrySet()) {
+      Entry entry = file.getValue();
+      buf.append("file ").append(entry.hash).append(' ').append(file.getKey()).append('\n');
+      for (Map.Entry<Path, String> imp : new TreeMap<>(entry.imports).entrySet()) {
+        buf.append("import ").append(imp.getValue()).append(' ').append(imp.getKey()).append('\n');
+      }
+      for (Path path : new TreeSet<>(entry.missing)) {
+        buf.append("missing - ").append(path).append('\n');
+      }
+    }
+    LessUtils.writeFile(outputDir.resolve(FILE_NAME), buf.toString());
+  }
+
+  /**
+   * Records a stylesheet which was parsed successfully, with the files it
+   * imported and the missing paths searched for them. If its imports are
+   * unknown it is left out, so it is always rebuilt.
+   */
+  void put(Path path, String hash, Map<Path, String> imports, Set<Path> missing) {
+    if (imports == null) {
+      entries.remove(path);
+    } else {
+      entries.put(path, new Entry(hash, imports, missing));
+    }
+  }
+
+  void remove(Path path) {
+    entries.remove(path);
+  }
+
+  /**
+   * Copies the entry for the path from another manifest, if present.
+   */
+  void copy(BuildManifest other, Path path) {
+    Entry entry = other.entries.get(path);
+    if (entry != null) {
+      entries.put(path, entry);
+    }
+  }
+
+  /**
+   * Returns the stylesheets which must be rebuilt: those which are new or
+   * changed, whose output is missing, which import a changed file, or for
+   * which a file has been created that an import would now resolve to.
+   */
+  List<Path> stale(List<Path> paths, Map<Path, Path> outputs) {
+    // Map each imported file back to the stylesheets that depend on it.
+    Map<Path, Set<Path>> dependents = new HashMap<>();
+    for (Map.Entry<Path, Entry> file : entries.entrySet()) {
+      for (Path imp : file.getValue().imports.keySet()) {
+        dependents.computeIfAbsent(imp, k -> new HashSet<>()).add(file.getKey());
+      }
+    }
+
+    Set<Path> stale = new HashSet<>();
+    Map<Path, String> hashes = new HashMap<>();
+    for (Path path : paths) {
+      Entry entry = entries.get(path);
+      if (entry == null || !entry.hash.equals(hash(path, hashes)) || !Files.exists(outputs.get(path))
+          || created(entry.missing)) {
+        stale.add(path);
+      }
+    }
+    for (Map.Entry<Path, Set<Path>> imp : dependents.entrySet()) {
+      Path path = imp.getKey();
+      String hash = hash(path, hashes);
+      for (Path dependent : imp.getValue()) {
+        if (!stale.contains(dependent) && (hash == null || !hash.equals(entries.get(dependent).imports.get(path)))) {
+          stale.add(dependent);
+        }
+      }
+    }
+
+    List<Path> result = new ArrayList<>();
+    for (Path path : paths) {
+      if (stale.contains(path)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Indicates whether any of the paths now exists.
+   */
+  private static boolean created(Set<Path> paths) {
+    for (Path path : paths) {
+      if (Files.exists(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hashes the file's current content, or returns null if it can't be read.
+   */
+  private static String hash(Path path, Map<Path, String> hashes) {
+    if (hashes.containsKey(path)) {
+      return hashes.get(path);
+    }
+    String hash = null;
+    try {
+      hash = LessUtils.contentHash(LessUtils.readFile(path));
+    } catch (IOException e) {
+      // File was removed.
+    }
+    hashes.put(path, hash);
+    return hash;
+  }
+
+  private static class Entry {
+
+    private final String hash;
+
+    private final Map<Path, String> imports;
+
+    private final Set<Path> missing;
+
+    Entry(String hash, Map<Path, String> imports, Set<Path> missing) {
+      this.hash = hash;
+      this.imports = imports;
+      this.missing = missing;
+    }
+  }
+
+}
@@ -22,16 +22,29 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.squarespace.less.CompileProfiler;
+import com.squarespace.less.DefaultImportCache;
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessStatsHistogram;
 import com.squarespace.less.cli.LessC.Args;
 import com.squarespace.less.core.ErrorUtils;
 import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.core.MappedSource;
 import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.parse.LessImporter;
 
 
 /**
@@ -64,89 +77,328 @@ class CompileBatch extends BaseCompile {
       return ERR;
     }
 
+    List<Path> lessPaths = new ArrayList<>();
+    try {
+      for (Path path : LessUtils.getMatchingFiles(input, "glob:*.less", true)) {
+        lessPaths.add(input.resolve(path).toAbsolutePath().normalize());
+      }
+      Files.createDirectories(output);
+
+    } catch (NoSuchFileException e) {
+      log("ERROR: cannot locate path " + e.getMessage());
+      return ERR;
+
+    } catch (IOException e) {
+      log("ERROR: " + e.getMessage());
+      return ERR;
+    }
+
+    BuildManifest manifest = new BuildManifest(args.compilerOptions().fingerprint());
+    if (args.incremental()) {
+      lessPaths = selectStale(lessPaths, output, manifest);
+    }
+
+    if (args.jobs() != 1) {
+      return processParallel(lessPaths, output, manifest, start);
+    }
+
     Map<Path, Stylesheet> cache = new HashMap<>();
+    LessStatsHistogram histogram = new LessStatsHistogram();
     boolean error = false;
 
+    log("Parsing and caching stylesheets:\n");
+    for (Path path : lessPaths) {
+      try {
+        Stylesheet sheet = parse(path, manifest, histogram);
+        cache.put(path, sheet);
+
+      } catch (LessException e) {
+        error = true;
+
+      } catch (IOException e) {
+        log("ERROR: " + e.getMessage());
+        error = true;
+      }
+    }
+    if (args.verbose()) {
+      emitMemory("post-parse");
+    }
+
+    CompileProfiler profiler = args.profileEnabled() ? new CompileProfiler() : null;
+    log("Compiling stylesheets:\n");
+    for (Path path : lessPaths) {
+      Stylesheet stylesheet = cache.get(path);
+      if (stylesheet == null) {
+        log("ERROR: '" + path + "' was not cached.\n");
+        continue;
+      }
+
+      Path fileName = path.getFileName();
+      Path cssPath = cssPath(output, path);
+
+      log("compiling " + fileName + " to " + cssPath);
+      LessContext ctx = new LessContext(args.compilerOptions(), null, cache);
+      try {
+
+        long compileStart = System.nanoTime();
+        long allocated = ctx.stats().threadAllocatedBytes();
+        ctx.setCompiler(compiler);
+        ctx.setListener(profiler);
+        String css = compiler.render(stylesheet.copy(), ctx);
+        LessUtils.writeFile(cssPath, css);
+        ctx.stats().allocationDone(allocated);
+        histogram.add(ctx.stats());
+        logElapsed(" ", compileStart, System.nanoTime());
+
+      } catch (LessException e) {
+        standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
+        manifest.remove(path);
+        error = true;
+
+      } catch (IOException e) {
+        log("ERROR: " + e.getMessage());
+        manifest.remove(path);
+        error = true;
+      }
+    }
+
+    if (args.verbose()) {
+      emitMemory("post-compiler");
+      log("\nPhase histograms, counts in log2 buckets:\n" + histogram);
+    }
+    if (profiler != null) {
+      emitProfile(profiler);
+    }
+
+    saveManifest(output, manifest);
+    if (error) {
+      return ERR;
+    }
+
+    logElapsed("\nCompleted in", start, System.nanoTime());
+    return OK;
+  }
+
+  /**
+   * Returns the stylesheets which changed since the last build recorded in the
+   * output directory, carrying the manifest entries of the others forward.
+   */
+  private List<Path> selectStale(List<Path> lessPaths, Path output, BuildManifest manifest) {
+    BuildManifest previous = BuildManifest.load(output, args.compilerOptions().fingerprint());
+    if (previous == null) {
+      log("No usable build manifest in " + output + ", compiling all stylesheets.\n");
+      return lessPaths;
+    }
+
+    Map<Path, Path> outputs = new HashMap<>();
+    for (Path path : lessPaths) {
+      outputs.put(path, cssPath(output, path));
+    }
+    List<Path> stale = previous.stale(lessPaths, outputs);
+    for (Path path : lessPaths) {
+      if (!stale.contains(path)) {
+        manifest.copy(previous, path);
+      }
+    }
+    log((lessPaths.size() - stale.size()) + " stylesheets up to date, " + stale.size() + " to compile.\n");
+    return stale;
+  }
+
+  /**
+   * Writes the manifest used by the next incremental build.
+   */
+  private void saveManifest(Path output, BuildManifest manifest) {
     try {
-      log("Parsing and caching stylesheets:\n");
-      List<Path> lessPaths = LessUtils.getMatchingFiles(input, "glob:*.less", true);
-      for (Path path : lessPaths) {
-        try {
-          path = input.resolve(path).toAbsolutePath().normalize();
-          Stylesheet sheet = parse(path);
-          cache.put(path, sheet);
-
-        } catch (LessException e) {
-          error = true;
-        }
+      manifest.save(output);
+    } catch (IOException e) {
+      log("ERROR: unable to save build manifest: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Path of the CSS file the stylesheet is compiled to.
+   */
+  private static Path cssPath(Path output, Path path) {
+    String[] fileParts = path.getFileName().toString().split("\\.(?=[^\\.]+$)");
+    return output.resolve(fileParts[0] + ".css").normalize();
+  }
+
+  /**
+   * Parses all stylesheets, then compiles them and writes the output, distributing
+   * the files over a work-stealing pool. Parsed imports are shared between files.
+   */
+  private int processParallel(List<Path> lessPaths, Path output, BuildManifest manifest, long start) {
+    int jobs = args.jobs() > 0 ? args.jobs() : Runtime.getRuntime().availableProcessors();
+    int count = lessPaths.size();
+    Map<Path, Stylesheet> cache = new ConcurrentHashMap<>();
+    ImportCache importCache = new DefaultImportCache();
+    AtomicBoolean error = new AtomicBoolean();
+    AtomicLong sourceSize = new AtomicLong();
+    long[] parseTimes = new long[count];
+    long[] compileTimes = new long[count];
+    LessStatsHistogram histogram = new LessStatsHistogram();
+    CompileProfiler profile = args.profileEnabled() ? new CompileProfiler() : null;
+    Arrays.fill(parseTimes, -1);
+    Arrays.fill(compileTimes, -1);
+
+    ForkJoinPool pool = new ForkJoinPool(jobs);
+    try {
+      log("Parsing and caching stylesheets using " + jobs + " threads:\n");
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        final int index = i;
+        tasks.add(pool.submit(() -> {
+          Path path = lessPaths.get(index);
+          LessContext ctx = new LessContext(args.compilerOptions(), null, null, importCache);
+          ctx.setCompiler(compiler);
+          long parseStart = System.nanoTime();
+          long allocated = ctx.stats().threadAllocatedBytes();
+          try {
+            CharSequence data = MappedSource.load(path);
+            sourceSize.addAndGet(data.length());
+            cache.put(path, compiler.parse(data, ctx, path.getParent(), path.getFileName()));
+            LessImporter importer = ctx.importer();
+            manifest.put(path, LessUtils.contentHash(data), importer.importHashes(), importer.missingPaths());
+            parseTimes[index] = System.nanoTime() - parseStart;
+            ctx.stats().allocationDone(allocated);
+            histogram.add(ctx.stats());
+            log(String.format("parsed %s %.3fms", path, parseTimes[index] / 1000000.0));
+
+          } catch (LessException e) {
+            standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
+            error.set(true);
+
+          } catch (IOException e) {
+            log("ERROR: " + e.getMessage());
+            error.set(true);
+          }
+        }));
       }
+      joinAll(tasks);
       if (args.verbose()) {
         emitMemory("post-parse");
       }
 
       log("Compiling stylesheets:\n");
-      Files.createDirectories(output);
-      for (Path path : lessPaths) {
-        path = input.resolve(path).toAbsolutePath().normalize();
-        Stylesheet stylesheet = cache.get(path);
-        if (stylesheet == null) {
-          log("ERROR: '" + path + "' was not cached.\n");
-          continue;
-        }
-
-        Path fileName = path.getFileName();
-        String[] fileParts = fileName.toString().split("\\.(?=[^\\.]+$)");
-        Path cssPath = output.resolve(fileParts[0] + ".css").normalize();
-
-        log("compiling " + fileName + " to " + cssPath);
-        LessContext ctx = new LessContext(args.compilerOptions(), null, cache);
-        try {
+      tasks.clear();
+      for (int i = 0; i < count; i++) {
+        final int index = i;
+        tasks.add(pool.submit(() -> {
+          Path path = lessPaths.get(index);
+          Stylesheet stylesheet = cache.get(path);
+          if (stylesheet == null) {
+            return;
+          }
 
-          long compileStart = System.nanoTime();
+          Path fileName = path.getFileName();
+          Path cssPath = cssPath(output, path);
+          LessContext ctx = new LessContext(args.compilerOptions(), null, cache);
           ctx.setCompiler(compiler);
-          String css = compiler.render(stylesheet.copy(), ctx);
-          LessUtils.writeFile(cssPath, css);
-          logElapsed(" ", compileStart, System.nanoTime());
-
-        } catch (LessException e) {
-          standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
-          error = true;
-        }
-      }
+          CompileProfiler profiler = profile == null ? null : new CompileProfiler();
+          ctx.setListener(profiler);
+          long compileStart = System.nanoTime();
+          long allocated = ctx.stats().threadAllocatedBytes();
+          try {
+            String css = compiler.render(stylesheet.copy(), ctx);
+            LessUtils.writeFile(cssPath, css);
+            compileTimes[index] = System.nanoTime() - compileStart;
+            ctx.stats().allocationDone(allocated);
+            histogram.add(ctx.stats());
+            if (profiler != null) {
+              profile.merge(profiler);
+            }
+            log(String.format("compiled %s to %s %.3fms", fileName, cssPath, compileTimes[index] / 1000000.0));
 
-    } catch (NoSuchFileException e) {
-      log("ERROR: cannot locate path " + e.getMessage());
-      error = true;
+          } catch (LessException e) {
+            standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
+            manifest.remove(path);
+            error.set(true);
 
-    } catch (IOException e) {
-      log("ERROR: " + e.getMessage());
-      error = true;
+          } catch (IOException e) {
+            log("ERROR: " + e.getMessage());
+            manifest.remove(path);
+            error.set(true);
+          }
+        }));
+      }
+      joinAll(tasks);
+
+    } finally {
+      pool.shutdown();
     }
 
     if (args.verbose()) {
       emitMemory("post-compiler");
     }
 
-    if (error) {
-      return ERR;
+    long elapsed = System.nanoTime() - start;
+    double seconds = elapsed / 1000000000.0;
+    double kilobytes = sourceSize.get() / 1024.0;
+    nl();
+    log(String.format("Processed %d files, %.1f KB in %.3fs: %.1f files/sec, %.1f KB/sec",
+        count, kilobytes, seconds, count / seconds, kilobytes / seconds));
+    emitLatency("parse", parseTimes);
+    emitLatency("compile", compileTimes);
+    if (args.verbose()) {
+      log("\nPhase histograms, counts in log2 buckets:\n" + histogram);
+    }
+    if (profile != null) {
+      emitProfile(profile);
     }
 
+    saveManifest(output, manifest);
+    if (error.get()) {
+      return ERR;
+    }
     logElapsed("\nCompleted in", start, System.nanoTime());
     return OK;
   }
 
+  private static void joinAll(List<ForkJoinTask<?>> tasks) {
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+  }
+
+  /**
+   * Emits percentiles of the per-file times, ignoring files which failed.
+   */
+  private void emitLatency(String label, long[] times) {
+    long[] sorted = Arrays.stream(times).filter(t -> t >= 0).sorted().toArray();
+    if (sorted.length == 0) {
+      return;
+    }
+    log(String.format("%8s latency: p50 %.3fms  p90 %.3fms  p99 %.3fms  max %.3fms", label,
+        percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100)));
+  }
+
+  /**
+   * Returns the nearest-rank percentile of the sorted times, in milliseconds.
+   */
+  private static double percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    int index = Math.max(0, Math.min(sorted.length - 1, rank - 1));
+    return sorted[index] / 1000000.0;
+  }
+
   /**
    * Read and parse the stylesheet.
    */
-  private Stylesheet parse(Path path) throws LessException, IOException {
+  private Stylesheet parse(Path path, BuildManifest manifest, LessStatsHistogram histogram)
+      throws LessException, IOException {
     LessContext ctx = new LessContext(args.compilerOptions());
     try {
-      String data = LessUtils.readFile(path);
+      CharSequence data = MappedSource.load(path);
       Stylesheet result = null;
       ctx.setCompiler(compiler);
       log("parsing " + path + " ");
       long start = System.nanoTime();
+      long allocated = ctx.stats().threadAllocatedBytes();
       result = compiler.parse(data, ctx, path.getParent(), path.getFileName());
+      LessImporter importer = ctx.importer();
+      manifest.put(path, LessUtils.contentHash(data), importer.importHashes(), importer.missingPaths());
+      ctx.stats().allocationDone(allocated);
+      histogram.add(ctx.stats());
       double elapsed = (System.nanoTime() - start) / 1000000.0;
       standardErr.printf(" %.3fms\n", elapsed);
       return result;
@@ -22,11 +22,13 @@ import java.io.PrintStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import com.squarespace.less.CompileProfiler;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.cli.LessC.Args;
 import com.squarespace.less.core.ErrorUtils;
 import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.core.MappedSource;
 import com.squarespace.less.model.Stylesheet;
 import com.squarespace.less.parse.LessParser;
 import com.squarespace.less.parse.LessSyntax;
@@ -44,7 +46,7 @@ class CompileSingle extends BaseCompile {
   @Override
   public int process() {
     String argsInput = args.input();
-    String source = null;
+    CharSequence source = null;
     Path input = null;
 
     try {
@@ -59,7 +61,7 @@ class CompileSingle extends BaseCompile {
           return fail("the path '" + input + "' cannot be read.");
         }
         input = input.toAbsolutePath();
-        source = LessUtils.readFile(input);
+        source = MappedSource.load(input);
       }
     } catch (IOException e) {
       String streamName = (input == null) ? "<stdin>" : input.toString();
@@ -69,6 +71,11 @@ class CompileSingle extends BaseCompile {
     int code = OK;
     LessContext ctx = new LessContext(args.compilerOptions());
     ctx.setCompiler(compiler);
+    CompileProfiler profiler = null;
+    if (args.profileEnabled()) {
+      profiler = new CompileProfiler();
+      ctx.setListener(profiler);
+    }
     try {
       if (args.debugMode() == null) {
         // Normal compile
@@ -134,6 +141,10 @@ class CompileSingle extends BaseCompile {
       emitStats(ctx.stats());
     }
 
+    if (profiler != null) {
+      emitProfile(profiler);
+    }
+
     if (args.verbose()) {
       emitMemory("post-compile");
     }
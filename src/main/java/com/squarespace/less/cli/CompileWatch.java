@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.squarespace.less.DefaultImportCache;
+import com.squarespace.less.ImportCache;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.cli.LessC.Args;
+import com.squarespace.less.core.ErrorUtils;
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Compiles a file, or a directory in batch mode, then watches the stylesheets
+ * and everything they import, recompiling only the stylesheets affected by each
+ * change. The compiler and the parsed imports stay resident between compiles.
+ * Runs until the thread is interrupted.
+ */
+class CompileWatch extends BaseCompile {
+
+  /**
+   * Time to wait for further events after a change, so a burst of writes
+   * results in a single recompile.
+   */
+  private static final long SETTLE_MS = 10;
+
+  private final ImportCache importCache = new DefaultImportCache();
+
+  /**
+   * Output path of each stylesheet, or null to write to standard out.
+   */
+  private final Map<Path, Path> targets = new LinkedHashMap<>();
+
+  /**
+   * Files imported by each stylesheet during its last compile, and candidate
+   * paths searched for its imports which didn't exist.
+   */
+  private final Map<Path, Set<Path>> dependencies = new HashMap<>();
+
+  /**
+   * Stylesheets whose last compile failed.
+   */
+  private final Set<Path> failed = new HashSet<>();
+
+  private final Map<WatchKey, Path> watched = new HashMap<>();
+
+  private WatchService watcher;
+
+  /**
+   * Input and output directories in batch mode.
+   */
+  private Path inputDir;
+
+  private Path outputDir;
+
+  CompileWatch(Args args, PrintStream out, PrintStream err) {
+    super(args, out, err, System.in);
+  }
+
+  @Override
+  public int process() {
+    Path input = Paths.get(args.input()).toAbsolutePath().normalize();
+    try (WatchService service = input.getFileSystem().newWatchService()) {
+      watcher = service;
+      if (args.batchMode()) {
+        if (!input.toFile().isDirectory()) {
+          return fail("the path '" + input + "' cannot be read.\n");
+        }
+        inputDir = input;
+        outputDir = args.output() == null ? input : Paths.get(args.output()).toAbsolutePath().normalize();
+        Files.createDirectories(outputDir);
+        for (Path path : LessUtils.getMatchingFiles(input, "glob:*.less", true)) {
+          addTarget(input.resolve(path).normalize());
+        }
+
+      } else {
+        if (!input.toFile().isFile()) {
+          return fail("the path '" + input + "' cannot be read.");
+        }
+        Path output = args.output() == null ? null : Paths.get(args.output()).toAbsolutePath().normalize();
+        targets.put(input, output);
+        register(input.getParent());
+      }
+
+      compile(new ArrayList<>(targets.keySet()));
+      log("watching " + targets.size() + " stylesheets for changes\n");
+      watch();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+    } catch (IOException e) {
+      return fail("ERROR: " + e.getMessage());
+    }
+    return OK;
+  }
+
+  /**
+   * Waits for changes and recompiles the affected stylesheets.
+   */
+  private void watch() throws IOException, InterruptedException {
+    while (true) {
+      WatchKey key = watcher.take();
+      Set<Path> changed = new LinkedHashSet<>();
+      while (key != null) {
+        collect(key, changed);
+        key = watcher.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+      }
+
+      List<Path> affected = affected(changed);
+      if (!affected.isEmpty()) {
+        long start = System.nanoTime();
+        compile(affected);
+        logElapsed("rebuilt " + affected.size() + " stylesheets in", start, System.nanoTime());
+      }
+    }
+  }
+
+  /**
+   * Adds the paths of the key's events to the changed set.
+   */
+  private void collect(WatchKey key, Set<Path> changed) {
+    Path dir = watched.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        // Events were lost, so assume everything changed.
+        changed.addAll(targets.keySet());
+        for (Set<Path> paths : dependencies.values()) {
+          changed.addAll(paths);
+        }
+      } else if (dir != null) {
+        changed.add(dir.resolve((Path)event.context()).normalize());
+      }
+    }
+    if (!key.reset()) {
+      watched.remove(key);
+    }
+  }
+
+  /**
+   * Drops cached imports for the changed files, and returns the stylesheets
+   * which must be recompiled.
+   */
+  private List<Path> affected(Set<Path> changed) throws IOException {
+    boolean lessChanged = false;
+    for (Path path : changed) {
+      if (!path.getFileName().toString().endsWith(".less")) {
+        continue;
+      }
+      lessChanged = true;
+      importCache.invalidate(path);
+      if (inputDir != null && path.startsWith(inputDir) && !targets.containsKey(path) && Files.isRegularFile(path)) {
+        addTarget(path);
+      }
+    }
+
+    List<Path> result = new ArrayList<>();
+    Iterator<Path> iter = targets.keySet().iterator();
+    while (iter.hasNext()) {
+      Path path = iter.next();
+      if (!Files.isRegularFile(path)) {
+        if (inputDir != null) {
+          iter.remove();
+          dependencies.remove(path);
+          failed.remove(path);
+        }
+        continue;
+      }
+
+      // A failed compile may be fixed by any change, such as creating a missing import.
+      if (changed.contains(path) || (lessChanged && failed.contains(path))
+          || !Collections.disjoint(dependencies.get(path), changed)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compiles each stylesheet, recording the files it imported and the missing
+   * paths searched for them, since creating one may change what is imported.
+   */
+  private void compile(List<Path> paths) throws IOException {
+    for (Path path : paths) {
+      LessContext ctx = new LessContext(args.compilerOptions(), null, null, importCache);
+      ctx.setCompiler(compiler);
+      Path cssPath = targets.get(path);
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+        String css = compiler.compile(LessUtils.readFile(path), ctx, path.getParent(), path.getFileName(), false);
+        if (cssPath == null) {
+          standardOut.print(css);
+        } else {
+          LessUtils.writeFile(cssPath, css);
+        }
+        ok = true;
+        log(String.format("compiled %s %.3fms", path, (System.nanoTime() - start) / 1000000.0));
+
+      } catch (LessException e) {
+        standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
+
+      } catch (IOException e) {
+        log("ERROR: " + e.getMessage());
+      }
+
+      Set<Path> imports = new HashSet<>();
+      Map<Path, String> hashes = ctx.importer().importHashes();
+      if (hashes != null) {
+        imports.addAll(hashes.keySet());
+      }
+      imports.addAll(ctx.importer().missingPaths());
+      if (ok) {
+        failed.remove(path);
+      } else {
+        // Keep watching what the last good compile imported.
+        failed.add(path);
+        imports.addAll(dependencies.getOrDefault(path, Collections.<Path>emptySet()));
+      }
+      dependencies.put(path, imports);
+      for (Path dependency : imports) {
+        register(dependency.getParent());
+      }
+    }
+  }
+
+  private void addTarget(Path path) throws IOException {
+    String[] fileParts = path.getFileName().toString().split("\\.(?=[^\\.]+$)");
+    targets.put(path, outputDir.resolve(fileParts[0] + ".css").normalize());
+    dependencies.put(path, Collections.<Path>emptySet());
+    register(path.getParent());
+  }
+
+  /**
+   * Watches the directory for changes, if not already watched.
+   */
+  private void register(Path dir) throws IOException {
+    if (dir == null || watched.containsValue(dir) || !Files.isDirectory(dir)) {
+      return;
+    }
+    watched.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+  }
+
+}
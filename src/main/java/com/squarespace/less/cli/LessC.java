@@ -80,7 +80,9 @@ public class LessC {
 
     // Select the implementation based on the parsed arguments.
     BaseCompile impl = null;
-    if (args.batchMode()) {
+    if (args.watchMode()) {
+      impl = new CompileWatch(args, out, err);
+    } else if (args.batchMode()) {
       impl = new CompileBatch(args, out, err);
     } else {
       impl = new CompileSingle(args, out, err, in);
@@ -124,8 +126,18 @@ public class LessC {
       .type(String.class)
       .help("Set include paths. Separated by ':'. Use ';' on Windows");
 
+    parser.addArgument("--incremental")
+      .action(Arguments.storeTrue())
+      .help("In batch mode, only recompile stylesheets whose inputs changed since the last build.");
+
     // TODO: add -l --lint syntax check
 
+    parser.addArgument("--jobs", "-j")
+      .metavar("N")
+      .type(Integer.class)
+      .setDefault(1)
+      .help("Number of files to compile in parallel in batch mode. Use 0 for one per processor.");
+
     parser.addArgument("--mixin-recursion-limit", "-r")
       .metavar("LIMIT")
       .type(Integer.class)
@@ -138,6 +150,15 @@ public class LessC {
       .setDefault(LessOptions.DEFAULT_RECURSION_LIMIT)
       .help("Sets the import recursion depth limit.");
 
+    parser.addArgument("--profile")
+      .action(Arguments.storeTrue())
+      .help("Profiles evaluation and reports the mixin calls and functions taking the most time.");
+
+    parser.addArgument("--profile-stacks")
+      .metavar("FILE")
+      .type(String.class)
+      .help("Profiles evaluation and writes the time of each call stack to a file, for flame graphs.");
+
     parser.addArgument("--statistics", "-s")
       .action(Arguments.storeTrue())
       .help("Output compile statistics");
@@ -162,6 +183,10 @@ public class LessC {
       .action(Arguments.storeTrue())
       .help("Waits for user input before executing. For profiling purposes.");
 
+    parser.addArgument("--watch")
+      .action(Arguments.storeTrue())
+      .help("Recompiles whenever the input or a file it imports changes. Combine with --batch to watch a directory.");
+
     parser.addArgument("--compress", "-x")
       .action(Arguments.storeTrue())
       .help("Enables compressing whitespace (minification)");
@@ -198,9 +223,14 @@ public class LessC {
       cmdArgs.compilerOptions = opts;
       cmdArgs.batchMode = res.getBoolean("batch");
       cmdArgs.debugMode = res.<LessDebugMode>get("debug");
+      cmdArgs.incremental = res.getBoolean("incremental");
+      cmdArgs.jobs = res.getInt("jobs");
+      cmdArgs.profile = res.getBoolean("profile");
+      cmdArgs.profileStacks = res.getString("profile_stacks");
       cmdArgs.statistics = res.getBoolean("statistics");
       cmdArgs.verbose = res.getBoolean("verbose");
       cmdArgs.waitForUser = res.getBoolean("wait");
+      cmdArgs.watchMode = res.getBoolean("watch");
 
       if (cmdArgs.verbose() && cmdArgs.debugMode() != null) {
         dumpArguments(res);
@@ -265,12 +295,22 @@ public class LessC {
 
     private LessDebugMode debugMode;
 
+    private boolean incremental;
+
+    private int jobs;
+
+    private boolean profile;
+
+    private String profileStacks;
+
     private boolean statistics;
 
     private boolean verbose;
 
     private boolean waitForUser;
 
+    private boolean watchMode;
+
     private Args() {
     }
 
@@ -298,6 +338,26 @@ public class LessC {
       return debugMode;
     }
 
+    public boolean incremental() {
+      return incremental;
+    }
+
+    public int jobs() {
+      return jobs;
+    }
+
+    public boolean profile() {
+      return profile;
+    }
+
+    public String profileStacks() {
+      return profileStacks;
+    }
+
+    public boolean profileEnabled() {
+      return profile || profileStacks != null;
+    }
+
     public boolean statsEnabled() {
       return statistics;
     }
@@ -310,6 +370,10 @@ public class LessC {
       return waitForUser;
     }
 
+    public boolean watchMode() {
+      return watchMode;
+    }
+
   }
 
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+
+/**
+ * Formats non-integral numbers for output, rounding to a fixed number of decimal
+ * places using HALF_EVEN, stripping trailing zeros and the leading zero of the
+ * integer part, e.g. 0.50 is formatted as ".5".
+ *
+ * Rounding is defined on the shortest decimal representation of the double, as
+ * produced by {@link BigDecimal#valueOf(double)}. Most values are scaled and
+ * rounded in long arithmetic, writing digits directly to the buffer without
+ * allocating. Values too large to scale exactly, or so close to a rounding tie
+ * that the binary and decimal representations could round differently, use
+ * {@link BigDecimal}.
+ */
+public class DecimalFormatter {
+
+  private static final long[] POWERS_OF_10 = new long[] {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+    1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+    100000000000000L, 1000000000000000L
+  };
+
+  /**
+   * Scaled values must be below this to be represented exactly.
+   */
+  private static final double MAX_SCALED = (double)(1L << 52);
+
+  /**
+   * Number of ulps from a tie within which rounding falls back to BigDecimal.
+   */
+  private static final int TIE_ULPS = 4;
+
+  private DecimalFormatter() {
+  }
+
+  /**
+   * Appends the finite value, rounded to the given number of decimal places.
+   */
+  public static void format(Buffer buf, double value, int scale) {
+    if (scale < 0 || scale >= POWERS_OF_10.length) {
+      formatBigDecimal(buf, value, scale);
+      return;
+    }
+
+    double scaled = Math.abs(value) * POWERS_OF_10[scale];
+    if (!(scaled < MAX_SCALED)) {
+      formatBigDecimal(buf, value, scale);
+      return;
+    }
+
+    double floor = Math.floor(scaled);
+    double fraction = scaled - floor;
+    if (Math.abs(fraction - 0.5) <= TIE_ULPS * Math.ulp(scaled)) {
+      formatBigDecimal(buf, value, scale);
+      return;
+    }
+
+    long rounded = (long)floor + (fraction > 0.5 ? 1 : 0);
+    long power = POWERS_OF_10[scale];
+    long integer = rounded / power;
+    long decimals = rounded % power;
+    if (rounded != 0 && value < 0) {
+      buf.append('-');
+    }
+    if (integer != 0 || decimals == 0) {
+      buf.append(integer);
+    }
+    if (decimals == 0) {
+      return;
+    }
+
+    // Strip trailing zeros, then write the remaining digits with leading zeros.
+    int digits = scale;
+    while (decimals % 10 == 0) {
+      decimals /= 10;
+      digits--;
+    }
+    buf.append('.');
+    for (int i = digits - 1; i >= 0; i--) {
+      buf.append((char)('0' + (decimals / POWERS_OF_10[i]) % 10));
+    }
+  }
+
+  /**
+   * Appends the value using {@link BigDecimal}.
+   */
+  public static void formatBigDecimal(Buffer buf, double value, int scale) {
+    // Strip trailing zeros and avoid scientific notation.
+    String repr = BigDecimal.valueOf(value)
+        .setScale(scale, RoundingMode.HALF_EVEN)
+        .stripTrailingZeros()
+        .toPlainString();
+    // Strip leading zeros for positive and negative numbers.
+    if (repr.startsWith("0.")) {
+      buf.append(repr.substring(1));
+    } else if (repr.startsWith("-0.")) {
+      buf.append('-').append(repr.substring(2));
+    } else {
+      buf.append(repr);
+    }
+  }
+
+}
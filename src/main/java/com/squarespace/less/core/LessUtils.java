@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
@@ -34,6 +35,8 @@ import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -60,7 +63,7 @@ public class LessUtils {
   /**
    * Strip whitespace off ends of string.
    */
-  public static String strip(String raw, int start, int end) {
+  public static String strip(CharSequence raw, int start, int end) {
     // Skip over leading whitespace
     while (start < end) {
       if (!CharClass.CLASSIFIER.whitespace(raw.charAt(start))) {
@@ -75,7 +78,61 @@ public class LessUtils {
       }
       end--;
     }
-    return raw.substring(start, end);
+    return raw.subSequence(start, end).toString();
+  }
+
+  public static String strip(String raw, int start, int end) {
+    return strip((CharSequence) raw, start, end);
+  }
+
+  /**
+   * Returns the index of the first occurrence of the character at or after
+   * {@code from}, or -1.
+   */
+  public static int indexOf(CharSequence seq, char ch, int from) {
+    if (seq instanceof String) {
+      return ((String) seq).indexOf(ch, from);
+    }
+    int len = seq.length();
+    for (int i = Math.max(from, 0); i < len; i++) {
+      if (seq.charAt(i) == ch) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the first occurrence of the string at or after
+   * {@code from}, or -1.
+   */
+  public static int indexOf(CharSequence seq, String str, int from) {
+    if (seq instanceof String) {
+      return ((String) seq).indexOf(str, from);
+    }
+    int end = seq.length() - str.length();
+    for (int i = Math.max(from, 0); i <= end; i++) {
+      if (startsWith(seq, str, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Indicates the sequence contains the prefix starting at {@code offset}.
+   */
+  public static boolean startsWith(CharSequence seq, String prefix, int offset) {
+    int len = prefix.length();
+    if (offset < 0 || offset + len > seq.length()) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (seq.charAt(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -195,13 +252,36 @@ public class LessUtils {
     return list;
   }
 
+  /**
+   * Computes a hex-encoded SHA-1 digest of the UTF8-encoded string, used to
+   * detect when the content of a source file has changed.
+   */
+  public static String contentHash(CharSequence data) {
+    MessageDigest digest = null;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new LessInternalException("Serious error: SHA-1 digest is not available.", e);
+    }
+    if (data instanceof MappedSource) {
+      ((MappedSource) data).digest(digest);
+    } else {
+      digest.update(data.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] bytes = digest.digest();
+    StringBuilder buf = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      buf.append(hexchar((b >> 4) & 0x0f));
+      buf.append(hexchar(b & 0x0f));
+    }
+    return buf.toString();
+  }
+
   /**
    * Reads a UTF8-encoded file into a string.
    */
   public static String readFile(Path path) throws IOException {
-    try (InputStream file = Files.newInputStream(path)) {
-      return readStream(file);
-    }
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
   }
 
   /**
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+
+/**
+ * Source text read in place from a memory-mapped file containing only ASCII
+ * characters, which are identical in UTF-8. Characters are read directly from
+ * the mapping, so parsing a large file doesn't hold a copy of it on the heap.
+ * Only the substrings extracted by the parser are copied.
+ */
+public class MappedSource implements CharSequence {
+
+  /**
+   * Files smaller than this are read into a string, which is cheaper than mapping.
+   */
+  static final long MAP_THRESHOLD = 256 * 1024;
+
+  private static final long NON_ASCII = 0x8080808080808080L;
+
+  /**
+   * Per-thread buffer into which files below the threshold are read before decoding.
+   */
+  private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+  private final ByteBuffer buffer;
+
+  private final int offset;
+
+  private final int length;
+
+  MappedSource(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Loads a UTF-8 source file. Large files containing only ASCII are mapped and
+   * returned as a {@link MappedSource}, all others are read into a string.
+   */
+  public static CharSequence load(Path path) throws IOException {
+    return load(path, MAP_THRESHOLD);
+  }
+
+  /**
+   * Reads a UTF-8 source file into a string.
+   */
+  public static String read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return read(path, channel, channel.size());
+    }
+  }
+
+  static CharSequence load(Path path, long threshold) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < threshold || size > Integer.MAX_VALUE) {
+        return read(path, channel, size);
+      }
+
+      // The mapping remains valid after the channel is closed.
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (ascii(buffer, (int) size)) {
+        return new MappedSource(buffer, 0, (int) size);
+      }
+      byte[] bytes = new byte[(int) size];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String read(Path path, FileChannel channel, long size) throws IOException {
+    if (size > MAP_THRESHOLD) {
+      return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    // Read until end of file, in case the file grew after its size was taken.
+    byte[] bytes = READ_BUFFER.get();
+    if (bytes.length <= size) {
+      bytes = new byte[(int) MAP_THRESHOLD + 1];
+      READ_BUFFER.set(bytes);
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return new String(bytes, 0, buffer.position(), StandardCharsets.UTF_8);
+      }
+    }
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the UTF-8 encoding of the characters to the digest.
+   */
+  public void digest(MessageDigest digest) {
+    digest.update(slice());
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + " length " + length);
+    }
+    return (char) buffer.get(offset + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + " end " + end + " length " + length);
+    }
+    return new MappedSource(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    slice().get(bytes);
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  private ByteBuffer slice() {
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(offset + length).position(offset);
+    return slice;
+  }
+
+  /**
+   * Indicates all bytes in the buffer are ASCII, checking 8 bytes at a time.
+   */
+  private static boolean ascii(ByteBuffer buffer, int size) {
+    int i = 0;
+    for (; i + 8 <= size; i += 8) {
+      if ((buffer.getLong(i) & NON_ASCII) != 0) {
+        return false;
+      }
+    }
+    for (; i < size; i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
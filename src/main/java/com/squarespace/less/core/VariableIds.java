@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Interns variable names to small integer ids, assigned when variable references
+ * and definitions are constructed, so scopes can index their definitions by id.
+ *
+ * The table is shared by all compiles. To bound its size, once {@link #LIMIT}
+ * names have been assigned ids the remaining names are hashed to shared ids,
+ * which must be confirmed by comparing names.
+ */
+public final class VariableIds {
+
+  /**
+   * Number of unique ids. Ids at or above the limit are shared.
+   */
+  public static final int LIMIT = 1 << 16;
+
+  private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+
+  private static final AtomicInteger NEXT = new AtomicInteger();
+
+  private VariableIds() {
+  }
+
+  /**
+   * Returns the id for the variable name.
+   */
+  public static int id(String name) {
+    Integer id = IDS.get(name);
+    if (id == null && NEXT.get() < LIMIT) {
+      id = IDS.computeIfAbsent(name, k -> {
+        int next = NEXT.getAndIncrement();
+        return next < LIMIT ? next : null;
+      });
+    }
+    return id == null ? LIMIT + ((name.hashCode() & 0x7fffffff) % LIMIT) : id;
+  }
+
+  /**
+   * Indicates whether the id is assigned to a single name.
+   */
+  public static boolean unique(int id) {
+    return id < LIMIT;
+  }
+
+}
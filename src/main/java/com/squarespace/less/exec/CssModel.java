@@ -152,6 +152,16 @@ public class CssModel {
     return this;
   }
 
+  /**
+   * Appends previously-rendered output to the current block.
+   */
+  public CssModel fragment(String value) {
+    this.complexity++;
+    this.size += value.length();
+    current.add(new CssFragment(value));
+    return this;
+  }
+
   /**
    * Add raw strings to the header of the current block.
    */
@@ -393,6 +403,44 @@ public class CssModel {
 
   }
 
+  /**
+   * Represents rendered output of one or more blocks in a CSS model.
+   */
+  static class CssFragment extends CssNode {
+
+    private final String value;
+
+    CssFragment(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+    @Override
+    public boolean isValue() {
+      return false;
+    }
+
+    @Override
+    public boolean populated() {
+      return !value.isEmpty();
+    }
+
+    @Override
+    public void render(Buffer buf) {
+      buf.append(value);
+    }
+
+  }
+
   /**
    * Abstract node in a CSS model.
    */
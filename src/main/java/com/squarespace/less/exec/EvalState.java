@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Mixin;
+import com.squarespace.less.model.Ruleset;
+
+
+/**
+ * Mutable state for a single evaluation of a parse tree.
+ *
+ * Nodes produced by the parser are never modified during evaluation. Any
+ * per-evaluation flags (circular reference detection, recursion tracking,
+ * mixin closures) are kept here, keyed by node identity. This allows a single
+ * parsed {@link com.squarespace.less.model.Stylesheet} to be evaluated by
+ * multiple threads concurrently.
+ *
+ * One instance is shared by an {@link ExecEnv} and all of its copies.
+ */
+public class EvalState {
+
+  /**
+   * Definitions currently being dereferenced. Used to detect circular references.
+   */
+  private final Set<Definition> definitions = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Original rulesets currently being evaluated. Used to detect recursion.
+   */
+  private final Set<Ruleset> rulesets = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Closure environments captured for each original mixin definition.
+   */
+  private final Map<Mixin, ExecEnv> closures = new IdentityHashMap<>();
+
+  /**
+   * Number of times each original mixin's body is currently being evaluated.
+   */
+  private final Map<Mixin, Integer> entryCounts = new IdentityHashMap<>();
+
+  /**
+   * Pure expansions of each original mixin.
+   */
+  private final Map<Mixin, MixinMemo> memos = new IdentityHashMap<>();
+
+  /**
+   * Innermost mixin expansion whose purity is being recorded, if any.
+   */
+  private MixinMemo.Recording recording;
+
+  /**
+   * Block whose variable lookups are being recorded, if any.
+   */
+  private Block trackedBlock;
+
+  /**
+   * Names of variables resolved against the tracked block.
+   */
+  private Set<String> dependencies;
+
+  /**
+   * Indicates whether the definition is currently being evaluated.
+   */
+  public boolean evaluating(Definition def) {
+    return definitions.contains(def);
+  }
+
+  /**
+   * Mark or clear the definition's 'evaluating' flag, used to detect
+   * circular references during evaluation.
+   */
+  public void evaluating(Definition def, boolean flag) {
+    if (flag) {
+      definitions.add(def);
+    } else {
+      definitions.remove(def);
+    }
+  }
+
+  /**
+   * Indicates if the original ruleset is currently being evaluated.
+   */
+  public boolean evaluating(Ruleset ruleset) {
+    return rulesets.contains(ruleset.original());
+  }
+
+  /**
+   * Marks the original ruleset as being evaluated.
+   */
+  public void enter(Ruleset ruleset) {
+    rulesets.add((Ruleset)ruleset.original());
+  }
+
+  /**
+   * Clears the original ruleset's evaluation flag.
+   */
+  public void exit(Ruleset ruleset) {
+    rulesets.remove(ruleset.original());
+  }
+
+  /**
+   * Returns the number of times the original mixin's body is being evaluated.
+   */
+  public int entryCount(Mixin mixin) {
+    Integer count = entryCounts.get(mixin.original());
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Begins evaluating the original mixin's body.
+   */
+  public void enter(Mixin mixin) {
+    entryCounts.merge((Mixin)mixin.original(), 1, Integer::sum);
+  }
+
+  /**
+   * Ends evaluating the original mixin's body.
+   */
+  public void exit(Mixin mixin) {
+    Mixin original = (Mixin)mixin.original();
+    Integer count = entryCounts.get(original);
+    if (count == null || count <= 1) {
+      entryCounts.remove(original);
+    } else {
+      entryCounts.put(original, count - 1);
+    }
+  }
+
+  /**
+   * Returns the closure environment attached to the original mixin definition.
+   */
+  public ExecEnv closure(Mixin mixin) {
+    return closures.get(mixin.original());
+  }
+
+  /**
+   * Sets the closure on the original mixin definition.
+   */
+  public void closure(Mixin mixin, ExecEnv env) {
+    closures.put((Mixin)mixin.original(), env.copy());
+  }
+
+  /**
+   * Returns the memo of the original mixin's expansions, or null if an
+   * expansion of the mixin was impure.
+   */
+  MixinMemo memo(Mixin mixin) {
+    MixinMemo memo = memos.computeIfAbsent((Mixin)mixin.original(), k -> new MixinMemo());
+    return memo.impure() ? null : memo;
+  }
+
+  /**
+   * Begins recording whether a mixin expansion is pure.
+   */
+  MixinMemo.Recording startRecording() {
+    recording = new MixinMemo.Recording(recording);
+    return recording;
+  }
+
+  /**
+   * Ends recording the mixin expansion.
+   */
+  void stopRecording(MixinMemo.Recording recording) {
+    this.recording = recording.outer();
+  }
+
+  /**
+   * Marks the innermost mixin expansion being recorded as impure.
+   */
+  void impure() {
+    if (recording != null) {
+      recording.impure();
+    }
+  }
+
+  /**
+   * Begins tracking variable lookups which resolve against the given block.
+   */
+  public void trackDependencies(Block block) {
+    this.trackedBlock = block;
+  }
+
+  /**
+   * Sets the collection to which the names of tracked variables are added,
+   * returning the previous one. A null collection stops recording.
+   */
+  public Set<String> recordDependencies(Set<String> dependencies) {
+    Set<String> previous = this.dependencies;
+    this.dependencies = dependencies;
+    return previous;
+  }
+
+  /**
+   * Records that a variable with the given name was resolved against the block.
+   */
+  public void dependency(Block block, String name) {
+    if (dependencies != null && block == trackedBlock) {
+      dependencies.add(name);
+    }
+  }
+
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.core.FlexList;
+import com.squarespace.less.core.VariableIds;
 import com.squarespace.less.model.Block;
 import com.squarespace.less.model.BlockNode;
 import com.squarespace.less.model.Definition;
@@ -39,15 +40,27 @@ public class ExecEnv {
   private final LessContext ctx;
 
   /**
-   * Stack frames for execution.
+   * Top of the stack of frames for execution. Frames are immutable and shared
+   * by copies of this environment.
    */
-  private final FlexList<Block> frames;
+  private Frame frames;
+
+  /**
+   * Frame beneath which variable lookups make the mixin expansion being
+   * recorded impure, if any.
+   */
+  private Frame mark;
 
   /**
    * List of warnings emitted during execution.
    */
   private FlexList<String> warnings;
 
+  /**
+   * Per-evaluation state, shared with all copies of this environment.
+   */
+  private final EvalState state;
+
   /**
    * Exception that terminated execution, if any.
    */
@@ -57,7 +70,7 @@ public class ExecEnv {
    * Constructs an instance associated with the given compile context.
    */
   public ExecEnv(LessContext ctx) {
-    this(ctx, new FlexList<Block>(64), null);
+    this(ctx, (Frame)null, null, new EvalState());
   }
 
   /**
@@ -73,9 +86,23 @@ public class ExecEnv {
    * initial stack contents, and warning list.
    */
   public ExecEnv(LessContext ctx, FlexList<Block> initialStack, FlexList<String> warnings) {
+    this(ctx, initialStack, warnings, new EvalState());
+  }
+
+  /**
+   * Constructs an instance associated with the given compile context,
+   * initial stack contents, warning list and evaluation state.
+   */
+  public ExecEnv(LessContext ctx, FlexList<Block> initialStack, FlexList<String> warnings, EvalState state) {
+    this(ctx, (Frame)null, warnings, state);
+    append(initialStack);
+  }
+
+  private ExecEnv(LessContext ctx, Frame frames, FlexList<String> warnings, EvalState state) {
     this.ctx = ctx;
-    this.frames = initialStack;
+    this.frames = frames;
     this.warnings = warnings;
+    this.state = state;
   }
 
   /**
@@ -85,18 +112,37 @@ public class ExecEnv {
     return ctx;
   }
 
+  /**
+   * Returns the per-evaluation state.
+   */
+  public EvalState state() {
+    return state;
+  }
+
   /**
    * Returns a new {@link ExecEnv} instance with a copy of the stack frames and warnings.
+   * The copy shares this instance's evaluation state. Since frames are immutable
+   * the copy shares them too, and pushing onto one stack does not affect the other.
    */
   public ExecEnv copy() {
-    return new ExecEnv(ctx, frames.copy(), warnings);
+    ExecEnv env = new ExecEnv(ctx, frames, warnings, state);
+    env.mark = mark;
+    return env;
+  }
+
+  /**
+   * Marks the top of the stack. Until the environment is discarded, variables
+   * resolved beneath the mark make the mixin expansion being recorded impure.
+   */
+  public void mark() {
+    mark = frames;
   }
 
   /**
    * Current stack depth.
    */
   public int depth() {
-    return frames.size();
+    return frames == null ? 0 : frames.depth;
   }
 
   /**
@@ -124,19 +170,40 @@ public class ExecEnv {
    * Pushes a list of frames onto the stack.
    */
   public void append(FlexList<Block> other) {
-    frames.append(other);
+    if (other == null) {
+      return;
+    }
+    int size = other.size();
+    for (int i = 0; i < size; i++) {
+      frames = new Frame(other.get(i), null, frames);
+    }
+  }
+
+  /**
+   * Pushes the frames of another environment onto the stack, sharing them.
+   */
+  public void append(ExecEnv other) {
+    append(other.frames);
   }
 
   /**
    * Adds a warning to the list.
    */
   public void addWarning(String warning) {
+    state.impure();
     if (warnings == null) {
       warnings = new FlexList<>();
     }
     warnings.append(warning);
   }
 
+  /**
+   * Indicates warnings are pending, to be attached to the next rule evaluated.
+   */
+  public boolean hasWarnings() {
+    return warnings != null && !warnings.isEmpty();
+  }
+
   /**
    * Return the formatted list of warnings.
    */
@@ -157,28 +224,76 @@ public class ExecEnv {
   }
 
   /**
-   * Returns the stack frames.
-  */
+   * Returns a copy of the stack frames, from the bottom of the stack to the top.
+   */
   public FlexList<Block> frames() {
-    return frames;
+    FlexList<Block> result = new FlexList<>(depth());
+    collect(frames, result);
+    return result;
+  }
+
+  private static void collect(Frame frame, FlexList<Block> result) {
+    if (frame == null) {
+      return;
+    }
+    collect(frame.parent, result);
+    if (frame.link == null) {
+      result.append(frame.block);
+    } else {
+      collect(frame.link, result);
+    }
   }
 
   /**
    * Iterate up the stack, trying to find the given variable definition in each block.
    */
   public Definition resolveDefinition(String name) throws LessException {
-    int size = frames.size();
-    for (int i = size - 1; i >= 0; i--) {
-      Definition def = frames.get(i).resolveDefinition(name);
+    return resolveDefinition(name, VariableIds.id(name));
+  }
+
+  /**
+   * Iterate up the stack, trying to find the definition of the variable having
+   * the given name and id in each block.
+   */
+  public Definition resolveDefinition(String name, int id) throws LessException {
+    ctx.stats().variableLookup();
+    if (mark == null) {
+      return resolveDefinition(frames, null, name, id);
+    }
+
+    Definition def = resolveDefinition(frames, mark.parent, name, id);
+    if (def == null) {
+      state.impure();
+      def = resolveDefinition(mark.parent, null, name, id);
+    }
+    return def;
+  }
+
+  /**
+   * Searches the frames from the given one down to the end frame, exclusive.
+   */
+  private Definition resolveDefinition(Frame frame, Frame end, String name, int id) throws LessException {
+    for (; frame != end; frame = frame.parent) {
+      if (frame.link != null) {
+        Definition def = resolveDefinition(frame.link, null, name, id);
+        if (def != null) {
+          return def;
+        }
+        continue;
+      }
+
+      Block block = frame.block;
+      Definition def = block.resolveDefinition(name, id);
 
       // Future: pragma to skip over circular references, looking in a higher stack frame.
       // To do that we check if the definition is evaluating (circular) and skip it:
       //
-      // if (def != null && pragmaSkipCircular() && !def.evaluating()) {
+      // if (def != null && pragmaSkipCircular() && !state.evaluating(def)) {
       // ...
 
       // If definition exists, return it
       if (def != null) {
+        state.dependency(block, name);
         return def;
       }
     }
@@ -190,12 +305,21 @@ public class ExecEnv {
    */
   public boolean resolveMixins(MixinResolver resolver) throws LessException {
     List<String> path = resolver.callPath;
-    String prefix = path.get(0);
-    int end = frames.size() - 1;
-    for (int i = end; i >= 0; i--) {
+    return resolveMixins(frames, resolver, path.get(0));
+  }
+
+  private static boolean resolveMixins(Frame frame, MixinResolver resolver, String prefix) throws LessException {
+    for (; frame != null; frame = frame.parent) {
+      if (frame.link != null) {
+        if (resolveMixins(frame.link, resolver, prefix)) {
+          return true;
+        }
+        continue;
+      }
+
       // Prune the mixin search space at the top level. If no paths
       // have our desired prefix we skip the block entirely.
-      Block block = frames.get(i);
+      Block block = frame.block;
       Map<String, List<Node>> mixins = block.mixins();
       if (mixins != null && mixins.containsKey(prefix)) {
         if (resolver.match(block)) {
@@ -210,14 +334,30 @@ public class ExecEnv {
    * Push a block onto the stack.
    */
   public void push(BlockNode blockNode) throws LessException {
-    frames.push(blockNode.block());
+    frames = new Frame(blockNode.block(), null, frames);
   }
 
   /**
    * Pop the current block off the stack.
    */
   public void pop() {
-    frames.pop();
+    Frame top = frames;
+    if (top.link == null) {
+      frames = top.parent;
+      return;
+    }
+
+    // Pop the top frame of the linked stack, keeping the rest.
+    frames = top.parent;
+    append(top.link.parent);
+  }
+
+  private void append(Frame other) {
+    if (other != null) {
+      frames = other.link == null && other.parent == null
+          ? new Frame(other.block, null, frames)
+          : new Frame(null, other, frames);
+    }
   }
 
   /**
@@ -233,4 +373,27 @@ public class ExecEnv {
 //    }
 //    return buf.toString();
 //  }
+
+  /**
+   * Immutable frame of the stack, holding either a block or a link to the top
+   * frame of another stack. Linked frames are searched before the parent.
+   */
+  private static final class Frame {
+
+    private final Block block;
+
+    private final Frame link;
+
+    private final Frame parent;
+
+    private final int depth;
+
+    Frame(Block block, Frame link, Frame parent) {
+      this.block = block;
+      this.link = link;
+      this.parent = parent;
+      this.depth = (parent == null ? 0 : parent.depth) + (link == null ? 1 : link.depth);
+    }
+  }
+
 }
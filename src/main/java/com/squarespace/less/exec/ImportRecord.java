@@ -17,6 +17,9 @@
 package com.squarespace.less.exec;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import com.squarespace.less.model.Stylesheet;
 
@@ -42,10 +45,50 @@ public class ImportRecord {
    */
   private final boolean onlyOnce;
 
+  /**
+   * Hash of the file's content, or null if the stylesheet was not parsed from
+   * a known source.
+   */
+  private final String contentHash;
+
+  /**
+   * Imports that were spliced into the stylesheet while it was parsed.
+   */
+  private final List<ImportRecord> dependencies;
+
+  /**
+   * Candidate paths for the stylesheet's imports which were found not to exist.
+   * Creating any of them would change how the stylesheet is parsed.
+   */
+  private final Set<Path> missing;
+
+  /**
+   * Total number of characters parsed to produce the stylesheet, including
+   * its dependencies.
+   */
+  private final int size;
+
   public ImportRecord(Path exactPath, Stylesheet stylesheet, boolean onlyOnce) {
+    this(exactPath, stylesheet, onlyOnce, null, Collections.<ImportRecord>emptyList(),
+        Collections.<Path>emptySet(), 0);
+  }
+
+  public ImportRecord(Path exactPath, Stylesheet stylesheet, boolean onlyOnce, String contentHash,
+      List<ImportRecord> dependencies, Set<Path> missing, int size) {
     this.exactPath = exactPath;
     this.stylesheet = stylesheet;
     this.onlyOnce = onlyOnce;
+    this.contentHash = contentHash;
+    this.dependencies = dependencies;
+    this.missing = missing;
+    this.size = size;
+  }
+
+  /**
+   * Returns a copy of this record with the given {@code onlyOnce} flag.
+   */
+  public ImportRecord withOnlyOnce(boolean onlyOnce) {
+    return new ImportRecord(exactPath, stylesheet, onlyOnce, contentHash, dependencies, missing, size);
   }
 
   public Path exactPath() {
@@ -60,4 +103,20 @@ public class ImportRecord {
     return onlyOnce;
   }
 
+  public String contentHash() {
+    return contentHash;
+  }
+
+  public List<ImportRecord> dependencies() {
+    return dependencies;
+  }
+
+  public Set<Path> missing() {
+    return missing;
+  }
+
+  public int size() {
+    return size;
+  }
+
 }
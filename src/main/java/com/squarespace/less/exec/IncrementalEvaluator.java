@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.BlockDirective;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Directive;
+import com.squarespace.less.model.Media;
+import com.squarespace.less.model.Mixin;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Evaluates a stylesheet with a set of top-level variable overrides, recording
+ * which top-level definitions each top-level node depends on.
+ *
+ * Given the {@link Snapshot} of an earlier evaluation of the same stylesheet, only
+ * the top-level nodes which depend (directly, or through other definitions) on an
+ * override whose value changed are evaluated again. All other nodes reuse their
+ * earlier results.
+ *
+ * A full evaluation is performed when there is no usable snapshot, when the set
+ * of override names changes, when a top-level mixin call depends on a changed
+ * override, or when the earlier evaluation exceeded a threshold.
+ */
+public class IncrementalEvaluator extends LessEvaluator {
+
+  /**
+   * Snapshot being updated, or null for a full evaluation.
+   */
+  private Snapshot previous;
+
+  /**
+   * Top-level nodes which must be evaluated again.
+   */
+  private boolean[] dirty;
+
+  /**
+   * Block of the stylesheet being evaluated.
+   */
+  private Block root;
+
+  /**
+   * Results and dependencies of each top-level node.
+   */
+  private Node[] results;
+
+  private List<Set<String>> dependencies;
+
+  /**
+   * Position of the next top-level node.
+   */
+  private int cursor;
+
+  /**
+   * Number of top-level nodes evaluated.
+   */
+  private int evaluated;
+
+  public IncrementalEvaluator(LessContext ctx) {
+    super(ctx);
+  }
+
+  /**
+   * Evaluates the stylesheet with the given overrides, reusing results from the
+   * previous snapshot where possible. The previous snapshot may be null.
+   */
+  public Snapshot evaluate(Stylesheet sheet, Map<String, Node> overrides, Snapshot previous) throws LessException {
+    Set<String> affected = affected(sheet, overrides, previous);
+    if (affected == null) {
+      return evaluateFull(sheet, overrides);
+    }
+    return evaluateChanged(previous, overrides, affected);
+  }
+
+  /**
+   * Evaluates every node in the stylesheet, recording dependencies.
+   */
+  private Snapshot evaluateFull(Stylesheet sheet, Map<String, Node> overrides) throws LessException {
+    List<String> names = new ArrayList<>(overrides.keySet());
+    Stylesheet stylesheet = sheet.copy();
+    root = stylesheet.block();
+    for (String name : names) {
+      root.appendNode(new Definition(name, overrides.get(name)));
+    }
+
+    ExecEnv env = ctx.newEnv();
+    EvalState state = env.state();
+    state.trackDependencies(root);
+    env.push(stylesheet);
+
+    // Top-level mixin calls are expanded once and their dependencies recorded together.
+    Set<String> expansion = new HashSet<>();
+    state.recordDependencies(expansion);
+    expandMixins(env, root);
+    state.recordDependencies(null);
+
+    Block expanded = root.copy();
+    int size = root.rules().size();
+    results = new Node[size];
+    dependencies = new ArrayList<>(Collections.nCopies(size, Collections.<String>emptySet()));
+    evaluateRules(env, root, false);
+    env.pop();
+    if (env.hasError()) {
+      throw env.error();
+    }
+
+    boolean incremental = !exceededThresholds();
+    checkThresholds(stylesheet);
+    return new Snapshot(sheet, names, overrides, expanded, size - names.size(), expansion,
+        results, dependencies, stylesheet, incremental, evaluated);
+  }
+
+  /**
+   * Evaluates only the nodes which depend on an affected definition.
+   */
+  private Snapshot evaluateChanged(Snapshot previous, Map<String, Node> overrides, Set<String> affected)
+      throws LessException {
+    this.previous = previous;
+    Block block = previous.expanded.copy();
+    block.resetVariableCache();
+    FlexList<Node> rules = block.rules();
+    List<String> names = previous.names;
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.get(i);
+      rules.set(previous.overrideStart + i, new Definition(name, overrides.get(name)));
+    }
+
+    int size = rules.size();
+    dirty = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      dirty[i] = i >= previous.overrideStart || intersects(previous.dependencies.get(i), affected);
+    }
+
+    Stylesheet stylesheet = new Stylesheet(block);
+    root = block;
+    results = new Node[size];
+    dependencies = new ArrayList<>(previous.dependencies);
+
+    ExecEnv env = ctx.newEnv();
+    env.state().trackDependencies(root);
+    env.push(stylesheet);
+    evaluateRules(env, root, false);
+    env.pop();
+    if (env.hasError()) {
+      throw env.error();
+    }
+
+    boolean incremental = !exceededThresholds();
+    checkThresholds(stylesheet);
+    return new Snapshot(previous.source, names, overrides, previous.expanded, previous.overrideStart,
+        previous.expansion, results, dependencies, stylesheet, incremental, evaluated);
+  }
+
+  @Override
+  protected Node evaluateNode(ExecEnv env, Block block, Node node, boolean forceImportant) throws LessException {
+    if (block != root) {
+      return super.evaluateNode(env, block, node, forceImportant);
+    }
+
+    FlexList<Node> rules = block.rules();
+    while (rules.get(cursor) != node) {
+      cursor++;
+    }
+    int index = cursor++;
+
+    if (dirty != null && !dirty[index]) {
+      Node result = previous.results[index];
+      registerClosures(env, result);
+      if (result instanceof Directive && ((Directive)result).name().equals("@charset") && block.charset() == null) {
+        block.charset((Directive)result);
+      }
+      results[index] = result;
+      return result;
+    }
+
+    EvalState state = env.state();
+    Set<String> recorded = new HashSet<>();
+    Set<String> saved = state.recordDependencies(recorded);
+    try {
+      Node result = super.evaluateNode(env, block, node, forceImportant);
+      results[index] = result;
+      evaluated++;
+      return result;
+    } finally {
+      state.recordDependencies(saved);
+      dependencies.set(index, recorded);
+    }
+  }
+
+  /**
+   * Registers the closures of the mixins defined within a reused result, as
+   * evaluating it would have done.
+   */
+  private void registerClosures(ExecEnv env, Node node) throws LessException {
+    if (node instanceof Mixin) {
+      Mixin mixin = (Mixin)node;
+      if (env.state().closure(mixin) == null) {
+        env.state().closure(mixin, env);
+      }
+
+    } else if (node instanceof Ruleset || node instanceof Media || node instanceof BlockDirective) {
+      BlockNode blockNode = (BlockNode)node;
+      env.push(blockNode);
+      FlexList<Node> rules = blockNode.block().rules();
+      int size = rules.size();
+      for (int i = 0; i < size; i++) {
+        registerClosures(env, rules.get(i));
+      }
+      env.pop();
+    }
+  }
+
+  /**
+   * Returns the names of the definitions affected by changes to the overrides,
+   * or null if a full evaluation is required.
+   */
+  private static Set<String> affected(Stylesheet sheet, Map<String, Node> overrides, Snapshot previous) {
+    if (previous == null || previous.source != sheet || !previous.incremental
+        || !previous.overrides.keySet().equals(overrides.keySet())) {
+      return null;
+    }
+
+    Set<String> affected = new HashSet<>();
+    for (Map.Entry<String, Node> entry : overrides.entrySet()) {
+      if (!LessUtils.safeEquals(entry.getValue(), previous.overrides.get(entry.getKey()))) {
+        affected.add(entry.getKey());
+      }
+    }
+    if (intersects(previous.expansion, affected)) {
+      return null;
+    }
+
+    // Follow references between top-level definitions until no new names are added.
+    FlexList<Node> rules = previous.expanded.rules();
+    boolean changed = !affected.isEmpty();
+    while (changed) {
+      changed = false;
+      for (int i = 0; i < rules.size(); i++) {
+        Node node = rules.get(i);
+        if (node instanceof Definition) {
+          String name = ((Definition)node).name();
+          if (!affected.contains(name) && intersects(previous.dependencies.get(i), affected)) {
+            affected.add(name);
+            changed = true;
+          }
+        }
+      }
+    }
+    return affected;
+  }
+
+  private static boolean intersects(Set<String> names, Set<String> affected) {
+    for (String name : names) {
+      if (affected.contains(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Result of evaluating a stylesheet with a set of overrides, retaining what
+   * is needed to re-evaluate it when the override values change.
+   */
+  public static class Snapshot {
+
+    private final Stylesheet source;
+
+    private final List<String> names;
+
+    private final Map<String, Node> overrides;
+
+    /**
+     * Top-level block after expanding mixin calls, before evaluation.
+     */
+    private final Block expanded;
+
+    private final int overrideStart;
+
+    /**
+     * Dependencies of the top-level mixin call expansion.
+     */
+    private final Set<String> expansion;
+
+    private final Node[] results;
+
+    private final List<Set<String>> dependencies;
+
+    private final Stylesheet result;
+
+    private final boolean incremental;
+
+    private final int evaluated;
+
+    Snapshot(Stylesheet source, List<String> names, Map<String, Node> overrides, Block expanded,
+        int overrideStart, Set<String> expansion, Node[] results, List<Set<String>> dependencies,
+        Stylesheet result, boolean incremental, int evaluated) {
+      this.source = source;
+      this.names = names;
+      this.overrides = new LinkedHashMap<>(overrides);
+      this.expanded = expanded;
+      this.overrideStart = overrideStart;
+      this.expansion = expansion;
+      this.results = results;
+      this.dependencies = dependencies;
+      this.result = result;
+      this.incremental = incremental;
+      this.evaluated = evaluated;
+    }
+
+    /**
+     * Returns the evaluated stylesheet.
+     */
+    public Stylesheet result() {
+      return result;
+    }
+
+    /**
+     * Returns the number of top-level nodes evaluated to produce this snapshot.
+     */
+    public int evaluated() {
+      return evaluated;
+    }
+
+    /**
+     * Returns the number of top-level nodes in the evaluated stylesheet.
+     */
+    public int size() {
+      return results.length;
+    }
+
+  }
+
+}
@@ -20,12 +20,17 @@ import static com.squarespace.less.core.Constants.FALSE;
 import static com.squarespace.less.core.ExecuteErrorMaker.mixinRecurse;
 import static com.squarespace.less.core.ExecuteErrorMaker.mixinUndefined;
 
+import java.nio.file.Path;
 import java.util.List;
 
+import com.squarespace.less.CompileListener;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.LessOptions;
+import com.squarespace.less.LessStats;
 import com.squarespace.less.core.FlexList;
+import com.squarespace.less.jfr.LessEvaluateEvent;
+import com.squarespace.less.jfr.LessMixinCallEvent;
 import com.squarespace.less.model.Block;
 import com.squarespace.less.model.BlockDirective;
 import com.squarespace.less.model.Comment;
@@ -116,11 +121,47 @@ public class LessEvaluator {
    * mixins, imports, etc have been evaluated and expanded.
    */
   public Stylesheet evaluate(Stylesheet sheet) throws LessException {
-    ExecEnv env = ctx.newEnv();
-    Stylesheet result = evaluateStylesheet(env, sheet);
-    if (env.hasError()) {
-      throw env.error();
+    LessStats stats = ctx.stats();
+    int mixinCalls = stats.mixinCalls();
+    int functionCalls = stats.functionCalls();
+    int variableLookups = stats.variableLookups();
+    LessEvaluateEvent event = new LessEvaluateEvent();
+    event.begin();
+    try {
+      ExecEnv env = ctx.newEnv();
+      Stylesheet result = evaluateStylesheet(env, sheet);
+      if (env.hasError()) {
+        throw env.error();
+      }
+      checkThresholds(result);
+      return result;
+
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        Path fileName = sheet.fileName();
+        event.path = fileName == null ? null : fileName.toString();
+        event.complexity = complexity;
+        event.mixinCalls = stats.mixinCalls() - mixinCalls;
+        event.functionCalls = stats.functionCalls() - functionCalls;
+        event.variableLookups = stats.variableLookups() - variableLookups;
+        event.thresholdExceeded = exceededThresholds();
+        event.commit();
+      }
     }
+  }
+
+  /**
+   * Indicates whether evaluation exceeded one or more thresholds.
+   */
+  protected boolean exceededThresholds() {
+    return fast_exit || complexity > COMPLEXITY_THRESHOLD || mixins > MIXIN_THRESHOLD || size > SIZE_THRESHOLD;
+  }
+
+  /**
+   * Appends a comment to the evaluated stylesheet for each threshold exceeded.
+   */
+  protected void checkThresholds(Stylesheet result) {
     if (fast_exit) {
       result.add(new Comment(" ERROR: Evaluation incomplete: stylesheet exceeded one or more thresholds! ", true));
     }
@@ -133,7 +174,6 @@ public class LessEvaluator {
     if (size > SIZE_THRESHOLD) {
       result.add(new Comment(" EVAL: exceeded size limit: " + size + " ", true));
     }
-    return result;
   }
 
   /**
@@ -191,17 +231,17 @@ public class LessEvaluator {
       }
     }
 
-    Ruleset original = (Ruleset)input.original();
+    EvalState state = env.state();
     Ruleset ruleset = input.copy(env);
 
     env.push(ruleset);
-    original.enter();
+    state.enter(input);
 
     Block block = ruleset.block();
     expandMixins(env, block);
     evaluateRules(env, block, forceImportant);
 
-    original.exit();
+    state.exit(input);
     env.pop();
     return ruleset;
   }
@@ -251,73 +291,12 @@ public class LessEvaluator {
       if (node == null) {
         continue;
       }
+      if (node instanceof ImportMarker) {
+        ImportMarker marker = (ImportMarker) node;
+        currentImport = marker.beginning() ? marker.importStatement() : null;
+      }
       try {
-        switch (node.type()) {
-
-          case BLOCK_DIRECTIVE:
-            node = evaluateBlockDirective(env, (BlockDirective)node);
-            break;
-
-          case DEFINITION:
-            Definition def = (Definition)node;
-            size += def.size();
-            Definition newDef = def.copy(def.dereference(env));
-            newDef.warnings(env.warnings());
-            node = newDef;
-            break;
-
-          case DIRECTIVE:
-            Directive directive = (Directive)(node.eval(env));
-            size += directive.size();
-            if (directive.name().equals("@charset")) {
-              if (block.charset() == null) {
-                block.charset(directive);
-              }
-            }
-            node = directive;
-            break;
-
-          case IMPORT_MARKER:
-            ImportMarker marker = (ImportMarker) node;
-            currentImport = marker.beginning() ? marker.importStatement() : null;
-            break;
-
-          case MEDIA:
-            node = evaluateMedia(env, (Media)node);
-            break;
-
-          case MIXIN:
-            // Register the closure on the original MIXIN.
-            Mixin mixin = (Mixin) ((Mixin)node).original();
-            if (mixin.closure() == null) {
-              mixin.closure(env);
-            }
-            break;
-
-          case MIXIN_CALL:
-            break;
-
-          case RULESET:
-            node = evaluateRuleset(env, (Ruleset)node, forceImportant);
-            break;
-
-          case RULE:
-            Rule rule = (Rule) node;
-            size += rule.size();
-            Rule newRule = null;
-            if (forceImportant && !rule.important()) {
-              newRule = rule.copy(rule.value().eval(env), forceImportant);
-            } else {
-              newRule = (Rule)rule.eval(env);
-            }
-            newRule.warnings(env.warnings());
-            node = newRule;
-            break;
-
-          default:
-            node = node.eval(env);
-            break;
-        }
+        node = evaluateNode(env, block, node, forceImportant);
 
       } catch (LessException e) {
         if (!env.hasError()) {
@@ -341,6 +320,86 @@ public class LessEvaluator {
 
   }
 
+  /**
+   * Evaluates a single rule within the block, returning the node which replaces it.
+   */
+  protected Node evaluateNode(ExecEnv env, Block block, Node node, boolean forceImportant) throws LessException {
+    switch (node.type()) {
+
+      case BLOCK_DIRECTIVE:
+        node = evaluateBlockDirective(env, (BlockDirective)node);
+        break;
+
+      case DEFINITION:
+        Definition def = (Definition)node;
+        size += def.size();
+        Definition newDef = def.copy(def.dereference(env));
+        newDef.warnings(env.warnings());
+        node = newDef;
+        break;
+
+      case DIRECTIVE:
+        Directive directive = (Directive)(node.eval(env));
+        size += directive.size();
+        if (directive.name().equals("@charset")) {
+          if (block.charset() == null) {
+            block.charset(directive);
+          }
+        }
+        node = directive;
+        break;
+
+      case IMPORT_MARKER:
+        break;
+
+      case MEDIA:
+        node = evaluateMedia(env, (Media)node);
+        break;
+
+      case MIXIN:
+        // Register the closure for the original MIXIN.
+        Mixin mixin = (Mixin)node;
+        if (env.state().closure(mixin) == null) {
+          env.state().closure(mixin, env);
+        }
+        break;
+
+      case MIXIN_CALL:
+        break;
+
+      case RULESET:
+        node = evaluateRuleset(env, (Ruleset)node, forceImportant);
+        break;
+
+      case RULE:
+        Rule rule = (Rule) node;
+        size += rule.size();
+        Rule newRule = null;
+        if (forceImportant && !rule.important()) {
+          newRule = rule.copy(rule.value().eval(env), forceImportant);
+        } else {
+          newRule = (Rule)rule.eval(env);
+        }
+
+        // The rule may be shared with other evaluations, so warnings are
+        // attached to a copy.
+        String warnings = env.warnings();
+        if (warnings != null) {
+          if (newRule == rule) {
+            newRule = rule.copy(rule.value(), rule.important());
+          }
+          newRule.warnings(warnings);
+        }
+        node = newRule;
+        break;
+
+      default:
+        node = node.eval(env);
+        break;
+    }
+    return node;
+  }
+
   /**
    * Iterate over all rules in this block and execute all of the MIXIN_CALL rules found.
    * Each successful call will produce multiple rules. We replace the call with
@@ -373,9 +432,8 @@ public class LessEvaluator {
         block.splice(i, 1, other);
         i += other.size() - 1;
 
-        // Indicate the block has changed, new variable definitions may have
-        // been added.
-        block.resetVariableCache();
+        // The block indexes any variable definitions spliced in, but may
+        // now contain other kinds of rules.
         block.orFlags(mixinResult);
 
         // All rules added by expanding a mixin add to stylesheet complexity.
@@ -406,11 +464,49 @@ public class LessEvaluator {
       return null;
     }
 
+    CompileListener listener = ctx.listener();
+    long started = 0;
+    if (listener != null) {
+      started = System.nanoTime();
+      listener.mixinCallStart(call, started);
+    }
+    LessMixinCallEvent event = new LessMixinCallEvent();
+    event.begin();
+    Block results = null;
+    try {
+      results = executeMixinCall(env, call, event);
+      return results;
+
+    } finally {
+      if (listener != null) {
+        listener.mixinCallEnd(call, results == null ? 0 : results.rules().size(), started, System.nanoTime());
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        Path fileName = call.fileName();
+        event.call = ctx.render(call.selector());
+        event.path = fileName == null ? null : fileName.toString();
+        event.line = call.lineOffset() + 1;
+        event.mixinDepth = ctx.mixinDepth();
+        event.commit();
+      }
+    }
+  }
+
+  private Block executeMixinCall(ExecEnv env, MixinCall call, LessMixinCallEvent event) throws LessException {
+    // The rules produced by a mixin calling another depend on the mixins in scope.
+    env.state().impure();
+
+    CompileListener listener = ctx.listener();
+    long started = listener == null ? 0 : System.nanoTime();
     MixinMatcher matcher = new MixinMatcher(env, call);
     MixinResolver resolver = ctx.mixinResolver();
     resolver.reset(matcher);
     env.resolveMixins(resolver);
     List<MixinMatch> matches = resolver.matches();
+    if (listener != null) {
+      listener.mixinResolved(call, matches.size(), started, System.nanoTime());
+    }
     if (matches.isEmpty()) {
       LessException exc = new LessException(mixinUndefined(ctx.render(call.selector())));
       exc.push(call);
@@ -420,6 +516,7 @@ public class LessEvaluator {
     Block results = new Block();
     int calls = 0;
     int size = matches.size();
+    event.matches = size;
     mixins += size;
 
     if (mixins > MIXIN_THRESHOLD) {
@@ -429,13 +526,23 @@ public class LessEvaluator {
     for (int i = 0; i < size; i++) {
       MixinMatch match = matches.get(i);
       Node node = match.mixin();
-      if (node instanceof Mixin) {
-        if (executeMixin(env, results, matcher, match)) {
-          calls++;
+      if (listener != null) {
+        started = System.nanoTime();
+        listener.mixinStart(call, node, started);
+      }
+      try {
+        if (node instanceof Mixin) {
+          if (executeMixin(env, results, matcher, match)) {
+            calls++;
+          }
+        } else if (node instanceof Ruleset) {
+          if (executeRulesetMixin(env, results, matcher, match)) {
+            calls++;
+          }
         }
-      } else if (node instanceof Ruleset) {
-        if (executeRulesetMixin(env, results, matcher, match)) {
-          calls++;
+      } finally {
+        if (listener != null) {
+          listener.mixinEnd(call, node, started, System.nanoTime());
         }
       }
     }
@@ -463,7 +570,7 @@ public class LessEvaluator {
       throws LessException {
 
     MixinCall call = matcher.mixinCall();
-    Mixin mixin = ((Mixin)match.mixin()).copy();
+    Mixin matched = (Mixin)match.mixin();
     MixinParams params = (MixinParams) match.params().eval(env);
 
     // Attempt to bind the arguments to this mixin's parameters. If the argument binding
@@ -475,10 +582,11 @@ public class LessEvaluator {
 
     // If the closure has been set on this mixin, use it.
     env = env.copy();
-    Mixin original = (Mixin) mixin.original();
-    ExecEnv closureEnv = original.closure();
+    EvalState state = env.state();
+    Mixin original = (Mixin) matched.original();
+    ExecEnv closureEnv = state.closure(original);
     if (closureEnv != null) {
-      env.append(closureEnv.frames());
+      env.append(closureEnv);
     }
 
     // Push the argument bindings onto the closure stack and create the dual stack.
@@ -487,7 +595,7 @@ public class LessEvaluator {
     env.push(bindings);
 
     // Evaluate the guard conditions. If FALSE, bail out.
-    Guard guard = mixin.guard();
+    Guard guard = matched.guard();
     if (guard != null) {
       Node result = guard.eval(env);
       if (FALSE.equals(result)) {
@@ -501,8 +609,34 @@ public class LessEvaluator {
       throw new LessException(mixinRecurse(call.path(), opts.mixinRecursionLimit()));
     }
 
-    // Enter the mixin body and execute it.
-    original.enter();
+    // Reuse the rules produced by a pure expansion of the mixin with equal
+    // arguments. The rules are shared by every call site, and are copied
+    // before warnings are attached to them. Otherwise record whether this
+    // expansion is pure, unless warnings raised by the caller are pending,
+    // since the expansion's first rule would carry them.
+    MixinMemo memo = opts.tracing() ? null : state.memo(original);
+    String key = null;
+    MixinMemo.Recording recording = null;
+    if (memo != null) {
+      key = MixinMemo.key(bindings.block(), call.important());
+      MixinMemo.Expansion expansion = memo.get(key, bindings.block());
+      if (expansion != null) {
+        collector.appendBlock(expansion.block());
+        complexity += expansion.complexity();
+        size += expansion.size();
+        return true;
+      }
+      if (!env.hasWarnings()) {
+        env.mark();
+        recording = state.startRecording();
+      }
+    }
+    int startComplexity = complexity;
+    int startSize = size;
+
+    // Enter the mixin body and execute it, on a copy since expansion modifies it.
+    Mixin mixin = matched.copy();
+    state.enter(original);
     ctx.enterMixin();
 
     env.push(mixin);
@@ -528,6 +662,14 @@ public class LessEvaluator {
         return true;
       }
 
+      if (recording != null) {
+        if (!recording.pure()) {
+          memo.markImpure();
+        } else if (!fast_exit) {
+          memo.put(key, bindings.block(), block, complexity - startComplexity, size - startSize);
+        }
+      }
+
     } catch (LessException e) {
       // If any errors occur inside a mixin call, we want to show the actual
       // arguments to the mixin call.
@@ -535,9 +677,14 @@ public class LessEvaluator {
       actualCall.args(matcher.mixinArgs());
       e.push(actualCall);
       throw e;
+
+    } finally {
+      if (recording != null) {
+        state.stopRecording(recording);
+      }
     }
     ctx.exitMixin();
-    original.exit();
+    state.exit(original);
     return true;
   }
 
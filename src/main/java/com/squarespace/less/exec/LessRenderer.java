@@ -18,14 +18,18 @@ package com.squarespace.less.exec;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
+import com.squarespace.less.CompileListener;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.LessOptions;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.FlexList;
+import com.squarespace.less.jfr.LessRenderEvent;
 import com.squarespace.less.model.Block;
 import com.squarespace.less.model.BlockDirective;
+import com.squarespace.less.model.BlockNode;
 import com.squarespace.less.model.Comment;
 import com.squarespace.less.model.Definition;
 import com.squarespace.less.model.Directive;
@@ -82,7 +86,12 @@ public class LessRenderer {
   /**
    * CSS model to build.
    */
-  private final CssModel model;
+  private CssModel model;
+
+  /**
+   * Rendered output of top-level blocks, keyed by node identity.
+   */
+  private final Map<Node, String> fragments;
 
   /**
    * Sequence for generating trace identifiers.
@@ -105,39 +114,71 @@ public class LessRenderer {
   private boolean size_warning = false;
 
   protected LessRenderer(LessContext context, Stylesheet stylesheet) {
+    this(context, stylesheet, null);
+  }
+
+  protected LessRenderer(LessContext context, Stylesheet stylesheet, Map<Node, String> fragments) {
     this.ctx = context;
     this.stylesheet = stylesheet;
     this.env = context.newRenderEnv();
     this.opts = context.options();
     this.model = new CssModel(context);
+    this.fragments = fragments;
   }
 
   public static String render(LessContext context, Stylesheet sheet) throws LessException {
     return new LessRenderer(context, sheet).render();
   }
 
+  /**
+   * Renders the stylesheet, reusing the output of any top-level block found in
+   * the fragments map, and adding the output of the others. The map must compare
+   * keys by identity.
+   */
+  public static String render(LessContext context, Stylesheet sheet, Map<Node, String> fragments)
+      throws LessException {
+    return new LessRenderer(context, sheet, fragments).render();
+  }
+
   /**
    * Render the {@link Stylesheet} to the {@link CssModel} and return the
    * rendered output.
    */
   public String render() throws LessException {
-    env.push(stylesheet);
-    Block block = stylesheet.block();
-    Directive charset = block.charset();
-    if (charset != null) {
-      model.value(ctx.render(charset));
-    }
-    renderImports(block);
-    renderBlock(block, false);
-    env.pop();
+    LessRenderEvent event = new LessRenderEvent();
+    event.begin();
+    String result = null;
+    try {
+      env.push(stylesheet);
+      Block block = stylesheet.block();
+      Directive charset = block.charset();
+      if (charset != null) {
+        model.value(ctx.render(charset));
+      }
+      renderImports(block);
+      renderBlock(block, false);
+      env.pop();
 
-    if (model.complexity() > COMPLEXITY_THRESHOLD) {
-      model.comment("/* RENDER: exceeded render complexity limit: " + model.complexity() + " */");
-    }
-    if (model.size() > SIZE_THRESHOLD) {
-      model.comment("/* RENDER: exceeded render complexity limit: " + model.size() + " chars */");
+      if (model.complexity() > COMPLEXITY_THRESHOLD) {
+        model.comment("/* RENDER: exceeded render complexity limit: " + model.complexity() + " */");
+      }
+      if (model.size() > SIZE_THRESHOLD) {
+        model.comment("/* RENDER: exceeded render complexity limit: " + model.size() + " chars */");
+      }
+      result = model.render();
+      return result;
+
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        Path fileName = stylesheet.fileName();
+        event.path = fileName == null ? null : fileName.toString();
+        event.size = result == null ? 0 : result.length();
+        event.complexity = model.complexity();
+        event.thresholdExceeded = model.complexity() > COMPLEXITY_THRESHOLD || model.size() > SIZE_THRESHOLD;
+        event.commit();
+      }
     }
-    return model.render();
   }
 
   /**
@@ -244,6 +285,9 @@ public class LessRenderer {
       return;
     }
 
+    boolean root = block == stylesheet.block();
+    boolean topLevel = fragments != null && root;
+    CompileListener listener = root ? ctx.listener() : null;
     FlexList<Node> rules = block.rules();
     int size = rules.size();
     for (int i = 0; i < size; i++) {
@@ -251,68 +295,137 @@ public class LessRenderer {
       if (node == null) {
         continue;
       }
-      switch (node.type()) {
-
-        case BLOCK_DIRECTIVE:
-          renderBlockDirective((BlockDirective)node);
-          break;
-
-        case COMMENT:
-          Comment comment = (Comment)node;
-          if (comment.block() && (!opts.compress() || comment.hasBang())) {
-            model.comment(ctx.render(comment));
-          }
-          break;
-
-        case DEFINITION:
-          renderDefinition((Definition)node);
-          break;
-
-        case DIRECTIVE:
-          Directive directive = (Directive)node;
-          if (!directive.name().equals("@charset")) {
-            model.value(ctx.render(directive));
-          }
-          break;
-
-        case IMPORT:
-          if (includeImports) {
-            renderImport((Import)node);
-          }
-          break;
-
-        case IMPORT_MARKER:
-          renderImportMarker((ImportMarker)node);
-          break;
-
-        case MEDIA:
-          renderMedia((Media)node);
-          break;
-
-        case MIXIN:
-          // Ignore in render phase.
-          break;
-
-        case MIXIN_MARKER:
-          renderMixinMarker((MixinMarker)node);
-          break;
+      if (listener == null || !isFragment(node)) {
+        renderNode(node, includeImports, topLevel);
+        continue;
+      }
+      long started = System.nanoTime();
+      listener.renderStart((BlockNode)node, started);
+      try {
+        renderNode(node, includeImports, topLevel);
+      } finally {
+        listener.renderEnd((BlockNode)node, started, System.nanoTime());
+      }
+    }
+  }
 
-        case RULE:
-          renderRule((Rule)node);
-          break;
+  /**
+   * Render a single child of a {@link Block}.
+   */
+  private void renderNode(Node node, boolean includeImports, boolean topLevel) throws LessException {
+    if (topLevel && isFragment(node)) {
+      renderFragment(node);
+      return;
+    }
+    switch (node.type()) {
+
+      case BLOCK_DIRECTIVE:
+        renderBlockDirective((BlockDirective)node);
+        break;
+
+      case COMMENT:
+        Comment comment = (Comment)node;
+        if (comment.block() && (!opts.compress() || comment.hasBang())) {
+          model.comment(ctx.render(comment));
+        }
+        break;
+
+      case DEFINITION:
+        renderDefinition((Definition)node);
+        break;
+
+      case DIRECTIVE:
+        Directive directive = (Directive)node;
+        if (!directive.name().equals("@charset")) {
+          model.value(ctx.render(directive));
+        }
+        break;
+
+      case IMPORT:
+        if (includeImports) {
+          renderImport((Import)node);
+        }
+        break;
+
+      case IMPORT_MARKER:
+        renderImportMarker((ImportMarker)node);
+        break;
+
+      case MEDIA:
+        renderMedia((Media)node);
+        break;
+
+      case MIXIN:
+        // Ignore in render phase.
+        break;
+
+      case MIXIN_MARKER:
+        renderMixinMarker((MixinMarker)node);
+        break;
+
+      case RULE:
+        renderRule((Rule)node);
+        break;
+
+      case RULESET:
+        renderRuleset((Ruleset)node);
+        break;
+
+      default:
+        // Ignore unhandled nodes. We may have exceeded a complexity threshold during
+        // evaluation, which could leave some nodes in the stylesheet unevaluated.
+        // Some of these nodes have no rendering representation (e.g. MIXIN_CALL) so must
+        // be ignored.
+        break;
+    }
+  }
 
-        case RULESET:
-          renderRuleset((Ruleset)node);
-          break;
+  /**
+   * Indicates the node is a block whose output, at the top level, is independent of
+   * the other blocks.
+   */
+  private static boolean isFragment(Node node) {
+    return node instanceof Ruleset || node instanceof Media || node instanceof BlockDirective;
+  }
 
-        default:
-          // Ignore unhandled nodes. We may have exceeded a complexity threshold during
-          // evaluation, which could leave some nodes in the stylesheet unevaluated.
-          // Some of these nodes have no rendering representation (e.g. MIXIN_CALL) so must
-          // be ignored.
-          break;
+  /**
+   * Render a top-level {@link Ruleset}, {@link Media} or {@link BlockDirective} into
+   * its own model and append the output, reusing any earlier output for the same node.
+   * Output containing warnings is not reused since warnings are numbered sequentially.
+   */
+  private void renderFragment(Node node) throws LessException {
+    String fragment = fragments.get(node);
+    if (fragment == null) {
+      CssModel saved = model;
+      int warnings = warningId;
+      model = new CssModel(ctx);
+      try {
+        switch (node.type()) {
+
+          case BLOCK_DIRECTIVE:
+            renderBlockDirective((BlockDirective)node);
+            break;
+
+          case MEDIA:
+            renderMedia((Media)node);
+            break;
+
+          case RULESET:
+            renderRuleset((Ruleset)node);
+            break;
+
+          default:
+            break;
+        }
+        fragment = model.render();
+      } finally {
+        model = saved;
+      }
+      if (warningId == warnings) {
+        fragments.put(node, fragment);
       }
     }
+    model.fragment(fragment);
   }
 
   /**
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Node;
+
+
+/**
+ * Rules produced by the pure expansions of a mixin, keyed by the arguments
+ * bound to its parameters.
+ *
+ * An expansion is pure if it reads no variables from outside the mixin's
+ * bindings and body, calls no mixins and emits no warnings. Its rules then
+ * depend only on the bound arguments, and calls binding equal arguments can
+ * share them. Once an expansion of the mixin is impure, no more are recorded.
+ */
+final class MixinMemo {
+
+  /**
+   * Maximum number of expansions kept for a mixin.
+   */
+  private static final int LIMIT = 64;
+
+  private final Map<String, Expansion> expansions = new HashMap<>();
+
+  private boolean impure;
+
+  /**
+   * Indicates an expansion of the mixin was impure.
+   */
+  boolean impure() {
+    return impure;
+  }
+
+  /**
+   * Marks the mixin as impure, discarding its expansions.
+   */
+  void markImpure() {
+    impure = true;
+    expansions.clear();
+  }
+
+  /**
+   * Returns the expansion for arguments equal to the bindings, if any.
+   */
+  Expansion get(String key, Block bindings) {
+    Expansion expansion = expansions.get(key);
+    return expansion != null && expansion.bindings.equals(bindings) ? expansion : null;
+  }
+
+  /**
+   * Records the rules produced by binding the arguments, and the complexity
+   * and size the expansion added to the stylesheet.
+   */
+  void put(String key, Block bindings, Block block, int complexity, int size) {
+    if (expansions.size() < LIMIT) {
+      expansions.put(key, new Expansion(bindings, block, complexity, size));
+    }
+  }
+
+  /**
+   * Builds the key for the bindings. Values which are equal may render
+   * differently, so the key uses their representations.
+   */
+  static String key(Block bindings, boolean important) {
+    Buffer buf = new Buffer(0);
+    buf.append(important ? '!' : ' ');
+    FlexList<Node> rules = bindings.rules();
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Definition def = (Definition)rules.get(i);
+      buf.append(def.name()).append(':');
+      def.value().repr(buf);
+      buf.append(';');
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Rules produced by a pure expansion.
+   */
+  static final class Expansion {
+
+    private final Block bindings;
+
+    private final Block block;
+
+    private final int complexity;
+
+    private final int size;
+
+    Expansion(Block bindings, Block block, int complexity, int size) {
+      this.bindings = bindings;
+      this.block = block;
+      this.complexity = complexity;
+      this.size = size;
+    }
+
+    Block block() {
+      return block;
+    }
+
+    int complexity() {
+      return complexity;
+    }
+
+    int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Tracks whether an expansion in progress is pure.
+   */
+  static final class Recording {
+
+    private final Recording outer;
+
+    private boolean pure = true;
+
+    Recording(Recording outer) {
+      this.outer = outer;
+    }
+
+    Recording outer() {
+      return outer;
+    }
+
+    boolean pure() {
+      return pure;
+    }
+
+    void impure() {
+      pure = false;
+    }
+  }
+
+}
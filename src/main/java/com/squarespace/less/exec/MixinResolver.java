@@ -110,8 +110,7 @@ public class MixinResolver {
     if (!ruleset.hasMixinPath()) {
       return false;
     }
-    Ruleset original = (Ruleset)ruleset.original();
-    if (original.evaluating()) {
+    if (matcher.callEnv().state().evaluating(ruleset)) {
       return false;
     }
 
@@ -155,16 +154,19 @@ public class MixinResolver {
     }
 
     // Evaluate the mixin's params in order to perform pattern-matching.
+    // Constant params evaluate to themselves, so skip setting up the env.
     MixinParams params = mixin.params();
-    ExecEnv env = matcher.callEnv().copy();
+    if (params.needsEval()) {
+      ExecEnv env = matcher.callEnv().copy();
 
-    // Append the mixin definitions closure frames, if any.
-    ExecEnv defEnv = mixin.closure();
-    if (defEnv != null) {
-      env.append(defEnv.frames().copy());
+      // Append the mixin definitions closure frames, if any.
+      ExecEnv defEnv = env.state().closure(mixin);
+      if (defEnv != null) {
+        env.append(defEnv);
+      }
+      params = (MixinParams) params.eval(env);
     }
 
-    params = (MixinParams) params.eval(env);
     boolean matches = matcher.patternMatch(params);
 
     if (matches) {
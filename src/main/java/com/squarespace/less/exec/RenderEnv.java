@@ -105,6 +105,7 @@ public class RenderEnv {
       frame.pushEmptySelectors();
     } else if (selectors != null) {
       frame.mergeSelectors(selectors);
+      ctx.stats().selectorsCombined(frame.selectors().selectors().size());
     } else if (features != null) {
       frame.mergeFeatures(features);
     }
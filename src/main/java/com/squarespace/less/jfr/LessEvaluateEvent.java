@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight recorder event for the evaluation of a stylesheet.
+ */
+@Name("com.squarespace.less.Evaluate")
+@Label("LESS Evaluate")
+@Category("LESS")
+@Description("Evaluation of a parsed stylesheet")
+@StackTrace(false)
+public class LessEvaluateEvent extends jdk.jfr.Event {
+
+  @Label("File")
+  public String path;
+
+  @Label("Complexity")
+  @Description("Number of rules evaluated")
+  public int complexity;
+
+  @Label("Mixin Calls")
+  public int mixinCalls;
+
+  @Label("Function Calls")
+  public int functionCalls;
+
+  @Label("Variable Lookups")
+  public int variableLookups;
+
+  @Label("Threshold Exceeded")
+  @Description("Evaluation exceeded a complexity, mixin or size limit")
+  public boolean thresholdExceeded;
+
+}
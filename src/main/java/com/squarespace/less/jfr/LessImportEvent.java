@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight recorder event for an import, including the load and parse of the
+ * imported file and its own imports.
+ */
+@Name("com.squarespace.less.Import")
+@Label("LESS Import")
+@Category("LESS")
+@Description("Resolve, load and parse of an imported stylesheet")
+@StackTrace(false)
+public class LessImportEvent extends jdk.jfr.Event {
+
+  @Label("Import Path")
+  public String path;
+
+  @Label("Imported From")
+  public String importedFrom;
+
+  @Label("Line")
+  public int line;
+
+  @Label("Import Depth")
+  public int importDepth;
+
+  @Label("Files Read")
+  @Description("Number of files read, including nested imports, rather than found in a cache")
+  public int filesRead;
+
+}
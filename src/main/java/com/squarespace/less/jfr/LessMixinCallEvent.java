@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * Flight recorder event for a mixin call, including the execution of every
+ * mixin it matched. Only calls taking longer than the threshold are recorded,
+ * 1 ms by default.
+ */
+@Name("com.squarespace.less.MixinCall")
+@Label("LESS Mixin Call")
+@Category("LESS")
+@Description("Resolution and execution of a mixin call")
+@StackTrace(false)
+@Threshold("1 ms")
+public class LessMixinCallEvent extends jdk.jfr.Event {
+
+  @Label("Call")
+  public String call;
+
+  @Label("File")
+  public String path;
+
+  @Label("Line")
+  public int line;
+
+  @Label("Matches")
+  @Description("Number of mixins and rulesets matching the call")
+  public int matches;
+
+  @Label("Mixin Depth")
+  public int mixinDepth;
+
+}
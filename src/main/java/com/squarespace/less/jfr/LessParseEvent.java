@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight recorder event for the parse of a stylesheet, including the parse
+ * of any files it imports.
+ */
+@Name("com.squarespace.less.Parse")
+@Label("LESS Parse")
+@Category("LESS")
+@Description("Parse of a stylesheet, including its imports")
+@StackTrace(false)
+public class LessParseEvent extends jdk.jfr.Event {
+
+  @Label("File")
+  public String path;
+
+  @Label("Source Size")
+  @Description("Size of the source in characters")
+  public int size;
+
+  @Label("Import Depth")
+  public int importDepth;
+
+  @Label("Rollbacks")
+  @Description("Number of times the parser backtracked")
+  public int rollbacks;
+
+}
@@ -112,7 +112,7 @@ public class DAT {
    *
    * </pre>
    */
-  public int get(String seq, int pos, int len) {
+  public int get(CharSequence seq, int pos, int len) {
     // Initial state
     int s = base[0];
 
@@ -140,11 +140,15 @@ public class DAT {
     return s < 0 ? -1 : base[s] == -1 ? indices[s] : -1;
   }
 
+  public int get(String seq, int pos, int len) {
+    return get((CharSequence) seq, pos, len);
+  }
+
   /**
    * Same as get() above, but ignoring case. NOTE: the DAT must have
    * been built with "ignore case" enabled.
    */
-  public int getIgnoreCase(String seq, int pos, int len) {
+  public int getIgnoreCase(CharSequence seq, int pos, int len) {
     int s = base[0];
     for (int i = pos; i < len; i++) {
       int t = s + Character.toLowerCase(seq.charAt(i));
@@ -159,4 +163,8 @@ public class DAT {
     return s < 0 ? -1 : base[s] == -1 ? indices[s] : -1;
   }
 
+  public int getIgnoreCase(String seq, int pos, int len) {
+    return getIgnoreCase((CharSequence) seq, pos, len);
+  }
+
 }
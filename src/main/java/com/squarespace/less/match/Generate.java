@@ -0,0 +1,31 @@
+package com.squarespace.less.match;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates resources at build time. Currently this pre-builds the
+ * {@link InternPool} tables into a binary resource under the given
+ * output directory.
+ */
+public class Generate {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("usage: Generate OUTPUT_DIR");
+      System.exit(1);
+    }
+    Path dir = Paths.get(args[0]).resolve(InternTables.class.getPackage().getName().replace('.', '/'));
+    Files.createDirectories(dir);
+    Path path = dir.resolve(InternTables.RESOURCE);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+      InternTables.build().write(out);
+    }
+    System.out.println("wrote " + path + " (" + Files.size(path) + " bytes)");
+  }
+
+}
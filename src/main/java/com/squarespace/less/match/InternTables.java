@@ -0,0 +1,491 @@
+package com.squarespace.less.match;
+
+import static com.squarespace.less.model.Colors.TRANSPARENT;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Colors;
+import com.squarespace.less.model.Combinator;
+import com.squarespace.less.model.Dimension;
+import com.squarespace.less.model.Keyword;
+import com.squarespace.less.model.KeywordColor;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Property;
+import com.squarespace.less.model.RGBColor;
+import com.squarespace.less.model.TextElement;
+import com.squarespace.less.model.Unit;
+
+/**
+ * Values and double-array tries used to initialize the {@link InternPool}.
+ *
+ * Building these from the text resources involves sorting, regex matching and
+ * trie construction. The build generates them once into a binary resource with
+ * {@link Generate}, which is loaded with a single read. If the binary resource
+ * is absent, e.g. when running from an IDE, the tables are built from text.
+ *
+ * Integers are written as variable-length quantities. Each slot of a trie is
+ * written relative to its own offset, which keeps most slots to a few bytes.
+ */
+class InternTables {
+
+  static final String RESOURCE = "intern.bin";
+
+  private static final int MAGIC = 0x4c455353;
+
+  private static final int VERSION = 2;
+
+  // Pattern for splitting value from units to construct Dimension instances
+  private static final Pattern RE_DIM = Pattern.compile("([-+\\d\\.]+)([%\\w]+)?");
+
+  // Keys and values of each table
+  final String[] colorsHexKeys;
+  final int[] colorsHexValues;
+  final String[] colorsKeywordKeys;
+  final String[] colorsKeywordNames;
+  final int[] colorsKeywordValues;
+  final String[] dimensions;
+  final double[] dimensionValues;
+  final String[] dimensionUnits;
+  final String[] elements;
+  final String[] functions;
+  final String[] keywords;
+  final String[] properties;
+
+  // Fast lookup of color names by their integer value
+  final int[] colorNameIndex;
+  final String[] colorNames;
+
+  // Double-array tries indexed to the values
+  final DAT colorsHexDat;
+  final DAT colorsKeywordDat;
+  final DAT dimensionsDat;
+  final DAT elementDat;
+  final DAT functionsDat;
+  final DAT keywordDat;
+  final DAT propertyDat;
+  final DAT unitsDat;
+
+  private InternTables(Reader r) {
+    colorsHexKeys = r.strings();
+    colorsHexValues = r.ints();
+    colorsKeywordKeys = r.strings();
+    colorsKeywordNames = r.strings();
+    colorsKeywordValues = r.ints();
+    dimensions = r.strings();
+    dimensionValues = r.doubles();
+    dimensionUnits = r.strings();
+    elements = r.strings();
+    functions = r.strings();
+    keywords = r.strings();
+    properties = r.strings();
+    colorNameIndex = r.ints();
+    colorNames = r.strings();
+    colorsHexDat = r.dat();
+    colorsKeywordDat = r.dat();
+    dimensionsDat = r.dat();
+    elementDat = r.dat();
+    functionsDat = r.dat();
+    keywordDat = r.dat();
+    propertyDat = r.dat();
+    unitsDat = r.dat();
+  }
+
+  private InternTables(String[] colors, String[] elements, String[] dimensions, String[] functions,
+      String[] keywords, String[] properties) {
+
+    // Separate hex from keyword colors. Transparent is added to the keyword colors
+    // with a value of -1.
+    Map<String, Integer> hex = new HashMap<>();
+    Map<String, Integer> named = new HashMap<>();
+    for (String line : colors) {
+      String[] row = line.split("\\s+");
+      int[] rgb = Colors.hexToRGB(row[0]);
+      int value = (rgb[0] << 16) + (rgb[1] << 8) + rgb[2];
+      hex.put(row[0], value);
+      if (row.length == 2) {
+        named.put(row[1], value);
+      }
+    }
+    this.colorsHexKeys = hex.keySet().toArray(new String[0]);
+    this.colorsHexValues = values(colorsHexKeys, hex);
+    List<String> namedKeys = new ArrayList<>(named.keySet());
+    namedKeys.add(TRANSPARENT.keyword());
+    named.put(TRANSPARENT.keyword(), -1);
+    this.colorsKeywordKeys = namedKeys.toArray(new String[0]);
+    this.colorsKeywordNames = Arrays.stream(colorsKeywordKeys)
+        .map(InternTables::swapNames).toArray(String[]::new);
+    this.colorsKeywordValues = values(colorsKeywordKeys, named);
+
+    // Parse dimensions
+    this.dimensions = dimensions;
+    this.dimensionValues = new double[dimensions.length];
+    this.dimensionUnits = new String[dimensions.length];
+    for (int i = 0; i < dimensions.length; i++) {
+      Matcher m = RE_DIM.matcher(dimensions[i]);
+      if (!m.matches()) {
+        throw new RuntimeException("failed to parse dimension: " + dimensions[i]);
+      }
+      dimensionValues[i] = Double.parseDouble(m.group(1));
+      dimensionUnits[i] = m.group(2) == null ? "" : m.group(2);
+    }
+
+    this.elements = elements;
+    this.functions = functions;
+    this.properties = properties;
+
+    // Plain keywords follow the color keywords
+    this.keywords = Arrays.stream(keywords).filter(k -> !k.equals("transparent")).toArray(String[]::new);
+    List<String> allKeywords = new ArrayList<>(Arrays.asList(colorsKeywordKeys));
+    allKeywords.addAll(Arrays.asList(this.keywords));
+
+    // Binary search of color integer values to the corresponding names.
+    // Prefer "grey" over "gray" for backwards-compatibility.
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < colorsKeywordKeys.length; i++) {
+      String key = colorsKeywordKeys[i];
+      if (colorsKeywordValues[i] != -1 && !key.contains("gray")) {
+        order.add(i);
+      }
+    }
+    order.sort((a, b) -> Integer.compare(colorsKeywordValues[a], colorsKeywordValues[b]));
+    this.colorNameIndex = order.stream().mapToInt(i -> colorsKeywordValues[i]).toArray();
+    this.colorNames = order.stream().map(i -> colorsKeywordKeys[i]).toArray(String[]::new);
+
+    // Build the double-array tries for fast lookups
+    this.colorsHexDat = build(Arrays.asList(colorsHexKeys));
+    this.colorsKeywordDat = build(Arrays.asList(colorsKeywordKeys));
+    this.dimensionsDat = build(Arrays.asList(dimensions));
+    this.elementDat = build(Arrays.asList(elements));
+    this.functionsDat = build(Arrays.asList(functions));
+    this.keywordDat = build(allKeywords);
+    this.propertyDat = build(Arrays.asList(properties));
+    this.unitsDat = build(Arrays.stream(Unit.values()).map(u -> u.repr()).collect(Collectors.toList()));
+  }
+
+  /**
+   * Loads the pre-built tables if present, otherwise builds them from the text resources.
+   */
+  static InternTables load() throws IOException {
+    try (InputStream in = InternTables.class.getResourceAsStream(RESOURCE)) {
+      if (in != null) {
+        InternTables tables = read(readFully(in));
+        if (tables != null) {
+          return tables;
+        }
+      }
+    }
+    return build();
+  }
+
+  /**
+   * Builds the tables from the text resources.
+   */
+  static InternTables build() throws IOException {
+    return new InternTables(
+        loadText("colors.txt"),
+        loadText("elements.txt"),
+        loadText("dimensions.txt"),
+        loadText("functions.txt"),
+        loadText("keywords.txt"),
+        loadText("properties.txt"));
+  }
+
+  /**
+   * Reads tables in the binary format, returning null if the data was written
+   * by a different version.
+   */
+  static InternTables read(byte[] data) {
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+      return null;
+    }
+    return new InternTables(new Reader(buf));
+  }
+
+  /**
+   * Writes the tables in the binary format.
+   */
+  void write(OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(stream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    write(out, colorsHexKeys);
+    write(out, colorsHexValues);
+    write(out, colorsKeywordKeys);
+    write(out, colorsKeywordNames);
+    write(out, colorsKeywordValues);
+    write(out, dimensions);
+    writeVarint(out, dimensionValues.length);
+    for (double value : dimensionValues) {
+      out.writeDouble(value);
+    }
+    write(out, dimensionUnits);
+    write(out, elements);
+    write(out, functions);
+    write(out, keywords);
+    write(out, properties);
+    write(out, colorNameIndex);
+    write(out, colorNames);
+    for (DAT dat : new DAT[] { colorsHexDat, colorsKeywordDat, dimensionsDat, elementDat, functionsDat,
+        keywordDat, propertyDat, unitsDat }) {
+      write(out, dat);
+    }
+    out.flush();
+  }
+
+  RGBColor[] colorsHex() {
+    RGBColor[] result = new RGBColor[colorsHexKeys.length];
+    for (int i = 0; i < result.length; i++) {
+      int value = colorsHexValues[i];
+      result[i] = new RGBColor((value >> 16) & 0xff, (value >> 8) & 0xff, value & 0xff);
+    }
+    return result;
+  }
+
+  RGBColor[] colorsKeyword() {
+    RGBColor[] result = new RGBColor[colorsKeywordKeys.length];
+    for (int i = 0; i < result.length; i++) {
+      int value = colorsKeywordValues[i];
+      result[i] = value == -1 ? TRANSPARENT
+          : new KeywordColor(colorsKeywordNames[i], (value >> 16) & 0xff, (value >> 8) & 0xff, value & 0xff);
+    }
+    return result;
+  }
+
+  Dimension[] dimensions() {
+    Dimension[] result = new Dimension[dimensions.length];
+    for (int i = 0; i < result.length; i++) {
+      String unit = dimensionUnits[i];
+      result[i] = new Dimension(dimensionValues[i], unit.isEmpty() ? null : Unit.get(unit));
+    }
+    return result;
+  }
+
+  TextElement[] elements(Combinator comb) {
+    TextElement[] result = new TextElement[elements.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new TextElement(comb, elements[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Keyword colors followed by plain keywords.
+   */
+  Node[] keywords(RGBColor[] colors) {
+    Node[] result = new Node[colors.length + keywords.length];
+    System.arraycopy(colors, 0, result, 0, colors.length);
+    for (int i = 0; i < keywords.length; i++) {
+      result[colors.length + i] = new Keyword(keywords[i]);
+    }
+    return result;
+  }
+
+  Property[] properties() {
+    Property[] result = new Property[properties.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new Property(properties[i]);
+    }
+    return result;
+  }
+
+  private static int[] values(String[] keys, Map<String, Integer> map) {
+    int[] result = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      result[i] = map.get(keys[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Force resolved keywords containing "gray" to the "grey" form,
+   * for backwards-compatibility.
+   */
+  private static String swapNames(String name) {
+    if (name.indexOf("gray") != -1) {
+      return name.replace("gray", "grey");
+    }
+    return name;
+  }
+
+  /**
+   * Build a double-array trie from the list of keys.
+   */
+  private static DAT build(List<String> keys) {
+    DATBuilder builder = new DATBuilder(keys);
+    builder.build();
+    return new DAT(builder.base(), builder.check(), builder.indices());
+  }
+
+  /**
+   * Load a resource file, split and sort it.
+   */
+  private static String[] loadText(String name) throws IOException {
+    String raw = LessUtils.readStream(InternTables.class.getResourceAsStream(name));
+    String[] res = raw.split("\n");
+    return Arrays.stream(res).filter(e -> !e.isEmpty()).sorted().toArray(String[]::new);
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(in.available() + 1);
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) != -1) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  private static void write(DataOutputStream out, String[] strings) throws IOException {
+    writeVarint(out, strings.length);
+    for (String str : strings) {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      writeVarint(out, bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static void write(DataOutputStream out, int[] values) throws IOException {
+    writeVarint(out, values.length);
+    for (int value : values) {
+      writeVarint(out, zigzag(value));
+    }
+  }
+
+  /**
+   * Writes each slot of the trie. An empty slot is written as 0. Otherwise the
+   * distance back to the parent state, i.e. the input character, is followed by
+   * the value index for a final state or the distance to the next state.
+   */
+  private static void write(DataOutputStream out, DAT dat) throws IOException {
+    int length = dat.base.length;
+    writeVarint(out, length);
+    for (int i = 0; i < length; i++) {
+      int base = dat.base[i];
+      int check = dat.check[i];
+      int index = dat.indices[i];
+      if (base == 0 && check == 0 && index == -1) {
+        writeVarint(out, 0);
+        continue;
+      }
+      if (check > i || (base == -1) != (index >= 0)) {
+        throw new IllegalStateException("unexpected trie slot " + i + ": " + base + " " + check + " " + index);
+      }
+      writeVarint(out, i - check + 1);
+      writeVarint(out, base == -1 ? (index << 1) | 1 : zigzag(base - i) << 1);
+    }
+  }
+
+  /**
+   * Writes an unsigned integer 7 bits at a time, low bits first, setting the
+   * high bit of each byte but the last.
+   */
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Maps signed integers to unsigned so those of small magnitude stay small.
+   */
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Reads arrays from the binary format.
+   */
+  private static class Reader {
+
+    private final ByteBuffer buf;
+
+    Reader(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    int[] ints() {
+      int[] result = new int[varint()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = unzigzag(varint());
+      }
+      return result;
+    }
+
+    double[] doubles() {
+      double[] result = new double[varint()];
+      buf.asDoubleBuffer().get(result);
+      buf.position(buf.position() + result.length * 8);
+      return result;
+    }
+
+    String[] strings() {
+      String[] result = new String[varint()];
+      byte[] data = buf.array();
+      for (int i = 0; i < result.length; i++) {
+        int len = varint();
+        result[i] = new String(data, buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+      }
+      return result;
+    }
+
+    DAT dat() {
+      int length = varint();
+      int[] base = new int[length];
+      int[] check = new int[length];
+      int[] indices = new int[length];
+      for (int i = 0; i < length; i++) {
+        int parent = varint();
+        if (parent == 0) {
+          indices[i] = -1;
+          continue;
+        }
+        check[i] = i - parent + 1;
+        int value = varint();
+        if ((value & 1) == 1) {
+          base[i] = -1;
+          indices[i] = value >>> 1;
+        } else {
+          base[i] = unzigzag(value >>> 1) + i;
+          indices[i] = -1;
+        }
+      }
+      return new DAT(base, check, indices);
+    }
+
+    int varint() {
+      int result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buf.get();
+        result |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0);
+      return result;
+    }
+  }
+
+}
@@ -1,5 +1,8 @@
 package com.squarespace.less.match;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.squarespace.less.core.CharClass;
 import com.squarespace.less.core.Chars;
 
@@ -36,11 +39,11 @@ public class Recognizers {
 
   private static final CharClass CLASSIFIER = new CharClass();
 
-  private static final Recognizer DIGITS = digits();
+  private static final Recognizer DIGITS = compile(digits());
 
-  private static final Recognizer ESC = choice(
+  private static final Recognizer ESC = compile(choice(
       sequence(cardinality(charClass(CharClass.HEXDIGIT, CLASSIFIER), 1, 6), zeroOrOne(characters(' '))),
-      notCharClass(CharClass.HEXDIGIT, CLASSIFIER));
+      notCharClass(CharClass.HEXDIGIT, CLASSIFIER)));
 
   private Recognizers() {
   }
@@ -97,6 +100,117 @@ public class Recognizers {
     return new Recognizers.Choice(patterns);
   }
 
+  /**
+   * Lowers a tree of recognizers into an equivalent, flatter tree that is cheaper to match.
+   * Single-character recognizers, and choices between them, become a bitmap lookup for ASCII
+   * characters. Repetitions of a single character become a loop over that bitmap. Nested
+   * sequences are flattened and adjacent literals merged. Finally, if the pattern cannot match
+   * the empty string, a bitmap of the characters that may start a match rejects most failing
+   * positions without entering the tree. Custom recognizers are not changed, and the matching
+   * behavior of the result is identical to the original.
+   */
+  public static Recognizer compile(Recognizer pattern) {
+    if (pattern instanceof FirstChar) {
+      return pattern;
+    }
+    Recognizer lowered = lower(pattern);
+    if (lowered instanceof CharTable || lowered instanceof CharTableSpan) {
+      return lowered;
+    }
+    Prefix prefix = new Prefix();
+    prefix.add(lowered);
+    if (prefix.nullable || (prefix.low == -1L && prefix.high == -1L)) {
+      return lowered;
+    }
+    return new FirstChar(prefix, lowered);
+  }
+
+  private static Recognizer lower(Recognizer pattern) {
+    if (singleChar(pattern)) {
+      return pattern instanceof CharTable ? pattern : new CharTable(pattern);
+    }
+
+    if (pattern instanceof Cardinality) {
+      Cardinality card = (Cardinality) pattern;
+      Recognizer child = lower(card.pattern);
+      if (child instanceof CharTable) {
+        return new CharTableSpan((CharTable) child, card.start, card.limit);
+      }
+      return new Cardinality(child, card.start, card.limit);
+    }
+
+    if (pattern instanceof Choice) {
+      Recognizer[] patterns = ((Choice) pattern).patterns;
+      Recognizer[] children = new Recognizer[patterns.length];
+      for (int i = 0; i < patterns.length; i++) {
+        children[i] = lower(patterns[i]);
+      }
+      return new Choice(children);
+    }
+
+    if (pattern instanceof Sequence) {
+      List<Recognizer> children = new ArrayList<>();
+      for (Recognizer child : ((Sequence) pattern).patterns) {
+        child = lower(child);
+        if (child instanceof Sequence) {
+          for (Recognizer nested : ((Sequence) child).patterns) {
+            append(children, nested);
+          }
+        } else {
+          append(children, child);
+        }
+      }
+      return children.size() == 1 ? children.get(0) : new Sequence(children.toArray(new Recognizer[0]));
+    }
+
+    if (pattern instanceof LengthChoice) {
+      LengthChoice choice = (LengthChoice) pattern;
+      return new LengthChoice(choice.choices, lower(choice.cardinality));
+    }
+
+    if (pattern instanceof LookAhead) {
+      return new LookAhead(lower(((LookAhead) pattern).pattern));
+    }
+
+    return pattern;
+  }
+
+  /**
+   * Appends a compiled pattern to a sequence, merging it with a preceding literal.
+   */
+  private static void append(List<Recognizer> children, Recognizer child) {
+    int last = children.size() - 1;
+    if (last >= 0 && child instanceof Literal && children.get(last) instanceof Literal) {
+      Literal prev = (Literal) children.get(last);
+      Literal curr = (Literal) child;
+      if (prev.ignoreCase == curr.ignoreCase) {
+        children.set(last, new Literal(prev.literal + curr.literal, prev.ignoreCase));
+        return;
+      }
+    }
+    children.add(child);
+  }
+
+  /**
+   * Indicates the pattern always matches exactly one character or fails.
+   */
+  private static boolean singleChar(Recognizer pattern) {
+    if (pattern instanceof Choice) {
+      for (Recognizer child : ((Choice) pattern).patterns) {
+        if (!singleChar(child)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return pattern instanceof Any
+        || pattern instanceof Characters
+        || pattern instanceof CharacterClass
+        || pattern instanceof CharacterRange
+        || pattern instanceof CharTable
+        || pattern instanceof Whitespace;
+  }
+
   public static Recognizer decimal() {
     return new Recognizers.Decimal();
   }
@@ -516,6 +630,215 @@ public class Recognizers {
 
   }
 
+  /**
+   * Matches a single character using a bitmap for ASCII characters, built by probing
+   * a single-character recognizer. Other characters are passed to that recognizer.
+   */
+  static class CharTable implements Recognizer {
+
+    private final long low;
+
+    private final long high;
+
+    private final Recognizer fallback;
+
+    CharTable(Recognizer fallback) {
+      long low = 0;
+      long high = 0;
+      for (char ch = 0; ch < 128; ch++) {
+        if (fallback.match(String.valueOf(ch), 0, 1) != FAIL) {
+          if (ch < 64) {
+            low |= 1L << ch;
+          } else {
+            high |= 1L << (ch - 64);
+          }
+        }
+      }
+      this.low = low;
+      this.high = high;
+      this.fallback = fallback;
+    }
+
+    boolean member(CharSequence seq, int pos, int len) {
+      char ch = seq.charAt(pos);
+      if (ch < 64) {
+        return (low & (1L << ch)) != 0;
+      }
+      if (ch < 128) {
+        return (high & (1L << (ch - 64))) != 0;
+      }
+      return fallback.match(seq, pos, len) != FAIL;
+    }
+
+    @Override
+    public int match(CharSequence seq, int pos, int len) {
+      return pos < len && member(seq, pos, len) ? pos + 1 : FAIL;
+    }
+
+  }
+
+  /**
+   * Matches a bounded run of characters from a {@link CharTable}. Equivalent to a
+   * {@link Cardinality} over the table, without a call per character.
+   */
+  static class CharTableSpan implements Recognizer {
+
+    private final CharTable table;
+
+    private final int start;
+
+    private final int limit;
+
+    CharTableSpan(CharTable table, int start, int limit) {
+      this.table = table;
+      this.start = start;
+      this.limit = limit;
+    }
+
+    @Override
+    public int match(CharSequence seq, int pos, int len) {
+      int end = limit == 0 || len - pos < limit ? len : pos + limit;
+      int save = pos;
+      while (pos < end && table.member(seq, pos, len)) {
+        pos++;
+      }
+      return pos - save < start ? FAIL : pos;
+    }
+
+  }
+
+  /**
+   * Rejects positions whose character cannot start a match, before matching the pattern.
+   */
+  static class FirstChar implements Recognizer {
+
+    private final long low;
+
+    private final long high;
+
+    private final boolean nonAscii;
+
+    private final Recognizer pattern;
+
+    FirstChar(Prefix prefix, Recognizer pattern) {
+      this.low = prefix.low;
+      this.high = prefix.high;
+      this.nonAscii = prefix.nonAscii;
+      this.pattern = pattern;
+    }
+
+    @Override
+    public int match(CharSequence seq, int pos, int len) {
+      if (pos >= len) {
+        return FAIL;
+      }
+      char ch = seq.charAt(pos);
+      boolean first = ch < 64 ? (low & (1L << ch)) != 0
+          : ch < 128 ? (high & (1L << (ch - 64))) != 0
+          : nonAscii;
+      return first ? pattern.match(seq, pos, len) : FAIL;
+    }
+
+  }
+
+  /**
+   * Computes the set of characters that can start a match of a compiled pattern,
+   * and whether it can match the empty string. Patterns that are not understood
+   * are assumed to start with any character and match the empty string.
+   */
+  static class Prefix {
+
+    long low;
+
+    long high;
+
+    boolean nonAscii;
+
+    boolean nullable;
+
+    void add(Recognizer pattern) {
+      if (pattern instanceof CharTable) {
+        addTable((CharTable) pattern);
+
+      } else if (pattern instanceof CharTableSpan) {
+        CharTableSpan span = (CharTableSpan) pattern;
+        addTable(span.table);
+        nullable = span.start == 0;
+
+      } else if (pattern instanceof Literal) {
+        Literal literal = (Literal) pattern;
+        if (literal.literalLength == 0) {
+          nullable = true;
+          return;
+        }
+        char ch = literal.literal.charAt(0);
+        addChar(ch);
+        if (literal.ignoreCase) {
+          // Characters outside ASCII may have an ASCII lowercase form.
+          addChar(Character.toUpperCase(ch));
+          nonAscii = true;
+        }
+
+      } else if (pattern instanceof Sequence) {
+        nullable = true;
+        for (Recognizer child : ((Sequence) pattern).patterns) {
+          Prefix prefix = new Prefix();
+          prefix.add(child);
+          union(prefix);
+          if (!prefix.nullable) {
+            nullable = false;
+            break;
+          }
+        }
+
+      } else if (pattern instanceof Choice) {
+        for (Recognizer child : ((Choice) pattern).patterns) {
+          Prefix prefix = new Prefix();
+          prefix.add(child);
+          union(prefix);
+          nullable |= prefix.nullable;
+        }
+
+      } else if (pattern instanceof Cardinality) {
+        Cardinality card = (Cardinality) pattern;
+        add(card.pattern);
+        nullable |= card.start == 0;
+
+      } else if (pattern instanceof LengthChoice) {
+        add(((LengthChoice) pattern).cardinality);
+
+      } else {
+        low = -1L;
+        high = -1L;
+        nonAscii = true;
+        nullable = true;
+      }
+    }
+
+    private void addTable(CharTable table) {
+      low |= table.low;
+      high |= table.high;
+      nonAscii = true;
+    }
+
+    private void addChar(char ch) {
+      if (ch < 64) {
+        low |= 1L << ch;
+      } else if (ch < 128) {
+        high |= 1L << (ch - 64);
+      } else {
+        nonAscii = true;
+      }
+    }
+
+    private void union(Prefix other) {
+      low |= other.low;
+      high |= other.high;
+      nonAscii |= other.nonAscii;
+    }
+
+  }
+
   /**
    * Return result from first matcher that matches.
    */
@@ -641,11 +964,11 @@ public class Recognizers {
    */
   static class Element1 implements Recognizer {
 
-    private static final Recognizer PFX1 = characters('.', '#');
-    private static final Recognizer PFX2 = oneOrMore(characters(':'));
+    private static final Recognizer PFX1 = compile(characters('.', '#'));
+    private static final Recognizer PFX2 = compile(oneOrMore(characters(':')));
 
 
-    private static final Recognizer WORD = oneOrMore(charClass(CharClass.IDENTIFIER, CharClass.CLASSIFIER));
+    private static final Recognizer WORD = compile(oneOrMore(charClass(CharClass.IDENTIFIER, CharClass.CLASSIFIER)));
 
     @Override
     public int match(CharSequence seq, int pos, int len) {
@@ -778,6 +1101,11 @@ public class Recognizers {
       this.cardinality = new Cardinality(pattern, min, max);
     }
 
+    LengthChoice(int[] choices, Recognizer cardinality) {
+      this.choices = choices;
+      this.cardinality = cardinality;
+    }
+
     @Override
     public int match(CharSequence seq, int pos, int len) {
       int i = this.cardinality.match(seq, pos, len);
@@ -876,7 +1204,7 @@ public class Recognizers {
    */
   static class Property implements Recognizer {
 
-    private final Recognizer suffix = oneOrMore(charClass(CharClass.PROPERTY, CLASSIFIER));
+    private final Recognizer suffix = compile(oneOrMore(charClass(CharClass.PROPERTY, CLASSIFIER)));
 
     @Override
     public int match(CharSequence seq, int pos, int len) {
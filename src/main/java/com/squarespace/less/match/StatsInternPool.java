@@ -103,12 +103,12 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public Property property(String raw, int start, int end) {
+  public Property property(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = PROPERTY_DAT.get(raw, start, end);
     if (ix == -1) {
       property_stats.miss(len);
-      String value = raw.substring(start, end);
+      String value = raw.subSequence(start, end).toString();
       properties.put(value, properties.getOrDefault(value, 0) + 1);
       return new Property(value);
     }
@@ -117,12 +117,12 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public Node keyword(String raw, int start, int end) {
+  public Node keyword(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = KEYWORD_DAT.get(raw, start, end);
     if (ix == -1) {
       keyword_stats.miss(len);
-      String value = raw.substring(start, end);
+      String value = raw.subSequence(start, end).toString();
       keywords.put(value, keywords.getOrDefault(value, 0) + 1);
       return new Keyword(value);
     }
@@ -131,12 +131,12 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public Unit unit(String raw, int start, int end) {
+  public Unit unit(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = UNITS_DAT.get(raw, start, end);
     if (ix == -1) {
       unit_stats.miss(len);
-      String rep = raw.substring(start, end);
+      String rep = raw.subSequence(start, end).toString();
       return Unit.get(rep);
     }
     unit_stats.hit(len);
@@ -144,7 +144,7 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public Dimension dimension(String raw, int start, int end) {
+  public Dimension dimension(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = DIMENSIONS_DAT.get(raw, start, end);
     if (ix == -1) {
@@ -156,12 +156,12 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public TextElement element(Combinator comb, String raw, int start, int end) {
+  public TextElement element(Combinator comb, CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = ELEMENT_DAT.get(raw, start, end);
     if (ix == -1) {
       element_stats.miss(len);
-      String value = raw.substring(start, end);
+      String value = raw.subSequence(start, end).toString();
       elements.put(value, elements.getOrDefault(value, 0) + 1);
       return new TextElement(comb, value);
     }
@@ -185,25 +185,25 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public String function(String raw, int start, int end) {
+  public String function(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = FUNCTIONS_DAT.getIgnoreCase(raw, start, end);
     if (ix == -1) {
       function_stats.miss(len);
-      return raw.substring(start, end).toLowerCase();
+      return raw.subSequence(start, end).toString().toLowerCase();
     }
     function_stats.hit(len);
     return FUNCTIONS[ix];
   }
 
   @Override
-  public RGBColor color(String raw, int start, int end) {
+  public RGBColor color(CharSequence raw, int start, int end) {
     int len = end - start;
     if (raw.charAt(start) == '#') {
       int ix = COLORS_HEX_DAT.getIgnoreCase(raw, start, end);
       if (ix == -1) {
         color_hex_stats.miss(len);
-        return RGBColor.fromHex(raw.substring(start, end));
+        return RGBColor.fromHex(raw.subSequence(start, end).toString());
       }
       color_hex_stats.hit(len);
       return COLORS_HEX[ix];
@@ -222,7 +222,7 @@ public class StatsInternPool extends InternPool {
   }
 
   @Override
-  public RGBColor keywordColor(String raw, int start, int end) {
+  public RGBColor keywordColor(CharSequence raw, int start, int end) {
     int len = end - start;
     int ix = COLORS_KEYWORD_DAT.get(raw, start, end);
     if (ix == -1) {
@@ -24,6 +24,7 @@ import java.util.Map;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.FlexList;
 import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.core.VariableIds;
 
 
 /**
@@ -71,11 +72,11 @@ public class Block implements Node {
   protected Directive charset;
 
   /**
-   * Variable cache. Since variables can be dynamically added to a block
-   * during execution, periodically this cache needs to be rebuilt so that
-   * these new variables are found during evaluation.
+   * Variable cache, indexed by variable id. Since variables can be dynamically
+   * added to a block during execution, periodically this cache needs to be
+   * rebuilt so that these new variables are found during evaluation.
    */
-  protected Map<String, Definition> variables;
+  protected VariableIndex variables;
 
   /**
    * Ordered list of mixin definitions contained in this block that share a
@@ -146,6 +147,13 @@ public class Block implements Node {
   public void prependNode(Node node) {
     setFlags(node);
     rules.splice(0, 0, new Node[] { node });
+    if (node instanceof Definition && indexed()) {
+      // Any existing definition of the variable follows this one, and wins.
+      Definition def = (Definition)node;
+      if (variables.get(def.id(), def.name()) == null) {
+        variables.put(def);
+      }
+    }
   }
 
   /**
@@ -154,6 +162,9 @@ public class Block implements Node {
   public void appendNode(Node node) {
     setFlags(node);
     rules.append(node);
+    if (node instanceof Definition && indexed()) {
+      variables.put((Definition)node);
+    }
   }
 
   /**
@@ -175,11 +186,33 @@ public class Block implements Node {
     return rules;
   }
 
+  /**
+   * Replaces {@code num} rules starting at {@code start} with the rules in
+   * {@code other}, updating the variable cache with any definitions added.
+   */
   public void splice(int start, int num, FlexList<Node> other) {
+    start = Math.max(0, Math.min(start, rules.size()));
+    boolean indexed = indexed();
+    if (indexed) {
+      // Removing a definition could expose an earlier one, so rebuild.
+      int end = Math.min(start + Math.max(num, 0), rules.size());
+      for (int i = start; i < end; i++) {
+        if (rules.get(i) instanceof Definition) {
+          resetVariableCache();
+          indexed = false;
+          break;
+        }
+      }
+    }
+
     this.rules.splice(start, num, other);
     int size = other.size();
     for (int i = 0; i < size; i++) {
-      setFlags(other.get(i));
+      Node node = other.get(i);
+      setFlags(node);
+      if (indexed && node instanceof Definition) {
+        indexDefinition((Definition)node, start + size);
+      }
     }
   }
 
@@ -213,10 +246,46 @@ public class Block implements Node {
    * the rules in this block.
    */
   public Definition resolveDefinition(String name) {
+    return resolveDefinition(name, VariableIds.id(name));
+  }
+
+  /**
+   * Resolve a {@link Definition} of the variable with the given {@code name}
+   * and {@code id} against the rules in this block.
+   */
+  public Definition resolveDefinition(String name, int id) {
     if ((flags & FLAG_REBUILD_VARS) != 0) {
       buildVariables();
     }
-    return variables.get(name);
+    return variables.get(id, name);
+  }
+
+  /**
+   * Indicates whether the variable cache is built and current.
+   */
+  private boolean indexed() {
+    return (flags & FLAG_REBUILD_VARS) == 0 && variables != null;
+  }
+
+  /**
+   * Adds a definition inserted before the rule at index {@code tail} to the
+   * variable cache. The last definition of a variable wins, so if one follows
+   * the insertion point, that one is indexed instead.
+   */
+  private void indexDefinition(Definition def, int tail) {
+    if (variables.get(def.id(), def.name()) != null) {
+      for (int i = rules.size() - 1; i >= tail; i--) {
+        Node node = rules.get(i);
+        if (node instanceof Definition) {
+          Definition other = (Definition)node;
+          if (other.id() == def.id() && other.name().equals(def.name())) {
+            variables.put(other);
+            return;
+          }
+        }
+      }
+    }
+    variables.put(def);
   }
 
   /**
@@ -225,7 +294,7 @@ public class Block implements Node {
    */
   private void buildVariables() {
     if (variables == null) {
-      variables = new HashMap<>();
+      variables = new VariableIndex();
     } else {
       variables.clear();
     }
@@ -235,8 +304,7 @@ public class Block implements Node {
       if (!node.type().equals(NodeType.DEFINITION)) {
         continue;
       }
-      Definition def = (Definition)node;
-      variables.put(def.name(), def);
+      variables.put((Definition)node);
     }
     flags &= ~FLAG_REBUILD_VARS;
   }
@@ -245,14 +313,15 @@ public class Block implements Node {
    * Create a shallow copy of this block.
    */
   public Block copy() {
-    return new Block(rules.copy(), flags, mixins);
+    return new Block(rules.copy(), (byte)(flags | FLAG_REBUILD_VARS), mixins);
   }
 
   /**
-   * Sets this instance's flags by OR-ing with the arguments flags.
+   * Sets this instance's flags by OR-ing with the arguments flags. The state
+   * of the argument's variable cache does not affect this one.
    */
   public void orFlags(Block block) {
-    flags |= block.flags;
+    flags |= block.flags & ~FLAG_REBUILD_VARS;
   }
 
   /**
@@ -51,7 +51,7 @@ public class Colors {
     return rgb;
   }
 
-  public static void hexToRGB(String raw, int start, int end, int[] rgb) {
+  public static void hexToRGB(CharSequence raw, int start, int end, int[] rgb) {
     int len = end - start;
     while (start < end && raw.charAt(start) == Chars.NUMBER_SIGN) {
       len--;
@@ -79,6 +79,10 @@ public class Colors {
     rgb[2] = c2;
   }
 
+  public static void hexToRGB(String raw, int start, int end, int[] rgb) {
+    hexToRGB((CharSequence) raw, start, end, rgb);
+  }
+
   /**
    * Returns the integer value for the given doubled hexadecimal character.
    * Calling {@code component('A')} will return 0xAA.
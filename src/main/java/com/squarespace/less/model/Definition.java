@@ -20,9 +20,11 @@ import static com.squarespace.less.core.LessUtils.safeEquals;
 
 import java.nio.file.Path;
 
+import com.squarespace.less.CompileListener;
 import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessInternalException;
+import com.squarespace.less.core.VariableIds;
 import com.squarespace.less.exec.ExecEnv;
 
 
@@ -64,14 +66,14 @@ public class Definition extends StructuralNode {
   protected final String name;
 
   /**
-   * Value of the variable definition.
+   * Id of the variable name, see {@link VariableIds}.
    */
-  protected final Node value;
+  protected final int id;
 
   /**
-   * Flag to detect circular references and raise an error.
+   * Value of the variable definition.
    */
-  protected boolean evaluating;
+  protected final Node value;
 
   /**
    * Filename in which this variable is defined.
@@ -87,29 +89,34 @@ public class Definition extends StructuralNode {
    * Constructs a definition with the {@code variable}'s name and the given value.
    */
   public Definition(Variable variable, Node value) {
-    this(variable.name(), value);
+    this(variable.name(), variable.id(), value);
   }
 
   /**
    * Constructs a definition with the given name and value.
    */
   public Definition(String name, Node value) {
-    if (name == null || value == null) {
-      throw new LessInternalException("Serious error: name/value cannot be null.");
-    }
-    this.name = name;
-    this.value = value;
+    this(name, name == null ? 0 : VariableIds.id(name), value);
   }
 
   /**
    * Constructs a definition by copying {@code orig} and substituting a new value
    */
   protected Definition(Definition orig, Node newValue) {
-    this(orig.name(), newValue);
+    this(orig.name, orig.id, newValue);
     this.fileName = orig.fileName;
     copyStructure(orig);
   }
 
+  private Definition(String name, int id, Node value) {
+    if (name == null || value == null) {
+      throw new LessInternalException("Serious error: name/value cannot be null.");
+    }
+    this.name = name;
+    this.id = id;
+    this.value = value;
+  }
+
   /**
    * Creates a copy of this definition, substituting a new value.
    */
@@ -121,24 +128,15 @@ public class Definition extends StructuralNode {
     return name;
   }
 
-  public Node value() {
-    return value;
-  }
-
   /**
-   * Indicates whether this definition is currently being evaluated. Helps
-   * detect and skip over circular references.
+   * Returns the id of the variable name.
    */
-  public boolean evaluating() {
-    return evaluating;
+  public int id() {
+    return id;
   }
 
-  /**
-   * Mark or clear the definition's 'evaluating' flag, used to detect
-   * circular references during evaluation.
-   */
-  public void evaluating(boolean flag) {
-    this.evaluating = flag;
+  public Node value() {
+    return value;
   }
 
   public Path fileName() {
@@ -161,7 +159,17 @@ public class Definition extends StructuralNode {
    * Resolve the value for this definition.
    */
   public Node dereference(ExecEnv env) throws LessException {
-    return value.eval(env);
+    CompileListener listener = env.context().listener();
+    if (listener == null) {
+      return value.eval(env);
+    }
+    long started = System.nanoTime();
+    listener.definitionStart(this, started);
+    try {
+      return value.eval(env);
+    } finally {
+      listener.definitionEnd(this, started, System.nanoTime());
+    }
   }
 
   @Override
@@ -21,6 +21,7 @@ import static com.squarespace.less.core.LessUtils.safeEquals;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.squarespace.less.CompileListener;
 import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessInternalException;
@@ -133,10 +134,22 @@ public class FunctionCall implements Node {
     Function func = env.context().findFunction(name);
     if (func != null) {
       // Invoke built-in function
+      env.context().stats().functionCall();
       List<Node> values = evalArgs(env);
       Node result = null;
       func.spec().validate(env, func, values);
-      result = func.invoke(env, values);
+      CompileListener listener = env.context().listener();
+      if (listener == null) {
+        result = func.invoke(env, values);
+      } else {
+        long started = System.nanoTime();
+        listener.functionStart(this, func, started);
+        try {
+          result = func.invoke(env, values);
+        } finally {
+          listener.functionEnd(this, func, started, System.nanoTime());
+        }
+      }
       if (result != null) {
         return result;
       }
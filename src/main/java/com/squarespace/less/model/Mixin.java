@@ -19,7 +19,6 @@ package com.squarespace.less.model;
 import static com.squarespace.less.core.LessUtils.safeEquals;
 
 import com.squarespace.less.core.Buffer;
-import com.squarespace.less.exec.ExecEnv;
 
 
 /**
@@ -55,17 +54,6 @@ public class Mixin extends BlockNode {
    */
   protected final Guard guard;
 
-  /**
-   * Closure attached to this mixin definition.
-   */
-  protected ExecEnv closure;
-
-  /**
-   * Number of times this mixin's body has been evaluated. Used to detect
-   * and limit recursion.
-   */
-  protected int entryCount;
-
   /**
    * Constructs a mixin with the given name, parameters and guard expression.
    */
@@ -90,7 +78,7 @@ public class Mixin extends BlockNode {
   public Mixin copy() {
     Mixin result = new Mixin(name, params, guard, block.copy());
     result.copyStructure(this);
-    result.closure = closure;
+    result.fileName = fileName;
     if (originalBlockNode != null) {
       result.originalBlockNode = originalBlockNode;
     }
@@ -118,41 +106,6 @@ public class Mixin extends BlockNode {
     return guard;
   }
 
-  /**
-   * Returns the number of times this mixin's body has been evaluated.
-   */
-  public int entryCount() {
-    return entryCount;
-  }
-
-  /**
-   * Begins evaluating the mixin's body.
-   */
-  public void enter() {
-    entryCount++;
-  }
-
-  /**
-   * Ends evaluating the mixin's body.
-   */
-  public void exit() {
-    entryCount--;
-  }
-
-  /**
-   * Returns the closure environment attached to the mixin's definition.
-   */
-  public ExecEnv closure() {
-    return closure;
-  }
-
-  /**
-   * Sets the closure on this mixin definition.
-   */
-  public void closure(ExecEnv env) {
-    this.closure = env.copy();
-  }
-
   /**
    * See {@link Node#type()}
    */
@@ -1,9 +1,7 @@
 package com.squarespace.less.model;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
 import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.DecimalFormatter;
 
 public class ModelUtils {
 
@@ -22,19 +20,7 @@ public class ModelUtils {
     if (value == lval) {
       buf.append(lval);
     } else {
-      // Strip trailing zeros and avoid scientific notation.
-      String repr = BigDecimal.valueOf(value)
-          .setScale(buf.numericScale(), RoundingMode.HALF_EVEN)
-          .stripTrailingZeros()
-          .toPlainString();
-      // Strip leading zeros for positive and negative numbers.
-      if (value > 0 && value < 1.0) {
-        buf.append(repr.substring(1));
-      } else if (value > -1.0 && value < 0 && repr.startsWith("-")) {
-        buf.append('-').append(repr.substring(2));
-      } else {
-        buf.append(repr);
-      }
+      DecimalFormatter.format(buf, value, buf.numericScale());
     }
   }
 
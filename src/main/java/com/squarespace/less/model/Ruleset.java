@@ -33,11 +33,6 @@ public class Ruleset extends BlockNode {
    */
   protected final Selectors selectors;
 
-  /**
-   * Flag indicating this ruleset is being evaluated. Helps detect recursion.
-   */
-  protected boolean evaluating;
-
   /**
    * Indicates whether this ruleset has at least one mixin path.
    */
@@ -72,6 +67,7 @@ public class Ruleset extends BlockNode {
    */
   public Ruleset copy(ExecEnv env) throws LessException {
     Ruleset result = new Ruleset((Selectors)selectors.eval(env), block.copy());
+    result.copyStructure(this);
     result.fileName = fileName;
     if (originalBlockNode != null) {
       result.originalBlockNode = originalBlockNode;
@@ -93,27 +89,6 @@ public class Ruleset extends BlockNode {
     return hasMixinPath;
   }
 
-  /**
-   * Marks the ruleset as being evaluated.
-   */
-  public void enter() {
-    evaluating = true;
-  }
-
-  /**
-   * Clears the ruleset's evaluation flag.
-   */
-  public void exit() {
-    evaluating = false;
-  }
-
-  /**
-   * Indicates if the ruleset is currently being evaluated.
-   */
-  public boolean evaluating() {
-    return evaluating;
-  }
-
   /**
    * Add a node to the ruleset.
    */
@@ -46,6 +46,7 @@ public class Stylesheet extends BlockNode {
     Stylesheet result = new Stylesheet(block().copy());
     result.charOffset = charOffset;
     result.lineOffset = lineOffset;
+    result.fileName = fileName;
     return result;
   }
 
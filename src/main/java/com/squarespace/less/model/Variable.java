@@ -25,6 +25,8 @@ import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessInternalException;
+import com.squarespace.less.core.VariableIds;
+import com.squarespace.less.exec.EvalState;
 import com.squarespace.less.exec.ExecEnv;
 
 
@@ -38,6 +40,11 @@ public class Variable implements Node {
    */
   protected final String name;
 
+  /**
+   * Id of the variable name, see {@link VariableIds}.
+   */
+  protected final int id;
+
   /**
    * Indicates whether the variable is an indirect reference.
    */
@@ -70,6 +77,7 @@ public class Variable implements Node {
       indirect = false;
     }
     this.name = name;
+    this.id = VariableIds.id(name);
     this.curly = curly;
   }
 
@@ -80,6 +88,13 @@ public class Variable implements Node {
     return name;
   }
 
+  /**
+   * Returns the id of the variable name.
+   */
+  public int id() {
+    return id;
+  }
+
   /**
    * Indicates whether this is an indirect reference.
    */
@@ -100,14 +115,15 @@ public class Variable implements Node {
   protected Node dereference(Definition def, ExecEnv env) throws LessException {
     // Ensure we're not currently evaluating this variable definition through
     // a circular reference.
-    if (def.evaluating()) {
+    EvalState state = env.state();
+    if (state.evaluating(def)) {
       throw new LessException(varCircularRef(env));
     }
 
-    def.evaluating(true);
+    state.evaluating(def, true);
     Node result = def.dereference(env);
     if (!indirect) {
-      def.evaluating(false);
+      state.evaluating(def, false);
       return result;
     }
 
@@ -118,7 +134,7 @@ public class Variable implements Node {
     buf.startDelim('"');
     ctx.render(buf, result);
     result = env.context().nodeBuilder().buildVariable("@" + buf.toString()).eval(env);
-    def.evaluating(false);
+    state.evaluating(def, false);
     return result;
   }
 
@@ -135,7 +151,7 @@ public class Variable implements Node {
    */
   @Override
   public Node eval(ExecEnv env) throws LessException {
-    Definition def = env.resolveDefinition(name);
+    Definition def = env.resolveDefinition(name, id);
     if (def == null) {
       throw new LessException(varUndefined(name));
     }
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.model;
+
+import java.util.Arrays;
+
+import com.squarespace.less.core.VariableIds;
+
+
+/**
+ * Index of the variable definitions in a {@link Block}, keyed by variable id.
+ * A mask with one bit per id, modulo 64, lets most lookups of variables the
+ * block does not define return without probing the table.
+ */
+final class VariableIndex {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  /**
+   * Open addressed table of definitions, probed linearly. Allocated when the
+   * first definition is added.
+   */
+  private Definition[] slots;
+
+  private int size;
+
+  private long mask;
+
+  /**
+   * Returns the definition of the variable, or null if none exists.
+   */
+  Definition get(int id, String name) {
+    if ((mask & (1L << id)) == 0) {
+      return null;
+    }
+    Definition[] slots = this.slots;
+    int limit = slots.length - 1;
+    for (int i = hash(id) & limit; ; i = (i + 1) & limit) {
+      Definition def = slots[i];
+      if (def == null || matches(def, id, name)) {
+        return def;
+      }
+    }
+  }
+
+  /**
+   * Adds the definition, replacing any existing definition of the variable.
+   */
+  void put(Definition def) {
+    if (slots == null) {
+      slots = new Definition[INITIAL_CAPACITY];
+    } else if ((size + 1) * 2 > slots.length) {
+      Definition[] old = slots;
+      slots = new Definition[old.length * 2];
+      for (Definition existing : old) {
+        if (existing != null) {
+          insert(existing);
+        }
+      }
+    }
+    if (insert(def)) {
+      size++;
+    }
+    mask |= 1L << def.id;
+  }
+
+  /**
+   * Removes all definitions.
+   */
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(slots, null);
+      size = 0;
+      mask = 0;
+    }
+  }
+
+  /**
+   * Stores the definition, returning true if it was not replacing another.
+   */
+  private boolean insert(Definition def) {
+    int limit = slots.length - 1;
+    for (int i = hash(def.id) & limit; ; i = (i + 1) & limit) {
+      Definition existing = slots[i];
+      if (existing == null || matches(existing, def.id, def.name)) {
+        slots[i] = def;
+        return existing == null;
+      }
+    }
+  }
+
+  private static boolean matches(Definition def, int id, String name) {
+    return def.id == id && (VariableIds.unique(id) || def.name.equals(name));
+  }
+
+  private static int hash(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
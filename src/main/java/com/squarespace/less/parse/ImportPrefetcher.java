@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.squarespace.less.ImportCache;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessLoader;
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Loads and parses the import graph of a stylesheet concurrently, ahead of the
+ * parser reaching each {@code @import}, adding the results to an {@link ImportCache}.
+ *
+ * This runs in two phases. The discovery phase loads each file and scans it for
+ * static import paths, fanning out as new files are found. The parse phase then
+ * parses each file once all of the files it imports have been parsed, so each
+ * nested import is a cache hit. Wall time is proportional to the depth of the
+ * import graph rather than the number of files.
+ *
+ * Tasks are queued here and the executor is asked to run them, while the
+ * calling thread runs any still queued as it waits. The prefetch completes even
+ * if the executor rejects the tasks or its threads are all busy, including with
+ * compiles waiting on prefetches of their own.
+ *
+ * Errors are ignored here. Any failing import will be retried by the parser,
+ * which reports the error in context.
+ */
+public class ImportPrefetcher {
+
+  private final LessContext context;
+
+  private final LessLoader loader;
+
+  private final ImportCache cache;
+
+  private final Executor executor;
+
+  /**
+   * Tasks not yet started, by either the executor or the calling thread.
+   */
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Source and resolved imports of each file discovered.
+   */
+  private final Map<Path, Scanned> scanned = new ConcurrentHashMap<>();
+
+  /**
+   * Number of discovery tasks which have not yet completed.
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * Completes when the discovery phase is done.
+   */
+  private final CompletableFuture<Void> discovered = new CompletableFuture<>();
+
+  public ImportPrefetcher(LessContext context, LessLoader loader, ImportCache cache, Executor executor) {
+    this.context = context;
+    this.loader = loader;
+    this.cache = cache;
+    this.executor = executor;
+  }
+
+  /**
+   * Prefetches all static imports reachable from the source, blocking until complete.
+   */
+  public void prefetch(CharSequence source, Path rootPath) {
+    List<Path> roots = resolve(source, rootPath);
+    if (roots.isEmpty()) {
+      return;
+    }
+
+    pending.incrementAndGet();
+    for (Path path : roots) {
+      discover(path);
+    }
+    finishDiscovery();
+    await(discovered);
+
+    // Schedule each parse after the parses of the files it imports. Imports
+    // which form a cycle are left for the parser to report.
+    Map<Path, CompletableFuture<Void>> parsed = new HashMap<>();
+    Set<Path> active = new HashSet<>();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (Path path : roots) {
+      futures.add(schedule(path, parsed, active));
+    }
+    await(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])));
+  }
+
+  /**
+   * Queues the task and asks the executor to run it. If the executor rejects
+   * it, it is left for the calling thread.
+   */
+  private void submit(Runnable task) {
+    queue.add(task);
+    synchronized (queue) {
+      queue.notifyAll();
+    }
+    try {
+      executor.execute(this::runNext);
+    } catch (RejectedExecutionException e) {
+      // Run by the calling thread.
+    }
+  }
+
+  /**
+   * Runs the next queued task, if any.
+   */
+  private void runNext() {
+    Runnable task = queue.poll();
+    if (task != null) {
+      task.run();
+    }
+  }
+
+  /**
+   * Runs queued tasks on the calling thread until the future completes.
+   */
+  private void await(CompletableFuture<Void> future) {
+    future.whenComplete((r, e) -> {
+      synchronized (queue) {
+        queue.notifyAll();
+      }
+    });
+    while (!future.isDone()) {
+      Runnable task = queue.poll();
+      if (task != null) {
+        task.run();
+        continue;
+      }
+      synchronized (queue) {
+        while (queue.isEmpty() && !future.isDone()) {
+          try {
+            queue.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Scans the source for static imports and resolves each against the rootPath
+   * and import paths. Imports which can't be found are skipped.
+   */
+  private List<Path> resolve(CharSequence source, Path rootPath) {
+    LessImporter importer = context.importer();
+    List<Path> result = new ArrayList<>();
+    for (String rawPath : scanImports(source)) {
+      Path path = importer.resolvePath(rootPath, rawPath);
+      if (path != null && !result.contains(path)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Starts a discovery task for the path if it hasn't been seen yet.
+   */
+  private void discover(Path path) {
+    if (scanned.putIfAbsent(path, Scanned.PENDING) != null) {
+      return;
+    }
+    pending.incrementAndGet();
+    submit(() -> {
+      try {
+        CharSequence source = loader.tryLoad(path);
+        if (source == null) {
+          scanned.remove(path);
+          return;
+        }
+        List<Path> imports = resolve(source, path.getParent());
+        scanned.put(path, new Scanned(source, imports));
+        for (Path child : imports) {
+          discover(child);
+        }
+      } catch (LessException | RuntimeException e) {
+        scanned.remove(path);
+      } finally {
+        finishDiscovery();
+      }
+    });
+  }
+
+  private void finishDiscovery() {
+    if (pending.decrementAndGet() == 0) {
+      discovered.complete(null);
+    }
+  }
+
+  /**
+   * Returns a future which completes once the path and everything it imports
+   * have been parsed.
+   */
+  private CompletableFuture<Void> schedule(Path path, Map<Path, CompletableFuture<Void>> parsed, Set<Path> active) {
+    CompletableFuture<Void> future = parsed.get(path);
+    if (future != null) {
+      return future;
+    }
+    Scanned entry = scanned.get(path);
+    if (entry == null || entry == Scanned.PENDING) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    active.add(path);
+    List<CompletableFuture<Void>> children = new ArrayList<>();
+    for (Path child : entry.imports) {
+      if (!active.contains(child)) {
+        children.add(schedule(child, parsed, active));
+      }
+    }
+    active.remove(path);
+
+    future = CompletableFuture.allOf(children.toArray(new CompletableFuture<?>[0]))
+        .thenRunAsync(() -> parse(path, entry.source), this::submit)
+        .exceptionally(e -> null);
+    parsed.put(path, future);
+    return future;
+  }
+
+  /**
+   * Parses the file in a private context which shares the cache.
+   */
+  private void parse(Path path, CharSequence source) {
+    LessContext ctx = new LessContext(context.options(), loader, null, cache);
+    ctx.setCompiler(context.compiler());
+    ctx.importer().shareMissing(context.importer());
+    try {
+      ctx.importer().importSource(path, source, false);
+    } catch (LessException e) {
+      // Parser will report the error.
+    }
+  }
+
+  /**
+   * Scans the source for {@code @import} and {@code @import-once} directives
+   * with a quoted path, skipping comments and strings. Paths containing variable
+   * references, or that refer to CSS files, are skipped.
+   */
+  static List<String> scanImports(CharSequence source) {
+    List<String> result = new ArrayList<>();
+    int len = source.length();
+    int i = 0;
+    while (i < len) {
+      char c = source.charAt(i);
+      char next = i + 1 < len ? source.charAt(i + 1) : '\0';
+      if (c == '/' && next == '*') {
+        int end = LessUtils.indexOf(source, "*/", i + 2);
+        i = end < 0 ? len : end + 2;
+
+      } else if (c == '/' && next == '/') {
+        int end = LessUtils.indexOf(source, '\n', i + 2);
+        i = end < 0 ? len : end + 1;
+
+      } else if (c == '"' || c == '\'') {
+        i = skipString(source, i);
+
+      } else if (c == '@' && LessUtils.startsWith(source, "@import", i)) {
+        i += 7;
+        if (LessUtils.startsWith(source, "-once", i)) {
+          i += 5;
+        }
+        while (i < len && Character.isWhitespace(source.charAt(i))) {
+          i++;
+        }
+        if (i < len && (source.charAt(i) == '"' || source.charAt(i) == '\'')) {
+          int end = skipString(source, i);
+          String rawPath = source.subSequence(i + 1, end - 1).toString();
+          if (source.charAt(end - 1) == source.charAt(i) && rawPath.indexOf("@{") == -1) {
+            rawPath = LessImporter.normalizeImportPath(rawPath);
+            if (rawPath != null) {
+              result.add(rawPath);
+            }
+          }
+          i = end;
+        }
+
+      } else {
+        i++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the offset just past the end of the string starting at {@code start}.
+   */
+  private static int skipString(CharSequence source, int start) {
+    char delim = source.charAt(start);
+    int len = source.length();
+    int i = start + 1;
+    while (i < len) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      i++;
+      if (c == delim || c == '\n') {
+        break;
+      }
+    }
+    return Math.min(i, len);
+  }
+
+  /**
+   * Result of discovering a single file.
+   */
+  private static class Scanned {
+
+    static final Scanned PENDING = new Scanned(null, null);
+
+    final CharSequence source;
+
+    final List<Path> imports;
+
+    Scanned(CharSequence source, List<Path> imports) {
+      this.source = source;
+      this.imports = imports;
+    }
+  }
+
+}
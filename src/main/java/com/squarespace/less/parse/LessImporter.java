@@ -19,17 +19,30 @@ package com.squarespace.less.parse;
 import static com.squarespace.less.core.SyntaxErrorMaker.importError;
 
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.squarespace.less.CompileListener;
+import com.squarespace.less.DefaultImportCache;
 import com.squarespace.less.FilesystemLessLoader;
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.LessLoader;
+import com.squarespace.less.LessStats;
+import com.squarespace.less.core.LessUtils;
 import com.squarespace.less.exec.ImportRecord;
+import com.squarespace.less.jfr.LessImportEvent;
 import com.squarespace.less.model.Block;
 import com.squarespace.less.model.Features;
 import com.squarespace.less.model.Import;
@@ -58,10 +71,66 @@ public class LessImporter {
 
   private final Map<Path, Stylesheet> preCache;
 
+  private ImportCache sharedCache;
+
+  /**
+   * Candidate paths found not to exist during this compile. Shared with the
+   * prefetcher's threads.
+   */
+  private Set<Path> missing = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Collects the imports made by each stylesheet currently being parsed.
+   */
+  private final Deque<Dependencies> parsing = new ArrayDeque<>();
+
   public LessImporter(LessContext ctx, LessLoader loader, Map<Path, Stylesheet> preCache) {
+    this(ctx, loader, preCache, null);
+  }
+
+  public LessImporter(LessContext ctx, LessLoader loader, Map<Path, Stylesheet> preCache, ImportCache sharedCache) {
     this.context = ctx;
     this.loader = (loader == null) ? new FilesystemLessLoader() : loader;
     this.preCache = (preCache == null) ? new HashMap<Path, Stylesheet>() : preCache;
+    this.sharedCache = sharedCache;
+  }
+
+  /**
+   * Returns the loader used to read imported files.
+   */
+  public LessLoader loader() {
+    return loader;
+  }
+
+  /**
+   * Shares the other importer's record of missing paths, for importers which
+   * take part in the same compile.
+   */
+  void shareMissing(LessImporter other) {
+    this.missing = other.missing;
+  }
+
+  /**
+   * Returns the content hash of each file imported so far, or null if any
+   * import was satisfied by a pre-parsed stylesheet whose source is unknown.
+   */
+  public Map<Path, String> importHashes() {
+    Map<Path, String> result = new HashMap<>();
+    for (ImportRecord record : importCache.values()) {
+      if (record.contentHash() == null) {
+        return null;
+      }
+      result.put(record.exactPath(), record.contentHash());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the candidate paths found not to exist while resolving imports so
+   * far. Creating any of them could change which file an import resolves to.
+   */
+  public Set<Path> missingPaths() {
+    return new HashSet<>(missing);
   }
 
   /**
@@ -82,7 +151,37 @@ public class LessImporter {
       throw new LessException(importError(rawPath, "Recursion limit of " + limit + " exceeded"));
     }
 
-    Stylesheet sheet = importStylesheet(rawPath, importNode);
+    LessStats stats = context.stats();
+    long started = stats.now();
+    CompileListener listener = context.listener();
+    if (listener != null) {
+      listener.importStart(importNode, started);
+    }
+    int fileReads = stats.fileReads();
+    LessImportEvent event = new LessImportEvent();
+    event.begin();
+    Stylesheet sheet = null;
+    try {
+      sheet = importStylesheet(rawPath, importNode);
+    } finally {
+      // Nested imports are included in the time of the top-level import.
+      if (context.importDepth() == 1) {
+        stats.importTimeDone(started);
+      }
+      if (listener != null) {
+        listener.importEnd(importNode, started, stats.now());
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        Path importedFrom = importNode.fileName();
+        event.path = rawPath;
+        event.importedFrom = importedFrom == null ? null : importedFrom.toString();
+        event.line = importNode.lineOffset() + 1;
+        event.importDepth = context.importDepth();
+        event.filesRead = stats.fileReads() - fileReads;
+        event.commit();
+      }
+    }
     if (sheet == null) {
       // When import-once is used, we disappear the import node.
       context.exitImport();
@@ -137,14 +236,27 @@ public class LessImporter {
     // once and the flag is being enforced.
     if (record != null) {
 
+      // Candidates searched before the one found are dependencies too.
+      List<Path> candidates = candidates(rootPath, rawPath);
+      int size = candidates.size();
+      for (int i = 0; i < size && !candidates.get(i).equals(path); i++) {
+        if (missing.contains(candidates.get(i))) {
+          addMissing(candidates.get(i));
+        }
+      }
+
       // If either the global or per-node "once" flag is set, suppress this import node
       // in the output.
       if (context.options().importOnce() || record.onlyOnce()) {
         importNode.suppress(true);
+
+        // The enclosing stylesheet's parse now depends on what was imported before it.
+        markUnshareable();
         return null;
       }
 
       context.stats().importDone(true);
+      addDependency(record.withOnlyOnce(once));
       return record.stylesheeet().copy();
     }
 
@@ -168,49 +280,254 @@ public class LessImporter {
       }
     }
 
-    // Else, ask the loader if the file exists and parse it.
-    if (result == null) {
-      path = resolvePath(rootPath, rawPath);
-      if (path == null) {
-        throw new LessException(importError(rawPath, "File cannot be found"));
-      }
-      result = context.compiler().parse(loader.load(path), context, path.getParent(), path.getFileName());
+    if (result != null) {
+      // Content of pre-cached stylesheets is unknown, so they can't be shared.
+      record = new ImportRecord(path, result, once);
+      markUnshareable();
+
+    } else {
+      // Else, load the first candidate that exists and parse it.
+      record = importFile(rootPath, rawPath, once);
+      path = record.exactPath();
     }
 
     // Stick it in the cache if not already present.
     if (!importCache.containsKey(path)) {
-      importCache.put(path, new ImportRecord(path, result, once));
+      importCache.put(path, record);
     }
+    addDependency(record);
     context.stats().importDone(false);
-    return result.copy();
+    return record.stylesheeet().copy();
   }
 
   /**
-   * Search the rootPath and the importPaths if any, looking for a file that exists.
+   * Scans the source for static imports, then loads and parses the whole import
+   * graph concurrently on the executor. The parsed stylesheets are added to the
+   * shared cache, creating one for this importer if none was configured, so
+   * they're available when the parser reaches each import. Blocks until the
+   * prefetch is complete.
    */
-  private Path resolvePath(Path rootPath, String rawPath) {
-    Path path = null;
-    if (rootPath != null) {
-      path = rootPath.resolve(rawPath).toAbsolutePath().normalize();
-      if (loader.exists(path)) {
-        return path;
+  public void prefetch(CharSequence source, Path rootPath, Executor executor) {
+    if (sharedCache == null) {
+      sharedCache = new DefaultImportCache();
+    }
+    new ImportPrefetcher(context, loader, sharedCache, executor).prefetch(source, rootPath);
+  }
+
+  /**
+   * Loads and parses the first file found relative to the rootPath or the import
+   * paths, or obtains it from the shared cache if one is configured and holds a
+   * valid entry.
+   */
+  private ImportRecord importFile(Path rootPath, String rawPath, boolean once) throws LessException {
+    List<Path> candidates = candidates(rootPath, rawPath);
+    int size = candidates.size();
+    for (int i = 0; i < size; i++) {
+      Path path = candidates.get(i);
+      CharSequence source = missing.contains(path) ? null : load(path);
+      if (source != null) {
+        return importSource(path, source, once);
       }
+      addMissing(path);
     }
-    List<Path> importPaths = context.options().importPaths();
-    if (importPaths == null || importPaths.isEmpty()) {
-      return null;
+    throw new LessException(importError(rawPath, "File cannot be found"));
+  }
+
+  /**
+   * Parses the file's source, or obtains it from the shared cache if one is
+   * configured and holds a valid entry.
+   */
+  ImportRecord importSource(Path path, CharSequence source, boolean once) throws LessException {
+    String contentHash = LessUtils.contentHash(source);
+    String optionsKey = null;
+    if (sharedCache != null) {
+      // Options such as ignoreComments change the parse, so the key covers all of them.
+      optionsKey = context.options().fingerprint();
+      ImportRecord cached = sharedCache.get(path, contentHash, optionsKey);
+      if (cached != null && validate(cached, new HashMap<>())) {
+        register(cached);
+        return cached.withOnlyOnce(once);
+      }
+    }
+
+    Dependencies dependencies = new Dependencies();
+    parsing.push(dependencies);
+    Stylesheet sheet = null;
+    try {
+      sheet = context.compiler().parse(source, context, path.getParent(), path.getFileName());
+    } finally {
+      parsing.pop();
     }
-    int size = importPaths.size();
+
+    int size = source.length();
+    for (ImportRecord dependency : dependencies.records) {
+      size += dependency.size();
+    }
+    ImportRecord record = new ImportRecord(path, sheet, once, contentHash, dependencies.records,
+        dependencies.missing, size);
+    if (!dependencies.shareable) {
+      markUnshareable();
+    } else if (sharedCache != null) {
+      sharedCache.put(optionsKey, record);
+    }
+    return record;
+  }
+
+  /**
+   * Ensures a shared stylesheet would have been imported the same way in this
+   * compile: none of the candidates found missing when it was parsed now exist,
+   * the content of each dependency is unchanged and none of them would be
+   * suppressed by the "once" flag.
+   */
+  private boolean validate(ImportRecord record, Map<Path, String> checked) throws LessException {
+    for (Path path : record.missing()) {
+      if (!missing.contains(path) && exists(path)) {
+        return false;
+      }
+    }
+    List<ImportRecord> dependencies = record.dependencies();
+    int size = dependencies.size();
+    for (int i = 0; i < size; i++) {
+      ImportRecord dependency = dependencies.get(i);
+      Path path = dependency.exactPath();
+      String contentHash = checked.get(path);
+      if (contentHash == null) {
+        ImportRecord existing = importCache.get(path);
+        if (existing != null) {
+          if (context.options().importOnce() || existing.onlyOnce()) {
+            return false;
+          }
+          contentHash = existing.contentHash();
+        } else {
+          CharSequence source = load(path);
+          if (source != null) {
+            contentHash = LessUtils.contentHash(source);
+          }
+        }
+        if (contentHash == null) {
+          return false;
+        }
+        checked.put(path, contentHash);
+      }
+      if (!contentHash.equals(dependency.contentHash()) || !validate(dependency, checked)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Loads the file, returning null if it doesn't exist, and records the time
+   * spent waiting on the loader.
+   */
+  private CharSequence load(Path path) throws LessException {
+    LessStats stats = context.stats();
+    long started = stats.now();
+    try {
+      return loader.tryLoad(path);
+    } finally {
+      stats.diskWaitDone(started);
+    }
+  }
+
+  /**
+   * Indicates whether the file exists, and records the time spent waiting on the loader.
+   */
+  private boolean exists(Path path) {
+    LessStats stats = context.stats();
+    long started = stats.now();
+    try {
+      return loader.exists(path);
+    } finally {
+      stats.diskWaitDone(started);
+    }
+  }
+
+  /**
+   * Adds a shared stylesheet's dependencies to this compile's import cache,
+   * and the candidates found missing when it was parsed to this compile's.
+   */
+  private void register(ImportRecord record) {
+    missing.addAll(record.missing());
+    List<ImportRecord> dependencies = record.dependencies();
+    int size = dependencies.size();
+    for (int i = 0; i < size; i++) {
+      ImportRecord dependency = dependencies.get(i);
+      if (!importCache.containsKey(dependency.exactPath())) {
+        importCache.put(dependency.exactPath(), dependency);
+      }
+      register(dependency);
+    }
+  }
+
+  /**
+   * Records an import made by the stylesheet currently being parsed.
+   */
+  private void addDependency(ImportRecord record) {
+    Dependencies dependencies = parsing.peek();
+    if (dependencies != null) {
+      dependencies.records.add(record);
+    }
+  }
+
+  /**
+   * Records a candidate path which doesn't exist, for this compile and the
+   * stylesheet currently being parsed.
+   */
+  private void addMissing(Path path) {
+    missing.add(path);
+    Dependencies dependencies = parsing.peek();
+    if (dependencies != null) {
+      dependencies.missing.add(path);
+    }
+  }
+
+  /**
+   * Indicates the stylesheet currently being parsed cannot be shared with other compiles.
+   */
+  private void markUnshareable() {
+    Dependencies dependencies = parsing.peek();
+    if (dependencies != null) {
+      dependencies.shareable = false;
+    }
+  }
+
+  /**
+   * Search the rootPath and the importPaths if any, looking for a file that exists.
+   */
+  Path resolvePath(Path rootPath, String rawPath) {
+    List<Path> candidates = candidates(rootPath, rawPath);
+    int size = candidates.size();
     for (int i = 0; i < size; i++) {
-      Path importPath = importPaths.get(i);
-      path = importPath.resolve(rawPath).toAbsolutePath().normalize();
+      Path path = candidates.get(i);
+      if (missing.contains(path)) {
+        continue;
+      }
       if (loader.exists(path)) {
         return path;
       }
+      missing.add(path);
     }
     return null;
   }
 
+  /**
+   * Returns the paths to search for the import, in order: relative to the rootPath,
+   * then to each of the importPaths.
+   */
+  private List<Path> candidates(Path rootPath, String rawPath) {
+    List<Path> importPaths = context.options().importPaths();
+    int size = importPaths == null ? 0 : importPaths.size();
+    List<Path> result = new ArrayList<>(size + 1);
+    if (rootPath != null) {
+      result.add(rootPath.resolve(rawPath).toAbsolutePath().normalize());
+    }
+    for (int i = 0; i < size; i++) {
+      result.add(importPaths.get(i).resolve(rawPath).toAbsolutePath().normalize());
+    }
+    return result;
+  }
+
   /**
    * Convert the import node's path into a String.
    */
@@ -220,7 +537,6 @@ public class LessImporter {
       return null;
     }
 
-    String path = null;
     if (node instanceof Quoted) {
       Quoted quoted = ((Quoted)node).copy();
       // If quoted path contains a variable reference, we can't currently resolve
@@ -232,7 +548,14 @@ public class LessImporter {
       node = quoted;
     }
 
-    path = context.render(node);
+    return normalizeImportPath(context.render(node));
+  }
+
+  /**
+   * Appends the default extension to the rendered import path if it has none.
+   * Returns null for CSS imports, which are emitted as-is.
+   */
+  static String normalizeImportPath(String path) {
     Matcher matcher = IMPORT_EXT.matcher(path);
     if (!matcher.matches()) {
       // Append optional ".less" extension
@@ -246,4 +569,17 @@ public class LessImporter {
     return path;
   }
 
+  /**
+   * Imports made while parsing a single stylesheet.
+   */
+  private static class Dependencies {
+
+    private final List<ImportRecord> records = new ArrayList<>();
+
+    private final Set<Path> missing = new HashSet<>();
+
+    private boolean shareable = true;
+
+  }
+
 }
@@ -105,12 +105,10 @@ import com.squarespace.less.model.Variable;
  */
 public class LessParser {
 
-  // TODO: investigate unifying MIXIN, MIXIN_CALL, RULESET prefix parsing to lower the
-  // amount of backtracking. there is overlap between these fragments, as they all use a
-  // selector prefix, and MIXIN and MIXIN_CALL both have optional parameters, e.g. if we
-  // parse ".mixin();" as a MIXIN, the tokens up to the ';' also correspond to a MIXIN_CALL.
-  // see if we can parse these 3 prefxes somewhat generally and when certain key fragments
-  // are detected, specialize at the last minute.
+  // MIXIN, MIXIN_CALL and RULESET overlap, as they all use a selector prefix, and MIXIN and
+  // MIXIN_CALL both have optional parameters, e.g. if we parse ".mixin();" as a MIXIN, the
+  // tokens up to the ';' also correspond to a MIXIN_CALL. Before parsing any of them we scan
+  // ahead for the character that decides between them, see block_open_peek().
 
   /**
    * Flag that indicates we've just passed a character that should be considered
@@ -130,7 +128,7 @@ public class LessParser {
   /**
    * Number of values in a mark record.
    */
-  private static final int MARK_DIM = 4;
+  private static final int MARK_DIM = 2;
 
   /**
    * Comment node that indicates a comment was parsed or skipped over, and should be suppressed from the output.
@@ -180,7 +178,7 @@ public class LessParser {
   private int b_ptr = 0;
 
   /**
-   * Marks of parser position: position, line, column, and flags.
+   * Marks of parser position: position and flags.
    */
   private int[][] marks = new int[16][MARK_DIM];
 
@@ -217,7 +215,7 @@ public class LessParser {
   /**
    * Source string.
    */
-  private final String raw;
+  private final CharSequence raw;
 
   /**
    * Source string length.
@@ -240,14 +238,9 @@ public class LessParser {
   private int furthest;
 
   /**
-   * Current line number.
+   * Line start offsets, built when a node first records its position.
    */
-  private int line = 0;
-
-  /**
-   * Current column number.
-   */
-  private int column = 0;
+  private LineIndex lineIndex;
 
   /**
    * Flags for controlling parser state.
@@ -283,14 +276,18 @@ public class LessParser {
   /**
    * Construct a parser for the given context and source string.
    */
-  public LessParser(LessContext ctx, String source) {
+  public LessParser(LessContext ctx, CharSequence source) {
     this(ctx, source, null, null);
   }
 
+  public LessParser(LessContext ctx, String source) {
+    this(ctx, (CharSequence) source);
+  }
+
   /**
    * Construct a parser for the given context and source string.
    */
-  public LessParser(LessContext ctx, String source, Path rootPath, Path fileName) {
+  public LessParser(LessContext ctx, CharSequence source, Path rootPath, Path fileName) {
     this.ctx = ctx;
     this.builder = ctx.nodeBuilder();
     this.raw = source;
@@ -300,6 +297,10 @@ public class LessParser {
     this.fileName = fileName;
   }
 
+  public LessParser(LessContext ctx, String source, Path rootPath, Path fileName) {
+    this(ctx, (CharSequence) source, rootPath, fileName);
+  }
+
   /**
    * Override the intern pool used by the parser.
    */
@@ -372,8 +373,12 @@ public class LessParser {
    */
   private <T extends StructuralNode> T setinfo(int[] mark, int size, T node) {
     if (node != null) {
-      node.setLineOffset(mark[1]);
-      node.setCharOffset(mark[2]);
+      if (lineIndex == null) {
+        lineIndex = new LineIndex(raw);
+      }
+      int line = lineIndex.line(mark[0]);
+      node.setLineOffset(line);
+      node.setCharOffset(lineIndex.column(mark[0], line));
       node.setSize(size);
     }
     return node;
@@ -399,9 +404,7 @@ public class LessParser {
     }
     int[] m = marks[m_ptr];
     m[0] = pos;
-    m[1] = line;
-    m[2] = column;
-    m[3] = flags;
+    m[1] = flags;
     m_ptr++;
     return m;
   }
@@ -420,10 +423,9 @@ public class LessParser {
     m_ptr--;
     int[] m = marks[m_ptr];
     pos = m[0];
-    line = m[1];
-    column = m[2];
-    flags = m[3];
+    flags = m[1];
     rollbacks++;
+    ctx.stats().rollback();
     if (rollbacks > ROLLBACK_THRESHOLD) {
       throw parseError(new LessException(excessiveRollbacks()));
     }
@@ -621,6 +623,7 @@ public class LessParser {
 
         case STYLESHEET:
           Stylesheet sheet = builder.buildStylesheet(new Block());
+          sheet.fileName(fileName);
           r = _parse(sheet) ? sheet : null;
           break;
 
@@ -702,7 +705,6 @@ public class LessParser {
 
           // Move forward
           pos++;
-          column++;
           continue;
         }
 
@@ -774,9 +776,17 @@ public class LessParser {
         case '#': {
           // Possible MIXIN definition, MIXIN_CALL or RULESET start.
 
-          // TODO: unify similarities between MIXIN and MIXIN_CALL? as there is some
-          // overlap in the syntax. a fragment ".mixin()" is also a call, but we
-          // only know when we hit ';' or fail to hit '{'
+          // MIXIN and RULESET both end in a block open, so if the statement ends
+          // first this can only be a MIXIN_CALL. Parse it directly to avoid
+          // parsing its prefix as a MIXIN and RULESET and rolling back.
+          boolean call_first = !block_open_peek();
+          if (call_first) {
+            MixinCall call = mixin_call();
+            if (call != null) {
+              block.add(call);
+              continue;
+            }
+          }
 
           Mixin mixin = mixin();
           if (mixin != null) {
@@ -792,10 +802,12 @@ public class LessParser {
             continue;
           }
 
-          MixinCall call = mixin_call();
-          if (call != null) {
-            block.add(call);
-            continue;
+          if (!call_first) {
+            MixinCall call = mixin_call();
+            if (call != null) {
+              block.add(call);
+              continue;
+            }
           }
           break;
         }
@@ -1004,7 +1016,7 @@ public class LessParser {
     }
 
     commit();
-    String name = raw.substring(ms, me);
+    String name = substring(ms, me);
     return new Assignment(name, value);
   }
 
@@ -1025,6 +1037,96 @@ public class LessParser {
     return true;
   }
 
+  /**
+   * Scans ahead without consuming input to determine if a '{' may open a block
+   * before the current statement ends with a ';', '}' or end of input. Quoted
+   * strings, comments, variable interpolations and characters nested inside
+   * parentheses or brackets are skipped.
+   */
+  private boolean block_open_peek() {
+    int depth = 0;
+    int i = pos;
+    while (i < len) {
+      char c = raw.charAt(i);
+      switch (c) {
+        case '(':
+        case '[':
+          depth++;
+          break;
+
+        case ')':
+        case ']':
+          if (depth > 0) {
+            depth--;
+          }
+          break;
+
+        case '\\':
+          i++;
+          break;
+
+        case '"':
+        case '\'':
+          i++;
+          while (i < len) {
+            char q = raw.charAt(i);
+            if (q == c) {
+              break;
+            }
+            if (q == '\\') {
+              i++;
+            }
+            i++;
+          }
+          break;
+
+        case '/':
+          if (peek(i + 1) == '*') {
+            int end = LessUtils.indexOf(raw, "*/", i + 2);
+            if (end == -1) {
+              return true;
+            }
+            i = end + 1;
+          } else if (depth == 0 && peek(i + 1) == '/') {
+            int end = LessUtils.indexOf(raw, '\n', i + 2);
+            if (end == -1) {
+              return false;
+            }
+            i = end;
+          }
+          break;
+
+        case '@':
+          if (peek(i + 1) == '{') {
+            int end = LessUtils.indexOf(raw, '}', i + 2);
+            if (end == -1) {
+              return true;
+            }
+            i = end;
+          }
+          break;
+
+        case '{':
+          if (depth == 0) {
+            return true;
+          }
+          break;
+
+        case ';':
+        case '}':
+          if (depth == 0) {
+            return false;
+          }
+          break;
+
+        default:
+          break;
+      }
+      i++;
+    }
+    return false;
+  }
+
   /**
    * COLOR
    *
@@ -1103,13 +1205,10 @@ public class LessParser {
       // We've hit a comment start, but there are no additional chars to parse.
       // Example is a file ending in '//<eof>'.
       this.pos = i;
-      this.column += 2;
       return builder.buildComment("", isblock, rulelevel);
     }
 
-    // We've found an unambiguous comment start, so start real parse
-    this.column += 2;
-
+    // We've found an unambiguous comment start, so start real parse.
     // We've definitely started parsing a comment, and there is no
     // turning back. We find the end or hit EOF, so we commit.
     pos = i;
@@ -1132,12 +1231,7 @@ public class LessParser {
         if (c == '\n') {
           end = pos;
           pos++;
-          this.line++;
-          this.column = 0;
           break;
-
-        } else {
-          this.column++;
         }
         pos++;
       }
@@ -1160,7 +1254,7 @@ public class LessParser {
       return DUMMY_COMMENT;
     }
 
-    String body = raw.substring(i, end);
+    String body = substring(i, end);
     return builder.buildComment(body, isblock, rulelevel);
   }
 
@@ -1208,7 +1302,7 @@ public class LessParser {
 
     ws();
     if (match(Patterns.BOOL_OPERATOR)) {
-      Operator op = Operator.fromString(raw.substring(m_start, m_end));
+      Operator op = Operator.fromString(substring(m_start, m_end));
       consume(m_end);
 
       ws();
@@ -1307,7 +1401,7 @@ public class LessParser {
     rule_end();
 
     // High confidence we have a valid definition, so copy the name
-    String name = raw.substring(ms, me);
+    String name = substring(ms, me);
 
     // Ensures a selector immediately after ';' will create a descendant delimiter
     flags |= FLAG_OPENSPACE;
@@ -1344,7 +1438,7 @@ public class LessParser {
 
     Dimension dim = internPool.dimension(raw, d_ms, u_me);
     if (dim == null) {
-      Double value = Double.parseDouble(raw.substring(d_ms, d_me));
+      Double value = Double.parseDouble(substring(d_ms, d_me));
       Unit unit = null;
       if (have_unit) {
         // Lookup unit without allocations
@@ -1369,7 +1463,7 @@ public class LessParser {
     int[] mark = begin();
     consume(m_end);
 
-    String name = raw.substring(m_start, m_end);
+    String name = substring(m_start, m_end);
     String nvname = name;
 
     // Look for '-' prefixes and remove them for matching
@@ -1591,7 +1685,7 @@ public class LessParser {
     Node key = null;
     if (match(Patterns.ATTRIBUTE_KEY)) {
       consume(m_end);
-      key = new Anonymous(raw.substring(m_start, m_end));
+      key = new Anonymous(substring(m_start, m_end));
     } else {
       key = quoted();
     }
@@ -1607,11 +1701,11 @@ public class LessParser {
       consume(m_end);
       ws();
 
-      Node oper = new Anonymous(raw.substring(m_start, m_end));
+      Node oper = new Anonymous(substring(m_start, m_end));
       Node val = quoted();
       if (val == null && match(Patterns.IDENTIFIER)) {
         consume(m_end);
-        val = new Anonymous(raw.substring(m_start, m_end));
+        val = new Anonymous(substring(m_start, m_end));
       }
       if (val != null) {
         elem.add(oper);
@@ -2210,7 +2304,7 @@ public class LessParser {
     int ms = m_start;
     int[] mark = begin();
 
-    String name = raw.substring(m_start, m_end);
+    String name = substring(m_start, m_end);
     consume(m_end);
 
     // Required parameters
@@ -2234,6 +2328,7 @@ public class LessParser {
     // Definition is valid
     int size = pos - ms;
     Mixin mixin = setinfo(mark, size, builder.buildMixin(name, params, guard, new Block()));
+    mixin.fileName(fileName);
     commit();
     return mixin;
   }
@@ -2722,7 +2817,6 @@ public class LessParser {
 
       // Not a variable, so continue
       pos++;
-      column++;
 
       // Check if we're at the end of the string
       if (c == delim) {
@@ -2742,7 +2836,6 @@ public class LessParser {
         c = raw.charAt(pos);
         buf.append(c);
         pos++;
-        column++;
       }
     }
 
@@ -2762,7 +2855,7 @@ public class LessParser {
     if (!match(Patterns.RATIO)) {
       return null;
     }
-    Ratio ratio = new Ratio(raw.substring(m_start, m_end));
+    Ratio ratio = new Ratio(substring(m_start, m_end));
     consume(m_end);
     return ratio;
   }
@@ -2823,7 +2916,7 @@ public class LessParser {
       if (match(Patterns.ANON_RULE_VALUE)) {
         // Don't skip over the trailing char
         consume(m_end - 1);
-        value = new Anonymous(raw.substring(m_start, m_end - 1).trim());
+        value = new Anonymous(substring(m_start, m_end - 1).trim());
       }
 
     } else if (value == null) {
@@ -3008,7 +3101,7 @@ public class LessParser {
   private UnicodeRange unicode_range() {
     if (peek() == 'U' && match(Patterns.UNICODE_DESCRIPTOR)) {
       consume(m_end);
-      String token = raw.substring(m_start, m_end);
+      String token = substring(m_start, m_end);
       return new UnicodeRange(token);
     }
     return null;
@@ -3042,7 +3135,7 @@ public class LessParser {
         next();
         c = peek();
       }
-      n = new Anonymous(raw.substring(start, pos).trim());
+      n = new Anonymous(substring(start, pos).trim());
     }
 
     ws();
@@ -3098,7 +3191,7 @@ public class LessParser {
     // TODO: avoid prepending variable '@', restructure code accordingly.
     // the tweak parser will need to also change how it constructs variables
 
-    String name = '@' + raw.substring(m_start, m_end);
+    String name = '@' + substring(m_start, m_end);
     if (indirect) {
       name = '@' + name;
     }
@@ -3131,6 +3224,7 @@ loop:
         // U+FEFF ZERO WIDTH NO BREAK SPACE / BOM
         // All chars in Unicode category Zs "Space_Separator"
         case '\t':
+        case '\n':
         case '\u000b':
         case '\f':
         case '\r':
@@ -3156,14 +3250,6 @@ loop:
         case '\u3000':
         case '\ufeff':
           this.pos++;
-          this.column++;
-          lastws = true;
-          break;
-
-        case '\n':
-          this.pos++;
-          line++;
-          column = 0;
           lastws = true;
           break;
 
@@ -3201,6 +3287,7 @@ loop:
         // U+FEFF ZERO WIDTH NO BREAK SPACE / BOM
         // All chars in Unicode category Zs "Space_Separator"
         case '\t':
+        case '\n':
         case '\u000b':
         case '\f':
         case '\r':
@@ -3226,7 +3313,6 @@ loop:
         case '\u3000':
         case '\ufeff':
           this.pos++;
-          this.column++;
           lastws = true;
           break;
 
@@ -3236,14 +3322,6 @@ loop:
           }
           // Skip extraneous semicolons at rule level
           this.pos++;
-          this.column++;
-          break;
-
-        case '\n':
-          this.pos++;
-          line++;
-          column = 0;
-          lastws = true;
           break;
 
         // TODO: investigate whether comments should be lifted out into the enclosing block
@@ -3315,12 +3393,6 @@ loop:
   private char next() {
     if (pos < len) {
       char c = raw.charAt(pos);
-      if (c == '\n') {
-        line++;
-        column = 0;
-      } else {
-        column++;
-      }
       pos++;
       if (pos > furthest) {
         furthest = pos;
@@ -3386,15 +3458,8 @@ loop:
    * Consume characters up to 'end' position.
    */
   private void consume(int end) {
-    while (pos < end) {
-      char c = raw.charAt(pos);
-      if (c == '\n') {
-        line++;
-        column = 0;
-      } else {
-        column++;
-      }
-      pos++;
+    if (pos < end) {
+      pos = end;
     }
     flags &= ~FLAG_OPENSPACE;
     if (pos > furthest) {
@@ -3402,6 +3467,13 @@ loop:
     }
   }
 
+  /**
+   * Copy the characters between the given positions.
+   */
+  private String substring(int start, int end) {
+    return raw.subSequence(start, end).toString();
+  }
+
   /**
    * Peek at the character in the stream.
    */
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Maps character offsets in a source string to zero-based line and column
+ * numbers, using a table of the offsets at which each line starts.
+ */
+class LineIndex {
+
+  /**
+   * Offset of the first character of each line.
+   */
+  private final int[] starts;
+
+  private final int count;
+
+  LineIndex(CharSequence raw) {
+    int[] starts = new int[64];
+    int count = 1;
+    int i = LessUtils.indexOf(raw, '\n', 0);
+    while (i != -1) {
+      if (count == starts.length) {
+        int[] old = starts;
+        starts = new int[old.length * 2];
+        System.arraycopy(old, 0, starts, 0, count);
+      }
+      starts[count++] = i + 1;
+      i = LessUtils.indexOf(raw, '\n', i + 1);
+    }
+    this.starts = starts;
+    this.count = count;
+  }
+
+  /**
+   * Returns the line containing the offset.
+   */
+  int line(int offset) {
+    int lo = 0;
+    int hi = count - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (starts[mid] <= offset) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Returns the column of the offset within the given line.
+   */
+  int column(int offset, int line) {
+    return offset - starts[line];
+  }
+
+}
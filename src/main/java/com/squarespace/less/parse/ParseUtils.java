@@ -63,11 +63,11 @@ public class ParseUtils {
 
   private static class Stream {
 
-    final String raw;
+    final CharSequence raw;
     final int length;
     int pos = 0;
 
-    Stream(String raw) {
+    Stream(CharSequence raw) {
       this.raw = raw;
       this.length = raw.length();
     }
@@ -96,7 +96,7 @@ public class ParseUtils {
    * Build a user-readable parser error message, showing the exact context for
    * the error. We append this to the given exception inside a ParseError node.
    */
-  public static LessException parseError(LessException exc, Path filePath, String raw, int index) {
+  public static LessException parseError(LessException exc, Path filePath, CharSequence raw, int index) {
     List<int[]> offsets = new ArrayList<>();
     Stream stm = new Stream(raw);
 
@@ -142,15 +142,15 @@ public class ParseUtils {
           buf.append("... ");
 
           int min = Math.min(leftpos + WINDOW_SIZE, pos[1]);
-          String part = raw.substring(leftpos, min);
+          String part = raw.subSequence(leftpos, min).toString();
           buf.append(part);
 
         } else {
-          buf.append(raw.substring(pos[0], pos[1]));
+          buf.append(raw.subSequence(pos[0], pos[1]).toString());
         }
 
       } else {
-        buf.append(compressString(raw.substring(pos[0], pos[1])));
+        buf.append(compressString(raw.subSequence(pos[0], pos[1]).toString()));
       }
     }
 
@@ -171,6 +171,10 @@ public class ParseUtils {
     return exc;
   }
 
+  public static LessException parseError(LessException exc, Path filePath, String raw, int index) {
+    return parseError(exc, filePath, (CharSequence) raw, index);
+  }
+
   private static void indent(Buffer buf, int width) {
     for (int i = 0; i < width; i++) {
       buf.append(' ');
@@ -25,6 +25,7 @@ import static com.squarespace.less.core.Chars.PERIOD;
 import static com.squarespace.less.core.Chars.RIGHT_PARENTHESIS;
 import static com.squarespace.less.core.Chars.SLASH;
 import static com.squarespace.less.match.Recognizers.anon;
+import static com.squarespace.less.match.Recognizers.compile;
 import static com.squarespace.less.match.Recognizers.digits;
 import static com.squarespace.less.match.Recognizers.literal;
 import static com.squarespace.less.match.Recognizers.sequence;
@@ -37,6 +38,9 @@ import com.squarespace.less.match.Recognizer;
 import com.squarespace.less.match.Recognizers;
 
 
+/**
+ * Patterns used by the parser, compiled with {@link Recognizers#compile(Recognizer)}.
+ */
 public class Patterns {
 
   // Common
@@ -46,59 +50,60 @@ public class Patterns {
 
   // REGEX: "alpha\\s*\\("
   // TODO: hand-code
-  public static final Recognizer ALPHA_START = sequence(literal("alpha"), zeroOrMore(whitespace()), literal("("));
+  public static final Recognizer ALPHA_START = compile(
+      sequence(literal("alpha"), zeroOrMore(whitespace()), literal("(")));
 
   public static final Recognizer AND = literal("and");
 
   // REGEX: "(?:[^;@+/'\"*`({}-]*);"
-  public static final Recognizer ANON_RULE_VALUE = anon();
+  public static final Recognizer ANON_RULE_VALUE = compile(anon());
 
   // REGEX: "([\\w-]|\\\\.)+"
-  public static final Recognizer ATTRIBUTE_KEY = Recognizers.attributeKey();
+  public static final Recognizer ATTRIBUTE_KEY = compile(Recognizers.attributeKey());
 
   // REGEX: "[|~*$^]?="
-  public static final Recognizer ATTRIBUTE_OP = Recognizers.attributeOperator();
+  public static final Recognizer ATTRIBUTE_OP = compile(Recognizers.attributeOperator());
 
   // REGEX: "<>|=[<>]*|[<>]=*|!="
-  public static final Recognizer BOOL_OPERATOR = Recognizers.boolOperator();
+  public static final Recognizer BOOL_OPERATOR = compile(Recognizers.boolOperator());
 
   // REGEX: "([\\w-_]+|%|progid:[\\w\\.]+)\\("
-  public static final Recognizer CALL_NAME = Recognizers.callName();
+  public static final Recognizer CALL_NAME = compile(Recognizers.callName());
 
-  public static final Recognizer DIMENSION_UNIT = Recognizers.units();
+  public static final Recognizer DIMENSION_UNIT = compile(Recognizers.units());
 
-  public static final Recognizer DIMENSION_VALUE = Recognizers.dimension();
+  public static final Recognizer DIMENSION_VALUE = compile(Recognizers.dimension());
 
   // REGEX: "@[a-z-]+"
-  public static final Recognizer DIRECTIVE = Recognizers.directive();
+  public static final Recognizer DIRECTIVE = compile(Recognizers.directive());
 
-  public static final Recognizer ELEMENT0 = Recognizers.element0();
+  public static final Recognizer ELEMENT0 = compile(Recognizers.element0());
 
   // REGEX: "(?:[.#]?|:*)(?:[\\w-]|[^\\u0000-\\u009f]|\\\\(?:[A-Fa-f0-9]{1,6} ?|[^A-Fa-f0-9]))+"
-  public static final Recognizer ELEMENT1 = Recognizers.element1();
+  public static final Recognizer ELEMENT1 = compile(Recognizers.element1());
 
   // REGEX: "\\([^)(@]+\\)"
-  public static final Recognizer ELEMENT2 = Recognizers.element2();
+  public static final Recognizer ELEMENT2 = compile(Recognizers.element2());
 
   // REGEX: "[\\.#](?=@)"
-  public static final Recognizer ELEMENT3 = Recognizers.element3();
+  public static final Recognizer ELEMENT3 = compile(Recognizers.element3());
 
-  public static final Recognizer ESCAPE = Recognizers.escape();
+  public static final Recognizer ESCAPE = compile(Recognizers.escape());
 
-  public static final Recognizer HEXCOLOR = Recognizers.hexcolor();
+  public static final Recognizer HEXCOLOR = compile(Recognizers.hexcolor());
 
   // TODO: less allows identifiers starting with a digit, perhaps we should restrict it to [a-zA-Z][\\w-]+
   // REGEX: "[\\w][\\w-]*"  (ignore case)
-  public static final Recognizer IDENTIFIER = Recognizers.identifier();
+  public static final Recognizer IDENTIFIER = compile(Recognizers.identifier());
 
   // REGEX: "! *important"
-  public static final Recognizer IMPORTANT = Recognizers.important();
+  public static final Recognizer IMPORTANT = compile(Recognizers.important());
 
   // REGEX: "[_A-Za-z-][\\w-]*"
-  public static final Recognizer KEYWORD = Recognizers.keyword();
+  public static final Recognizer KEYWORD = compile(Recognizers.keyword());
 
   // "[#.](?:[\\w-]|\\\\(?:[A-Fa-f0-9]{1,6} ?|[^A-Fa-f0-9]))+"
-  public static final Recognizer MIXIN_NAME = Recognizers.mixinName();
+  public static final Recognizer MIXIN_NAME = compile(Recognizers.mixinName());
 
   public static final Recognizer NOT = literal("not");
 
@@ -107,25 +112,26 @@ public class Patterns {
 //  public static final Pattern OPERATOR = pattern("\\+|\\-|\\*|\\/");
 
   // REGEX: "\\*?-?[_a-z0-9-]+"
-  public static final Recognizer PROPERTY = Recognizers.property();
+  public static final Recognizer PROPERTY = compile(Recognizers.property());
 
-  public static final Recognizer RATIO = sequence(digits(), literal("/"), digits());
+  public static final Recognizer RATIO = compile(sequence(digits(), literal("/"), digits()));
 
   // REGEX: "[@\\w.%-]+" + "\\/" + "[@\\w.-]+"
-  public static final Recognizer SHORTHAND = Recognizers.shorthand();
+  public static final Recognizer SHORTHAND = compile(Recognizers.shorthand());
 
   // _HEXWILD = "[A-Fa-f0-9?]";
   // REGEX: "U\\+" + _HEXWILD + "+(\\-" + _HEXWILD + "+)?"
-  public static final Recognizer UNICODE_DESCRIPTOR = Recognizers.unicode();
+  public static final Recognizer UNICODE_DESCRIPTOR = compile(Recognizers.unicode());
 
   // REGEX: "url\\s*\\("
-  public static final Recognizer URLSTART = sequence(literal("url", true), zeroOrMore(whitespace()), literal("("));
+  public static final Recognizer URLSTART = compile(
+      sequence(literal("url", true), zeroOrMore(whitespace()), literal("(")));
 
 //  public static final Pattern _URLEND_BARE = pattern("[^\\s)]+");
 
   public static final Recognizer WHEN = literal("when");
 
-  public static final Recognizer WORD = Recognizers.word();
+  public static final Recognizer WORD = compile(Recognizers.word());
 
   // Character-level patterns.
 
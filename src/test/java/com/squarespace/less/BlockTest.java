@@ -18,10 +18,15 @@ package com.squarespace.less;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
 
 import org.testng.annotations.Test;
 
+import com.squarespace.less.core.FlexList;
 import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Rule;
 
 
@@ -38,6 +43,83 @@ public class BlockTest extends LessTestBase {
     assertNotEquals(block(ruleXY, ruleXZ), block(ruleXZ, ruleXY));
   }
 
+  @Test
+  public void testResolveDefinition() {
+    Block block = new Block();
+    for (int i = 0; i < 100; i++) {
+      block.appendNode(new Definition("@var-" + i, anon("v" + i)));
+    }
+    Definition last = new Definition("@var-7", anon("last"));
+    block.appendNode(last);
+    block.appendNode(rule(prop("x"), anon("y")));
+
+    // Last definition wins.
+    assertEquals(block.resolveDefinition("@var-7"), last);
+    for (int i = 0; i < 100; i++) {
+      if (i != 7) {
+        assertEquals(block.resolveDefinition("@var-" + i).value(), anon("v" + i));
+      }
+    }
+    assertNull(block.resolveDefinition("@var-100"));
+    assertNull(new Block().resolveDefinition("@var-1"));
+  }
+
+  @Test
+  public void testIncrementalIndex() {
+    Definition a1 = new Definition("@a", anon("a1"));
+    Definition b1 = new Definition("@b", anon("b1"));
+    Block block = new Block();
+    block.appendNode(a1);
+    block.appendNode(rule(prop("x"), anon("y")));
+    block.appendNode(b1);
+    block.appendNode(rule(prop("x"), anon("z")));
+
+    // Build the index, then modify the block.
+    assertEquals(block.resolveDefinition("@a"), a1);
+
+    // Spliced definitions win over earlier ones but not later ones.
+    Definition a2 = new Definition("@a", anon("a2"));
+    Definition b2 = new Definition("@b", anon("b2"));
+    Definition c1 = new Definition("@c", anon("c1"));
+    block.splice(1, 1, rules(a2, b2, c1));
+    assertIndexed(block, a2, b1, c1);
+
+    Definition c2 = new Definition("@c", anon("c2"));
+    block.prependNode(c2);
+    assertIndexed(block, a2, b1, c1);
+
+    Definition d1 = new Definition("@d", anon("d1"));
+    block.prependNode(d1);
+    Definition a3 = new Definition("@a", anon("a3"));
+    block.appendNode(a3);
+    assertIndexed(block, a3, b1, c1);
+    assertEquals(block.resolveDefinition("@d"), d1);
+
+    // Removing a definition exposes an earlier one.
+    FlexList<Node> empty = new FlexList<>();
+    block.splice(block.rules().size() - 1, 1, empty);
+    assertIndexed(block, a2, b1, c1);
+  }
+
+  private static FlexList<Node> rules(Node... nodes) {
+    FlexList<Node> result = new FlexList<>();
+    for (Node node : nodes) {
+      result.append(node);
+    }
+    return result;
+  }
+
+  /**
+   * Checks the definitions resolved against those of a rebuilt index.
+   */
+  private static void assertIndexed(Block block, Definition a, Definition b, Definition c) {
+    Block rebuilt = block.copy();
+    for (Definition def : new Definition[] { a, b, c }) {
+      assertEquals(block.resolveDefinition(def.name()), def);
+      assertEquals(rebuilt.resolveDefinition(def.name()), def);
+    }
+  }
+
   @Test
   public void testModelReprSafety() {
     block(rule(prop("x"), anon("y"))).toString();
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.Unit;
+
+
+public class CompileCacheTest extends LessTestBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private static final String SOURCE = "@import 'base.less';\n.a { width: @size; }";
+
+  @Test
+  public void testCache() throws LessException {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("base.less"), "@size: 10px;");
+    LessLoader loader = new HashMapLessLoader(files);
+    CompileCache cache = new CompileCache(COMPILER);
+
+    assertEquals(compile(cache, loader, null), ".a {\n  width: 10px;\n}\n");
+    assertEquals(compile(cache, loader, null), ".a {\n  width: 10px;\n}\n");
+    assertEquals(cache.misses(), 1);
+    assertEquals(cache.hits(), 1);
+
+    // Changing an imported file invalidates the entry.
+    files.put(path("base.less"), "@size: 20px;");
+    assertEquals(compile(cache, loader, null), ".a {\n  width: 20px;\n}\n");
+    assertEquals(cache.misses(), 2);
+
+    // Overrides are part of the key.
+    Map<String, Node> overrides = Collections.<String, Node>singletonMap("@size", dim(5, Unit.EM));
+    assertEquals(compile(cache, loader, overrides), ".a {\n  width: 5em;\n}\n");
+    assertEquals(compile(cache, loader, overrides), ".a {\n  width: 5em;\n}\n");
+    assertEquals(cache.misses(), 3);
+    assertEquals(cache.size(), 2);
+  }
+
+  @Test
+  public void testDiskTier() throws Exception {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("base.less"), "@size: 10px;");
+    LessLoader loader = new HashMapLessLoader(files);
+    Path dir = Files.createTempDirectory("less-compile-cache");
+
+    CompileCache cache = new CompileCache(COMPILER, CompileCache.DEFAULT_MAX_BYTES, dir);
+    String expected = compile(cache, loader, null);
+    assertEquals(cache.misses(), 1);
+
+    // A new cache finds the entry on disk.
+    cache = new CompileCache(COMPILER, CompileCache.DEFAULT_MAX_BYTES, dir);
+    assertEquals(compile(cache, loader, null), expected);
+    assertEquals(cache.diskHits(), 1);
+    assertEquals(cache.misses(), 0);
+
+    // Stale entries on disk are recompiled.
+    cache = new CompileCache(COMPILER, CompileCache.DEFAULT_MAX_BYTES, dir);
+    files.put(path("base.less"), "@size: 30px;");
+    assertEquals(compile(cache, loader, null), ".a {\n  width: 30px;\n}\n");
+    assertEquals(cache.diskHits(), 0);
+    assertEquals(cache.misses(), 1);
+  }
+
+  @Test
+  public void testSingleFlight() throws Exception {
+    final int threads = 8;
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("base.less"), "@size: 10px;");
+    AtomicInteger loads = new AtomicInteger();
+    CompileCache cache = new CompileCache(COMPILER);
+
+    // Hold the first compile until all other threads are waiting on it.
+    LessLoader loader = new HashMapLessLoader(files) {
+      @Override
+      public String load(Path path) throws LessException {
+        if (loads.incrementAndGet() == 1) {
+          long deadline = System.currentTimeMillis() + 10000;
+          while (cache.coalesced() < threads - 1 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+          }
+        }
+        return super.load(path);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> compile(cache, loader, null)));
+      }
+      for (Future<String> future : futures) {
+        assertEquals(future.get(), ".a {\n  width: 10px;\n}\n");
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(cache.misses(), 1);
+    assertEquals(cache.coalesced(), threads - 1);
+    assertTrue(loads.get() >= 1);
+  }
+
+  @Test
+  public void testShadowedImport() throws LessException {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("lib/base.less"), "@size: 10px;");
+    LessLoader loader = new HashMapLessLoader(files);
+    LessOptions opts = new LessOptions();
+    opts.addImportPath(path("lib").toString());
+    CompileCache cache = new CompileCache(COMPILER);
+
+    assertEquals(compile(cache, loader, opts, null), ".a {\n  width: 10px;\n}\n");
+    assertEquals(compile(cache, loader, opts, null), ".a {\n  width: 10px;\n}\n");
+    assertEquals(cache.hits(), 1);
+
+    // A file created ahead of the one imported on the search path takes its place.
+    files.put(path("base.less"), "@size: 20px;");
+    assertEquals(compile(cache, loader, opts, null), ".a {\n  width: 20px;\n}\n");
+    assertEquals(cache.misses(), 2);
+  }
+
+  @Test
+  public void testCoalescedLoaders() throws Exception {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("base.less"), "@size: 10px;");
+    Map<Path, String> otherFiles = new ConcurrentHashMap<>();
+    otherFiles.put(path("base.less"), "@size: 20px;");
+    CompileCache cache = new CompileCache(COMPILER);
+
+    // Hold the first compile until the second is waiting on it.
+    LessLoader loader = new HashMapLessLoader(files) {
+      @Override
+      public String load(Path path) throws LessException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.coalesced() < 1 && System.currentTimeMillis() < deadline) {
+          Thread.yield();
+        }
+        return super.load(path);
+      }
+    };
+    LessLoader otherLoader = new HashMapLessLoader(otherFiles);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> first = executor.submit(() -> compile(cache, loader, null));
+      while (cache.misses() < 1) {
+        Thread.yield();
+      }
+      Future<String> second = executor.submit(() -> compile(cache, otherLoader, null));
+
+      // The waiting compile's loader provides different content, so it compiles its own.
+      assertEquals(first.get(), ".a {\n  width: 10px;\n}\n");
+      assertEquals(second.get(), ".a {\n  width: 20px;\n}\n");
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(cache.coalesced(), 1);
+    assertEquals(cache.misses(), 2);
+  }
+
+  @Test
+  public void testOverridesShareParse() throws LessException {
+    AtomicInteger parses = new AtomicInteger();
+    LessCompiler compiler = new LessCompiler() {
+      @Override
+      public Stylesheet parse(CharSequence raw, LessContext ctx, Path rootPath, Path fileName, boolean safeMode)
+          throws LessException {
+        // Imported files are parsed with their file name.
+        if (fileName == null) {
+          parses.incrementAndGet();
+        }
+        return super.parse(raw, ctx, rootPath, fileName, safeMode);
+      }
+    };
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("base.less"), "@size: 10px;");
+    LessLoader loader = new HashMapLessLoader(files);
+    CompileCache cache = new CompileCache(compiler);
+
+    for (int i = 1; i <= 3; i++) {
+      Map<String, Node> overrides = Collections.<String, Node>singletonMap("@size", dim(i, Unit.EM));
+      LessContext ctx = new LessContext(new LessOptions(), loader);
+      ctx.setCompiler(compiler);
+      assertEquals(cache.compile(SOURCE, ctx, path("."), null, true, overrides), ".a {\n  width: " + i + "em;\n}\n");
+    }
+    assertEquals(parses.get(), 1);
+    assertEquals(cache.misses(), 3);
+
+    // Changing an imported file causes the source to be parsed again.
+    files.put(path("base.less"), "@size: 20px; @other: 1px;");
+    LessContext ctx = new LessContext(new LessOptions(), loader);
+    ctx.setCompiler(compiler);
+    Map<String, Node> overrides = Collections.<String, Node>singletonMap("@size", dim(4, Unit.EM));
+    assertEquals(cache.compile(SOURCE, ctx, path("."), null, true, overrides), ".a {\n  width: 4em;\n}\n");
+    assertEquals(parses.get(), 2);
+  }
+
+  private static String compile(CompileCache cache, LessLoader loader, Map<String, Node> overrides)
+      throws LessException {
+    return compile(cache, loader, new LessOptions(), overrides);
+  }
+
+  private static String compile(CompileCache cache, LessLoader loader, LessOptions opts, Map<String, Node> overrides)
+      throws LessException {
+    LessContext ctx = new LessContext(opts, loader);
+    ctx.setCompiler(COMPILER);
+    return cache.compile(SOURCE, ctx, path("."), null, true, overrides);
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
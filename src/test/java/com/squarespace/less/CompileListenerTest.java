@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.exec.Function;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Import;
+import com.squarespace.less.model.MixinCall;
+import com.squarespace.less.model.Node;
+
+
+public class CompileListenerTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testCallbacks() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("base.less"), "@color: #abc;\n.m(@a) {\n  width: darken(@color, @a);\n}\n");
+    String source = "@import 'base.less';\n"
+        + "@pct: 10%;\n"
+        + ".x {\n  .m(@pct);\n}\n";
+
+    Recorder recorder = new Recorder();
+    LessContext ctx = new LessContext(new LessOptions(true), new HashMapLessLoader(map));
+    ctx.setCompiler(COMPILER);
+    ctx.setListener(recorder);
+    String result = COMPILER.compile(source, ctx, path("."), path("main.less"), true);
+    assertEquals(result, ".x{width:#8aa2b9}");
+
+    // Top-level definitions are evaluated up front, then again when referenced
+    // as the arguments of a mixin call are bound.
+    // The binding of the mixin's parameter has no position.
+    assertEquals(recorder.events, list(
+        "import> main.less:1",
+        "import< main.less:1",
+        "definition> base.less:1",
+        "definition< base.less:1",
+        "definition> main.less:2",
+        "definition< main.less:2",
+        "call> main.less:4",
+        "definition> main.less:2",
+        "definition< main.less:2",
+        "resolved main.less:4 1",
+        "mixin> main.less:4 base.less:2",
+        "definition> base.less:1",
+        "definition< base.less:1",
+        "definition> :1",
+        "definition< :1",
+        "function> darken",
+        "function< darken",
+        "mixin< main.less:4 base.less:2",
+        "call< main.less:4 1",
+        "render> main.less:3",
+        "render< main.less:3"));
+    assertEquals(recorder.depth, 0);
+  }
+
+  @Test
+  public void testNoListener() throws LessException {
+    LessContext ctx = new LessContext(new LessOptions(true));
+    ctx.setCompiler(COMPILER);
+    assertEquals(ctx.listener(), null);
+    assertEquals(COMPILER.compile(".m() { a: b; } .x { .m(); }", ctx), ".x{a:b}");
+  }
+
+  private static List<String> list(String... events) {
+    List<String> result = new ArrayList<>();
+    for (String event : events) {
+      result.add(event);
+    }
+    return result;
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+  private static String position(Path fileName, int lineOffset) {
+    return (fileName == null ? "" : fileName.getFileName().toString()) + ":" + (lineOffset + 1);
+  }
+
+  /**
+   * Records each callback, checking that start and end callbacks nest and are
+   * given consistent times.
+   */
+  private static class Recorder implements CompileListener {
+
+    final List<String> events = new ArrayList<>();
+
+    int depth;
+
+    long last;
+
+    @Override
+    public void importStart(Import node, long started) {
+      start("import> " + position(node.fileName(), node.lineOffset()), started);
+    }
+
+    @Override
+    public void importEnd(Import node, long started, long ended) {
+      end("import< " + position(node.fileName(), node.lineOffset()), started, ended);
+    }
+
+    @Override
+    public void mixinCallStart(MixinCall call, long started) {
+      start("call> " + position(call.fileName(), call.lineOffset()), started);
+    }
+
+    @Override
+    public void mixinCallEnd(MixinCall call, int rules, long started, long ended) {
+      end("call< " + position(call.fileName(), call.lineOffset()) + " " + rules, started, ended);
+    }
+
+    @Override
+    public void mixinResolved(MixinCall call, int matches, long started, long ended) {
+      assertTrue(started <= ended);
+      events.add("resolved " + position(call.fileName(), call.lineOffset()) + " " + matches);
+    }
+
+    @Override
+    public void mixinStart(MixinCall call, Node mixin, long started) {
+      start("mixin> " + mixinPosition(call, mixin), started);
+    }
+
+    @Override
+    public void mixinEnd(MixinCall call, Node mixin, long started, long ended) {
+      end("mixin< " + mixinPosition(call, mixin), started, ended);
+    }
+
+    @Override
+    public void functionStart(FunctionCall call, Function function, long started) {
+      start("function> " + call.name(), started);
+    }
+
+    @Override
+    public void functionEnd(FunctionCall call, Function function, long started, long ended) {
+      end("function< " + call.name(), started, ended);
+    }
+
+    @Override
+    public void definitionStart(Definition definition, long started) {
+      start("definition> " + position(definition.fileName(), definition.lineOffset()), started);
+    }
+
+    @Override
+    public void definitionEnd(Definition definition, long started, long ended) {
+      end("definition< " + position(definition.fileName(), definition.lineOffset()), started, ended);
+    }
+
+    @Override
+    public void renderStart(BlockNode node, long started) {
+      start("render> " + position(node.fileName(), node.lineOffset()), started);
+    }
+
+    @Override
+    public void renderEnd(BlockNode node, long started, long ended) {
+      end("render< " + position(node.fileName(), node.lineOffset()), started, ended);
+    }
+
+    private String mixinPosition(MixinCall call, Node mixin) {
+      BlockNode block = (BlockNode) mixin;
+      return position(call.fileName(), call.lineOffset()) + " " + position(block.fileName(), block.lineOffset());
+    }
+
+    private void start(String event, long started) {
+      assertTrue(started >= last);
+      last = started;
+      depth++;
+      events.add(event);
+    }
+
+    private void end(String event, long started, long ended) {
+      assertTrue(started <= ended);
+      assertTrue(ended >= last);
+      last = ended;
+      depth--;
+      events.add(event);
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.CompileProfiler.Entry;
+
+
+public class CompileProfilerTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private static final String SOURCE = ".inner(@c) { color: darken(@c, 10%); }\n"
+      + ".outer(@c) { .inner(@c); .inner(lighten(@c, 10%)); }\n"
+      + ".x { .outer(#abc); }\n"
+      + ".y { .outer(#def); }\n";
+
+  @Test
+  public void testProfile() throws LessException {
+    CompileProfiler profiler = new CompileProfiler();
+    String result = compile(SOURCE, profiler);
+    assertEquals(result, ".x{color:#8aa2b9;color:#abc}.y{color:#aad4ff;color:#cce5ff}");
+
+    Map<String, Entry> entries = new HashMap<>();
+    for (Entry entry : profiler.entries()) {
+      entries.put(entry.name(), entry);
+      assertTrue(entry.selfNanos() <= entry.totalNanos(), entry.name());
+    }
+    assertEquals(entries.size(), 5);
+    assertCalls(entries.get(".outer main.less:3"), 1, 2);
+    assertCalls(entries.get(".outer main.less:4"), 1, 2);
+    assertCalls(entries.get(".inner main.less:2"), 4, 4);
+    assertCalls(entries.get("darken()"), 4, 0);
+    assertCalls(entries.get("lighten()"), 2, 0);
+
+    Entry outer = entries.get(".outer main.less:3");
+    Entry inner = entries.get(".inner main.less:2");
+    assertTrue(outer.totalNanos() >= outer.selfNanos());
+    assertTrue(inner.totalNanos() >= entries.get("darken()").totalNanos());
+
+    String stacks = profiler.collapsedStacks();
+    String[] lines = stacks.split("\n");
+    assertEquals(lines.length, 8, stacks);
+    assertTrue(stacks.contains("\n.outer main.less:3;.inner main.less:2;darken() "), stacks);
+
+    // Arguments are evaluated as they are bound, within the called mixin.
+    assertTrue(stacks.contains("\n.outer main.less:4;.inner main.less:2;lighten() "), stacks);
+    assertTrue(stacks.startsWith(".outer main.less:3 "), stacks);
+
+    String report = profiler.report(2);
+    lines = report.split("\n");
+    assertEquals(lines.length, 4, report);
+    assertTrue(lines[0].contains("self ms"), report);
+    assertEquals(lines[3], "... 3 more");
+  }
+
+  @Test
+  public void testMerge() throws LessException {
+    CompileProfiler first = new CompileProfiler();
+    CompileProfiler second = new CompileProfiler();
+    compile(SOURCE, first);
+    compile(SOURCE, second);
+
+    CompileProfiler total = new CompileProfiler();
+    total.merge(first);
+    total.merge(second);
+    for (Entry entry : total.entries()) {
+      if (entry.name().equals(".inner main.less:2")) {
+        assertCalls(entry, 8, 8);
+      }
+    }
+    assertEquals(total.collapsedStacks().split("\n").length, 8);
+  }
+
+  @Test
+  public void testRecursion() throws LessException {
+    String source = ".loop(@i) when (@i > 0) { w: @i; .loop(@i - 1); }\n"
+        + ".x { .loop(3); }\n";
+    CompileProfiler profiler = new CompileProfiler();
+    assertEquals(compile(source, profiler), ".x{w:3;w:2;w:1}");
+
+    Map<String, Entry> entries = new HashMap<>();
+    for (Entry entry : profiler.entries()) {
+      entries.put(entry.name(), entry);
+    }
+    Entry outer = entries.get(".loop main.less:2");
+    Entry inner = entries.get(".loop main.less:1");
+    assertCalls(outer, 1, 3);
+    assertCalls(inner, 3, 3);
+
+    // Recursive calls are counted once in the total time.
+    assertTrue(inner.totalNanos() <= outer.totalNanos());
+  }
+
+  private static String compile(String source, CompileProfiler profiler) throws LessException {
+    LessContext ctx = new LessContext(new LessOptions(true));
+    ctx.setCompiler(COMPILER);
+    ctx.setListener(profiler);
+    return COMPILER.compile(source, ctx, path("."), path("main.less"), true);
+  }
+
+  private static void assertCalls(Entry entry, int calls, int rules) {
+    assertEquals(entry.calls(), calls, entry.name());
+    assertEquals(entry.rules(), rules, entry.name());
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.MappedSource;
+
+
+public class FilesystemLessLoaderTest {
+
+  @Test
+  public void testLoad() throws IOException, LessException {
+    Path dir = Files.createTempDirectory("less-loader");
+    Path path = write(dir.resolve("a.less"), ".a { color: red; }\n");
+    FilesystemLessLoader loader = new FilesystemLessLoader();
+
+    assertTrue(loader.exists(path));
+    assertEquals(loader.load(path), ".a { color: red; }\n");
+    assertEquals(loader.tryLoad(path).toString(), ".a { color: red; }\n");
+
+    Path missing = dir.resolve("b.less");
+    assertFalse(loader.exists(missing));
+    assertNull(loader.tryLoad(missing));
+    try {
+      loader.load(missing);
+      fail("Expected LessException");
+    } catch (LessException e) {
+      assertTrue(e.getMessage().contains("File cannot be found"), e.getMessage());
+    }
+
+    // Without caching, a file created later is found.
+    write(missing, ".b { color: blue; }\n");
+    assertTrue(loader.exists(missing));
+  }
+
+  @Test
+  public void testLargeFile() throws IOException, LessException {
+    Path dir = Files.createTempDirectory("less-loader");
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; buf.length() < 300 * 1024; i++) {
+      buf.append(".rule-").append(i).append(" { color: red; }\n");
+    }
+    Path path = write(dir.resolve("large.less"), buf.toString());
+    FilesystemLessLoader loader = new FilesystemLessLoader();
+
+    CharSequence source = loader.tryLoad(path);
+    assertTrue(source instanceof MappedSource);
+    assertEquals(source.toString(), buf.toString());
+    assertEquals(loader.load(path), buf.toString());
+  }
+
+  @Test
+  public void testCacheMissing() throws IOException, LessException {
+    Path dir = Files.createTempDirectory("less-loader");
+    Path path = dir.resolve("a.less");
+    FilesystemLessLoader loader = new FilesystemLessLoader(true);
+
+    assertNull(loader.tryLoad(path));
+    write(path, ".a { color: red; }\n");
+    assertNull(loader.tryLoad(path));
+    assertFalse(loader.exists(path));
+
+    loader.clearMissing();
+    assertEquals(loader.tryLoad(path).toString(), ".a { color: red; }\n");
+  }
+
+  @Test
+  public void testJailed() throws IOException, LessException {
+    Path dir = Files.createTempDirectory("less-loader");
+    Path root = Files.createDirectory(dir.resolve("root"));
+    Path inside = write(root.resolve("a.less"), ".a { color: red; }\n");
+    Path outside = write(dir.resolve("b.less"), ".b { color: blue; }\n");
+    Path text = write(root.resolve("c.txt"), ".c { color: green; }\n");
+    LessLoader loader = new JailedFilesystemLessLoader(root);
+
+    assertEquals(loader.tryLoad(inside).toString(), ".a { color: red; }\n");
+    assertNull(loader.tryLoad(outside));
+    assertNull(loader.tryLoad(text));
+    assertFalse(loader.exists(outside));
+    assertFalse(loader.exists(text));
+  }
+
+  private static Path write(Path path, String text) throws IOException {
+    Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    path.toFile().deleteOnExit();
+    return path;
+  }
+
+}
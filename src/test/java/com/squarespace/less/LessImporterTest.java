@@ -17,6 +17,7 @@
 package com.squarespace.less;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -24,6 +25,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 
@@ -71,6 +77,221 @@ public class LessImporterTest extends LessTestBase {
     }
   }
 
+  @Test
+  public void testSharedImportCache() throws LessException {
+    Map<Path, String> map = buildMap();
+    LessLoader loader = new HashMapLessLoader(map);
+    LessOptions opts = buildOptions();
+    ImportCache cache = new DefaultImportCache();
+    String source = "@import 'base.less'; .ruleset { color: @color; font-size: @size; }";
+    String expected = ".child{font-size:12px}.ruleset{color:#abc;font-size:12px}";
+
+    // First compile parses both files and populates the cache.
+    assertEquals(compile(source, opts, loader, cache), expected);
+    assertEquals(cache.stats().misses(), 2);
+    assertEquals(cache.stats().hits(), 0);
+    assertEquals(cache.stats().entries(), 2);
+
+    // Second compile reuses the parsed 'base.less' along with its nested import.
+    assertEquals(compile(source, opts, loader, cache), expected);
+    assertEquals(cache.stats().hits(), 1);
+
+    // Changing a nested import's content causes the enclosing entry to be re-parsed.
+    map.put(path("child.less"), ".child { font-size: 14px; }\n@size: 14px;");
+    assertEquals(compile(source, opts, loader, cache), ".child{font-size:14px}.ruleset{color:#abc;font-size:14px}");
+    assertEquals(cache.stats().entries(), 3);
+
+    cache.invalidate(path("child.less"));
+    assertEquals(cache.stats().entries(), 0);
+  }
+
+  @Test
+  public void testSharedImportCacheImportOnce() throws LessException {
+    LessLoader loader = new HashMapLessLoader(buildMap());
+    LessOptions opts = buildOptions();
+    ImportCache cache = new DefaultImportCache();
+
+    // Populate the cache with 'base.less', which imports 'child.less'.
+    compile("@import 'base.less';", opts, loader, cache);
+
+    // With import-once enabled, 'child.less' must be suppressed here even though
+    // the cached 'base.less' included it.
+    String source = "@import 'child.less'; @import 'base.less'; .ruleset { color: @color; }";
+    assertEquals(compile(source, opts, loader, cache), ".child{font-size:12px}.ruleset{color:#abc}");
+  }
+
+  @Test
+  public void testSharedImportCacheOptions() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("comment.less"), "/* keep me */\n.a { color: red; }\n");
+    LessLoader loader = new HashMapLessLoader(map);
+    ImportCache cache = new DefaultImportCache();
+    String source = "@import 'comment.less';";
+
+    LessOptions opts = buildOptions();
+    opts.compress(false);
+    opts.ignoreComments(false);
+    assertTrue(compile(source, opts, loader, cache).contains("/* keep me */"));
+
+    // A compile which ignores comments must not reuse the stylesheet parsed with them.
+    opts.ignoreComments(true);
+    assertFalse(compile(source, opts, loader, cache).contains("/* keep me */"));
+
+    opts.ignoreComments(false);
+    opts.importRecursionLimit(1);
+    assertTrue(compile(source, opts, loader, cache).contains("/* keep me */"));
+    assertEquals(cache.stats().hits(), 0);
+    assertEquals(cache.stats().entries(), 3);
+  }
+
+  @Test
+  public void testSharedImportCacheShadowed() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("base.less"), "@import 'child.less';");
+    map.put(path("lib/child.less"), "@size: 12px;");
+    LessLoader loader = new HashMapLessLoader(map);
+    LessOptions opts = buildOptions();
+    opts.addImportPath(path("lib").toString());
+    ImportCache cache = new DefaultImportCache();
+    String source = "@import 'base.less'; .ruleset { font-size: @size; }";
+
+    assertEquals(compile(source, opts, loader, cache), ".ruleset{font-size:12px}");
+    assertEquals(compile(source, opts, loader, cache), ".ruleset{font-size:12px}");
+    assertEquals(cache.stats().hits(), 1);
+
+    // Creating 'child.less' next to 'base.less' changes what it imports.
+    map.put(path("child.less"), "@size: 14px;");
+    assertEquals(compile(source, opts, loader, cache), ".ruleset{font-size:14px}");
+
+    // Invalidating a path drops the entries loaded from it and those which found it missing.
+    map.remove(path("child.less"));
+    assertEquals(compile(source, opts, loader, cache), ".ruleset{font-size:12px}");
+    cache.invalidate(path("child.less"));
+    assertEquals(cache.stats().entries(), 1);
+  }
+
+  @Test
+  public void testSharedImportCacheEviction() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(path(i + ".less"), ".rule-" + i + " { color: red; }\n");
+    }
+    LessLoader loader = new HashMapLessLoader(map);
+    LessOptions opts = buildOptions();
+    ImportCache cache = new DefaultImportCache(16 * 1024);
+    for (int i = 0; i < 100; i++) {
+      compile("@import '" + i + ".less';", opts, loader, cache);
+    }
+    ImportCacheStats stats = cache.stats();
+    assertTrue(stats.evictions() > 0, stats.toString());
+    assertTrue(stats.estimatedBytes() <= 16 * 1024, stats.toString());
+    assertEquals(stats.entries() + stats.evictions(), 100, stats.toString());
+  }
+
+  @Test
+  public void testPrefetch() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("a.less"), "@import 'b.less'; @import 'c.less'; .a { color: @b; }");
+    map.put(path("b.less"), "@import 'd.less'; @b: red; .b { width: @d; }");
+    map.put(path("c.less"), "@import 'd.less'; // @import 'missing.less';\n.c { color: blue; }");
+    map.put(path("d.less"), "@d: 10px; .d { height: @d; }");
+    LessLoader loader = new HashMapLessLoader(map);
+    LessOptions opts = buildOptions();
+    opts.importOnce(false);
+
+    String expected = compile("@import 'a.less';", opts, loader, null);
+
+    ImportCache cache = new DefaultImportCache();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      LessContext ctx = new LessContext(opts, loader, null, cache);
+      ctx.setCompiler(COMPILER);
+      ctx.setPrefetchExecutor(executor);
+      String actual = COMPILER.compile("@import 'a.less';", ctx, path("."), null, true);
+      assertEquals(actual, expected);
+    } finally {
+      executor.shutdown();
+    }
+
+    // Every file was parsed ahead of the compile, so each import was a cache hit.
+    ImportCacheStats stats = cache.stats();
+    assertEquals(stats.entries(), 4, stats.toString());
+    assertTrue(stats.hits() >= 4, stats.toString());
+  }
+
+  @Test
+  public void testPrefetchSharedExecutor() throws Exception {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("a.less"), "@import 'b.less'; .a { color: red; }");
+    map.put(path("b.less"), ".b { color: blue; }");
+    LessLoader loader = new HashMapLessLoader(map);
+    LessOptions opts = buildOptions();
+
+    // The compile occupies the executor's only thread while it waits on the prefetch.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      LessContext ctx = new LessContext(opts, loader, null, new DefaultImportCache());
+      ctx.setCompiler(COMPILER);
+      ctx.setPrefetchExecutor(executor);
+      Future<String> result = executor.submit(() -> COMPILER.compile("@import 'a.less';", ctx, path("."), null, true));
+      assertEquals(result.get(30, TimeUnit.SECONDS), ".b{color:blue}.a{color:red}");
+    } finally {
+      executor.shutdown();
+    }
+
+    // An executor which rejects every task leaves the work to the compiling thread.
+    ImportCache cache = new DefaultImportCache();
+    LessContext ctx = new LessContext(opts, loader, null, cache);
+    ctx.setCompiler(COMPILER);
+    ctx.setPrefetchExecutor(task -> {
+      throw new RejectedExecutionException();
+    });
+    assertEquals(COMPILER.compile("@import 'a.less';", ctx, path("."), null, true), ".b{color:blue}.a{color:red}");
+    assertEquals(cache.stats().entries(), 2);
+  }
+
+  @Test
+  public void testMissingLookups() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("a.less"), "@import 'b.less'; @import 'c.less';");
+    map.put(path("b.less"), "@import 'd.less'; .b { width: @d; }");
+    map.put(path("c.less"), "@import 'd.less'; .c { height: @d; }");
+    map.put(path("lib/d.less"), "@d: 10px;");
+    Map<Path, Integer> lookups = new HashMap<>();
+    LessLoader loader = new HashMapLessLoader(map) {
+      @Override
+      public synchronized boolean exists(Path path) {
+        lookups.merge(path, 1, Integer::sum);
+        return super.exists(path);
+      }
+    };
+    LessOptions opts = buildOptions();
+    opts.importOnce(false);
+    opts.addImportPath(path("lib").toString());
+
+    // The import of 'd.less' is first looked for next to its importers, where it
+    // doesn't exist. The prefetcher, its parses and the compile share the result.
+    ImportCache cache = new DefaultImportCache();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      LessContext ctx = new LessContext(opts, loader, null, cache);
+      ctx.setCompiler(COMPILER);
+      ctx.setPrefetchExecutor(executor);
+      String actual = COMPILER.compile("@import 'a.less';", ctx, path("."), null, true);
+      assertEquals(actual, ".b{width:10px}.c{height:10px}");
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals((int) lookups.get(path("d.less")), 1, lookups.toString());
+  }
+
+  private static String compile(String source, LessOptions opts, LessLoader loader, ImportCache cache)
+      throws LessException {
+    LessContext ctx = new LessContext(opts, loader, null, cache);
+    ctx.setCompiler(COMPILER);
+    return COMPILER.compile(source, ctx, path("."), null, true);
+  }
+
   private static Path path(String path) {
     return Paths.get(path).toAbsolutePath().normalize();
   }
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+
+public class LessStatsTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testStats() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("base.less"), "@color: #abc; @import 'child.less';");
+    map.put(path("child.less"), ".child { font-size: 12px; }\n@size: 12px;");
+    String source = "@import 'base.less';\n"
+        + ".m(@a) { width: @a; }\n"
+        + ".x { .m(1px); .m(@size); color: darken(@color, 10%); .y { color: @color; } }\n";
+
+    LessContext ctx = new LessContext(new LessOptions(true), new HashMapLessLoader(map));
+    ctx.setCompiler(COMPILER);
+    String result = COMPILER.compile(source, ctx, path("."), null, true);
+    assertEquals(result, ".child{font-size:12px}.x{width:1px;width:12px;color:#8aa2b9}.x .y{color:#abc}");
+
+    LessStats stats = ctx.stats();
+    assertEquals(stats.importCount(), 2);
+    assertEquals(stats.maxImportDepth(), 2);
+    assertEquals(stats.totalSize(), source.length() + map.get(path("base.less")).length()
+        + map.get(path("child.less")).length());
+    assertEquals(stats.mixinCalls(), 2);
+    assertEquals(stats.functionCalls(), 1);
+    assertEquals(stats.selectorCombinations(), 3);
+    assertTrue(stats.variableLookups() >= 4, "variable lookups " + stats.variableLookups());
+
+    // Phases nest: imports are timed within the parse, and disk waits within imports.
+    assertTrue(stats.diskWaitTimeMs() <= stats.importTimeMs());
+    assertTrue(stats.importTimeMs() <= stats.parseTimeMs());
+    assertTrue(stats.evalTimeMs() + stats.renderTimeMs() <= stats.compileTimeMs());
+    assertTrue(stats.evalTimeMs() > 0);
+    assertTrue(stats.renderTimeMs() > 0);
+
+    if (stats.threadAllocatedBytes() > 0) {
+      assertTrue(stats.allocatedBytes() > 0);
+    }
+  }
+
+  @Test
+  public void testHistogram() {
+    LessStats stats = new LessStats();
+    stats.evalDone(stats.now() - 3000000);
+    stats.renderDone(stats.now() - 1500000);
+
+    LessStatsHistogram histogram = new LessStatsHistogram();
+    histogram.add(stats);
+    histogram.add(stats);
+    String[] lines = histogram.toString().split("\n");
+    assertEquals(lines[0], "    parse us: ");
+    assertTrue(lines[3].startsWith("     eval us: ,,,,,,,,,,,2"), lines[3]);
+    assertTrue(lines[4].startsWith("   render us: ,,,,,,,,,,2"), lines[4]);
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
@@ -16,17 +16,25 @@
 
 package com.squarespace.less;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.testng.annotations.Test;
 
 import com.squarespace.less.core.LessTestBase;
 import com.squarespace.less.exec.ExecEnv;
+import com.squarespace.less.exec.MixinMatch;
 import com.squarespace.less.exec.MixinMatcher;
 import com.squarespace.less.exec.MixinResolver;
+import com.squarespace.less.model.Mixin;
 import com.squarespace.less.model.MixinCall;
 import com.squarespace.less.model.MixinCallArgs;
 import com.squarespace.less.model.MixinParams;
+import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Ruleset;
 import com.squarespace.less.model.Stylesheet;
 
@@ -52,6 +60,50 @@ public class MixinResolverTest extends LessTestBase {
     assertTrue(resolver.match(sheet.block()));
   }
 
+  @Test
+  public void testConstantParams() throws LessException {
+    LessContext ctx = new LessContext();
+    ExecEnv env = ctx.newEnv();
+    MixinCall call = mixincall(selector(element("#ns"), element(".m1")), args(',', arg(dim(1))));
+
+    Stylesheet sheet = stylesheet();
+    Ruleset ns = ruleset(selector(element("#ns")));
+    Mixin m1 = mixin(".m1", params(param("a")), null);
+    ns.add(m1);
+    sheet.add(ns);
+
+    assertEquals(resolve(env, call, sheet), list(m1));
+
+    // Patterns in constant params are matched against the arguments.
+    Mixin m2 = mixin(".m1", params(param(null, dim(1))), null);
+    Mixin m3 = mixin(".m1", params(param(null, dim(2))), null);
+    ns.add(m2);
+    ns.add(m3);
+    assertEquals(resolve(env, call, sheet), list(m1, m2));
+
+    // Mixins in rulesets being evaluated are skipped.
+    env.state().enter(ns);
+    assertEquals(resolve(env, call, sheet), list());
+    env.state().exit(ns);
+    assertEquals(resolve(env, call, sheet), list(m1, m2));
+  }
+
+  private static List<Node> resolve(ExecEnv env, MixinCall call, Stylesheet sheet) throws LessException {
+    MixinResolver resolver = new MixinResolver();
+    resolver.reset(new MixinMatcher(env, call));
+    boolean matched = resolver.match(sheet.block());
+    List<Node> result = new ArrayList<>();
+    for (MixinMatch match : resolver.matches()) {
+      result.add(match.mixin());
+    }
+    assertEquals(matched, !result.isEmpty());
+    return result;
+  }
+
+  private static List<Node> list(Node... nodes) {
+    return Arrays.asList(nodes);
+  }
+
 //  @Test  // enable for performance testing and profiling
   public void testBindSpeed() throws Exception {
     int iters = 1000;
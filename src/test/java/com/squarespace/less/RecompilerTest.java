@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.Unit;
+
+
+public class RecompilerTest extends LessTestBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private static final String TEMPLATE = ""
+      + "@primary: #111;\n"
+      + "@accent: @primary;\n"
+      + "@size: 10px;\n"
+      + "@gutter: @size * 2;\n"
+      + ".mixin(@c) when (lightness(@c) > 50%) { color: black; }\n"
+      + ".mixin(@c) when (lightness(@c) =< 50%) { color: white; }\n"
+      + "#ns { @pad: @gutter; .box() { padding: @pad; } }\n"
+      + ".header { background: @primary; .mixin(@primary); }\n"
+      + ".body { margin: 0; .inner { width: @size; } }\n"
+      + ".footer { #ns > .box(); }\n"
+      + "@media (min-width: 100px) { .a { border-color: @accent; } }\n"
+      + ".static { display: block; .nested { float: left; } }\n";
+
+  @Test
+  public void testRecompile() throws LessException {
+    LessOptions opts = new LessOptions();
+    Stylesheet sheet = COMPILER.parse(TEMPLATE, COMPILER.context(opts));
+    Recompiler recompiler = COMPILER.recompiler(sheet);
+
+    Map<String, Node> overrides = new LinkedHashMap<>();
+    overrides.put("@primary", color("#222"));
+    overrides.put("@size", dim(12, Unit.PX));
+    assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    int full = recompiler.lastEvaluated();
+
+    // Only nodes depending on @size are evaluated.
+    overrides.put("@size", dim(14, Unit.PX));
+    assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    assertTrue(recompiler.lastEvaluated() < full);
+
+    overrides.put("@primary", color("#eee"));
+    assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    assertTrue(recompiler.lastEvaluated() < full);
+
+    // Nothing changed, so only the overrides themselves are evaluated.
+    assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    assertEquals(recompiler.lastEvaluated(), 2);
+
+    // Adding an override requires a full evaluation.
+    overrides.put("@accent", color("#f00"));
+    assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    assertEquals(recompiler.lastEvaluated(), full + 1);
+  }
+
+  @Test
+  public void testRecompileCompressed() throws LessException {
+    LessOptions opts = new LessOptions();
+    opts.compress(true);
+    Stylesheet sheet = COMPILER.parse(TEMPLATE, COMPILER.context(opts));
+    Recompiler recompiler = COMPILER.recompiler(sheet);
+
+    Map<String, Node> overrides = new LinkedHashMap<>();
+    for (int i = 0; i < 4; i++) {
+      overrides.put("@size", dim(i, Unit.EM));
+      assertEquals(recompiler.compile(overrides, COMPILER.context(opts)), expected(overrides, opts));
+    }
+  }
+
+  /**
+   * Compiles the template with the overrides appended as definitions.
+   */
+  private static String expected(Map<String, Node> overrides, LessOptions opts) throws LessException {
+    StringBuilder buf = new StringBuilder(TEMPLATE);
+    for (Map.Entry<String, Node> entry : overrides.entrySet()) {
+      buf.append(entry.getKey()).append(": ").append(entry.getValue().repr()).append(";\n");
+    }
+    return COMPILER.compile(buf.toString(), COMPILER.context(opts));
+  }
+
+}
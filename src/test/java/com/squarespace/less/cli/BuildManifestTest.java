@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.LessUtils;
+
+
+public class BuildManifestTest {
+
+  @Test
+  public void testStale() throws IOException {
+    Path dir = Files.createTempDirectory("lessc-manifest");
+    Path vars = write(dir, "vars.less", "@c: red;");
+    Path a = write(dir, "a.less", "@import 'vars.less'; .a { color: @c; }");
+    Path b = write(dir, "b.less", ".b { color: blue; }");
+    List<Path> paths = Arrays.asList(a, b);
+    Map<Path, Path> outputs = new HashMap<>();
+    outputs.put(a, write(dir, "a.css", ""));
+    outputs.put(b, write(dir, "b.css", ""));
+
+    BuildManifest manifest = new BuildManifest("opts");
+    manifest.put(a, hash(a), Collections.singletonMap(vars, hash(vars)), Collections.<Path>emptySet());
+    manifest.put(b, hash(b), Collections.<Path, String>emptyMap(), Collections.<Path>emptySet());
+    manifest.save(dir);
+
+    assertNull(BuildManifest.load(dir, "other"));
+    manifest = BuildManifest.load(dir, "opts");
+    assertEquals(manifest.stale(paths, outputs), Collections.emptyList());
+
+    // Changing an import rebuilds its dependents.
+    write(dir, "vars.less", "@c: green;");
+    assertEquals(manifest.stale(paths, outputs), Arrays.asList(a));
+
+    // Changed files and missing outputs are rebuilt.
+    write(dir, "b.less", ".b { color: red; }");
+    Files.delete(outputs.get(a));
+    assertEquals(manifest.stale(paths, outputs), Arrays.asList(a, b));
+
+    // Files whose imports are unknown are always rebuilt.
+    manifest.put(b, hash(b), null, null);
+    write(dir, "a.css", "");
+    manifest.put(a, hash(a), Collections.singletonMap(vars, hash(vars)), Collections.<Path>emptySet());
+    assertEquals(manifest.stale(paths, outputs), Arrays.asList(b));
+  }
+
+  @Test
+  public void testShadowed() throws IOException {
+    Path dir = Files.createTempDirectory("lessc-manifest");
+    Path vars = write(dir, "inc/vars.less", "@c: blue;");
+    Path a = write(dir, "a.less", "@import 'vars.less'; .a { color: @c; }");
+    List<Path> paths = Arrays.asList(a);
+    Map<Path, Path> outputs = Collections.singletonMap(a, write(dir, "a.css", ""));
+
+    BuildManifest manifest = new BuildManifest("opts");
+    Path shadow = dir.resolve("vars.less");
+    manifest.put(a, hash(a), Collections.singletonMap(vars, hash(vars)), Collections.singleton(shadow));
+    manifest.save(dir);
+    manifest = BuildManifest.load(dir, "opts");
+    assertEquals(manifest.stale(paths, outputs), Collections.emptyList());
+
+    // Creating a file searched before the imported one rebuilds the importer.
+    write(dir, "vars.less", "@c: green;");
+    assertEquals(manifest.stale(paths, outputs), Arrays.asList(a));
+  }
+
+  private static Path write(Path dir, String name, String data) throws IOException {
+    Path path = dir.resolve(name);
+    Files.createDirectories(path.getParent());
+    LessUtils.writeFile(path, data);
+    return path;
+  }
+
+  private static String hash(Path path) throws IOException {
+    return LessUtils.contentHash(LessUtils.readFile(path));
+  }
+
+}
@@ -153,6 +153,71 @@ public class LessCTest {
     }
   }
 
+  @Test
+  public void testParallelBatchCompile() throws LessException, IOException {
+    Path lessPath = suiteRootDir.resolve("less");
+    tempFile = Files.createTempDirectory("lessc-unit-test").toFile();
+    compile("--batch", "--jobs", "4", lessPath.toString(), tempFile.toString());
+    assertTrue(standardErr.toString().contains("compile latency: p50"));
+
+    Path cssPath = suiteRootDir.resolve("css");
+    String pattern = "glob:*.css";
+    for (Path expectedPath : LessUtils.getMatchingFiles(cssPath, pattern)) {
+      Path actualPath = tempFile.toPath().resolve(expectedPath.getFileName());
+      assertFilesEqual(expectedPath, actualPath);
+    }
+  }
+
+  @Test
+  public void testWatch() throws IOException, InterruptedException {
+    Path dir = Files.createTempDirectory("lessc-unit-test");
+    tempFile = dir.toFile();
+    Path vars = dir.resolve("vars.less");
+    Path cssPath = dir.resolve("main.css");
+    LessUtils.writeFile(vars, "@size: 1px;");
+    LessUtils.writeFile(dir.resolve("main.less"), "@import 'vars.less';\n.a { width: @size; }\n");
+
+    Thread watcher = new Thread(() -> compile("--watch", dir.resolve("main.less").toString(), cssPath.toString()));
+    watcher.start();
+    try {
+      awaitContent(cssPath, "width: 1px");
+
+      // Changing an import recompiles the stylesheet.
+      LessUtils.writeFile(vars, "@size: 2px;");
+      awaitContent(cssPath, "width: 2px");
+
+    } finally {
+      watcher.interrupt();
+      watcher.join();
+    }
+  }
+
+  @Test
+  public void testWatchShadowed() throws IOException, InterruptedException {
+    Path dir = Files.createTempDirectory("lessc-unit-test");
+    tempFile = dir.toFile();
+    Path inc = dir.resolve("inc");
+    Path cssPath = dir.resolve("main.css");
+    Files.createDirectories(inc);
+    LessUtils.writeFile(inc.resolve("vars.less"), "@size: 1px;");
+    LessUtils.writeFile(dir.resolve("main.less"), "@import 'vars.less';\n.a { width: @size; }\n");
+
+    Thread watcher = new Thread(() -> compile("--watch", "--include-paths", inc.toString(),
+        dir.resolve("main.less").toString(), cssPath.toString()));
+    watcher.start();
+    try {
+      awaitContent(cssPath, "width: 1px");
+
+      // Creating a file ahead of the import on the search path recompiles the stylesheet.
+      LessUtils.writeFile(dir.resolve("vars.less"), "@size: 2px;");
+      awaitContent(cssPath, "width: 2px");
+
+    } finally {
+      watcher.interrupt();
+      watcher.join();
+    }
+  }
+
   @Test
   public void testVersion() throws LessException {
     try {
@@ -174,6 +239,16 @@ public class LessCTest {
     }
   }
 
+  private static void awaitContent(Path path, String expected) throws IOException, InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!path.toFile().exists() || !LessUtils.readFile(path).contains(expected)) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for '" + expected + "' in " + path);
+      }
+      Thread.sleep(10);
+    }
+  }
+
   private void assertFilesEqual(Path expectedPath, Path actualPath) throws IOException {
     String srcData = LessUtils.readFile(expectedPath);
     String dstData = LessUtils.readFile(actualPath);
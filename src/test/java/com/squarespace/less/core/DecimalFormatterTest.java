@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.core;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+
+public class DecimalFormatterTest {
+
+  @Test
+  public void testFormat() {
+    assertEquals(format(0.5, 8), ".5");
+    assertEquals(format(-0.5, 8), "-.5");
+    assertEquals(format(1.25, 8), "1.25");
+    assertEquals(format(-12.0625, 8), "-12.0625");
+    assertEquals(format(0.000001, 8), ".000001");
+    assertEquals(format(1.0 / 3, 8), ".33333333");
+    assertEquals(format(2.0 / 3, 8), ".66666667");
+    assertEquals(format(1.0 / 3, 2), ".33");
+
+    // Ties round to even on the shortest decimal representation.
+    assertEquals(format(0.125, 2), ".12");
+    assertEquals(format(0.375, 2), ".38");
+    assertEquals(format(1.000000005, 8), "1");
+    assertEquals(format(1.000000015, 8), "1.00000002");
+
+    // Values which round to an integer.
+    assertEquals(format(0.999999999, 8), "1");
+    assertEquals(format(-0.999999999, 8), "-1");
+    assertEquals(format(0.000000001, 8), "0");
+    assertEquals(format(-0.000000001, 8), "0");
+    assertEquals(format(2.9999999999, 8), "3");
+  }
+
+  @Test
+  public void testMatchesBigDecimal() {
+    Random random = new Random(1);
+    for (int i = 0; i < 200000; i++) {
+      double value = random.nextDouble() * Math.pow(10, random.nextInt(14) - 6);
+      if (random.nextBoolean()) {
+        value = -value;
+      }
+      if (i % 4 == 0) {
+        // Short decimals are common in stylesheets and often land on ties.
+        value = Math.round(value * 1000000000) / 1000000000.0;
+      }
+      for (int scale : new int[] { 0, 2, 5, 8 }) {
+        Buffer buf = new Buffer(0);
+        DecimalFormatter.formatBigDecimal(buf, value, scale);
+        assertEquals(format(value, scale), buf.toString(), "value " + value + " scale " + scale);
+      }
+    }
+  }
+
+  private static String format(double value, int scale) {
+    Buffer buf = new Buffer(0);
+    DecimalFormatter.format(buf, value, scale);
+    return buf.toString();
+  }
+
+}
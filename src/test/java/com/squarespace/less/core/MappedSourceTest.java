@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.exec.LessSuiteBase;
+
+
+public class MappedSourceTest {
+
+  @Test
+  public void testLoad() throws IOException {
+    String text = ".a {\n  color: #123;\n}\n";
+    Path path = write(text);
+
+    CharSequence source = MappedSource.load(path, 0);
+    assertTrue(source instanceof MappedSource);
+    assertEquals(source.length(), text.length());
+    assertEquals(source.charAt(0), '.');
+    assertEquals(source.charAt(text.length() - 1), '\n');
+    assertEquals(source.toString(), text);
+    assertEquals(source.subSequence(7, 12).toString(), "color");
+    assertEquals(source.subSequence(7, 12).subSequence(1, 3).toString(), "ol");
+    assertEquals(LessUtils.contentHash(source), LessUtils.contentHash(text));
+
+    // Small files are read into a string.
+    source = MappedSource.load(path);
+    assertTrue(source instanceof String);
+    assertEquals(source, text);
+  }
+
+  @Test
+  public void testNonAscii() throws IOException {
+    String text = ".a { content: \"‘quoted’\"; }\n";
+    Path path = write(text);
+
+    CharSequence source = MappedSource.load(path, 0);
+    assertTrue(source instanceof String);
+    assertEquals(source, text);
+  }
+
+  @Test
+  public void testBounds() throws IOException {
+    CharSequence source = MappedSource.load(write("abc"), 0);
+    try {
+      source.charAt(3);
+      throw new AssertionError("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      source.subSequence(2, 4);
+      throw new AssertionError("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompileSuite() throws IOException {
+    Path root = LessSuiteBase.testSuiteRoot().resolve("less");
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(root, "*.less")) {
+      for (Path path : paths) {
+        String expected = compile(LessUtils.readFile(path), path);
+        assertEquals(compile(MappedSource.load(path, 0), path), expected, path.toString());
+      }
+    }
+  }
+
+  private static String compile(CharSequence source, Path path) {
+    LessCompiler compiler = new LessCompiler();
+    LessContext ctx = new LessContext(new LessOptions());
+    ctx.setCompiler(compiler);
+    try {
+      return compiler.compile(source, ctx, path.getParent(), path.getFileName(), false);
+    } catch (LessException e) {
+      return ErrorUtils.formatError(ctx, path, e, 4);
+    }
+  }
+
+  private static Path write(String text) throws IOException {
+    Path path = Files.createTempFile("mapped-source", ".less");
+    path.toFile().deleteOnExit();
+    Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Evaluates the same parsed stylesheets from multiple threads at once.
+ */
+public class ConcurrentEvaluationTest extends LessSuiteBase {
+
+  private static final int THREADS = 8;
+
+  private static final int ITERATIONS = 4;
+
+  @Test
+  public void testSharedParseTree() throws Exception {
+    Path lessRoot = testSuiteRoot().resolve("less");
+    LessCompiler compiler = new LessCompiler();
+    LessOptions opts = new LessOptions();
+    opts.addImportPath(lessRoot.toString());
+
+    // Parse each stylesheet once, and render it serially to obtain the expected output.
+    List<Stylesheet> sheets = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      LessContext ctx = compiler.context(opts);
+      try {
+        Stylesheet sheet = compiler.parse(source, ctx, lessRoot, lessPath.getFileName());
+        expected.add(compiler.render(sheet, compiler.context(opts)));
+        sheets.add(sheet);
+      } catch (LessException e) {
+        // Error cases are covered by the test suite.
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < ITERATIONS; j++) {
+            for (int k = 0; k < sheets.size(); k++) {
+              String actual = compiler.render(sheets.get(k), compiler.context(opts));
+              assertEquals(actual, expected.get(k));
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSharedWarnings() throws Exception {
+    // The mixin call leaves a warning pending, which is attached to the constant rule after it.
+    String source = ".n(@c) { }\n.a { .n(#888 + 1px); color: red; }\n";
+    LessCompiler compiler = new LessCompiler();
+    LessOptions[] options = new LessOptions[] { new LessOptions(), new LessOptions() };
+    options[0].strict(false);
+    options[1].strict(false);
+    options[1].hideWarnings(true);
+
+    Stylesheet sheet = compiler.parse(source, compiler.context(options[0]));
+    String[] expected = new String[2];
+    for (int i = 0; i < 2; i++) {
+      expected[i] = compiler.render(sheet, compiler.context(options[i]));
+    }
+    assertTrue(expected[0].contains("WARNING"));
+    assertEquals(expected[1], ".a {\n  color: red;\n}\n");
+
+    // Warnings are attached to a copy of the rule, never to the parsed rule.
+    Rule rule = (Rule)((Ruleset)sheet.block().rules().get(1)).block().rules().get(1);
+    assertNull(rule.warnings());
+
+    // Evaluations with and without warnings must not see each other's.
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        final int index = i % 2;
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < ITERATIONS * 64; j++) {
+            assertEquals(compiler.render(sheet, compiler.context(options[index])), expected[index]);
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertNull(rule.warnings());
+  }
+
+}
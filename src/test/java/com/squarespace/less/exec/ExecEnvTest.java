@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.GenericBlock;
+
+
+public class ExecEnvTest extends LessTestBase {
+
+  @Test
+  public void testCopy() throws LessException {
+    Definition outer = def("@a", anon("outer"));
+    Definition inner = def("@a", anon("inner"));
+    ExecEnv env = new LessContext().newEnv();
+    env.push(new GenericBlock(block(outer)));
+
+    // Pushing onto a copy leaves the original unchanged.
+    ExecEnv copy = env.copy();
+    copy.push(new GenericBlock(block(inner)));
+    assertEquals(copy.resolveDefinition("@a"), inner);
+    assertEquals(copy.depth(), 2);
+    assertEquals(env.resolveDefinition("@a"), outer);
+    assertEquals(env.depth(), 1);
+
+    copy.pop();
+    assertEquals(copy.resolveDefinition("@a"), outer);
+    assertNull(copy.resolveDefinition("@b"));
+  }
+
+  @Test
+  public void testAppend() throws LessException {
+    Block caller = block(def("@a", anon("caller")), def("@b", anon("caller")), def("@c", anon("caller")));
+    Block closureBottom = block(def("@a", anon("closure")), def("@b", anon("closure")));
+    Block closureTop = block(def("@a", anon("closure-top")));
+    Block bindings = block(def("@d", anon("bindings")));
+
+    LessContext ctx = new LessContext();
+    ExecEnv closure = ctx.newEnv();
+    closure.push(new GenericBlock(closureBottom));
+    closure.push(new GenericBlock(closureTop));
+
+    ExecEnv env = ctx.newEnv();
+    env.push(new GenericBlock(caller));
+    env.append(closure);
+    env.push(new GenericBlock(bindings));
+
+    // Frames are searched from the top: bindings, the closure, then the caller.
+    assertEquals(env.depth(), 4);
+    assertEquals(env.frames(), frames(caller, closureBottom, closureTop, bindings));
+    assertEquals(env.resolveDefinition("@a").value(), anon("closure-top"));
+    assertEquals(env.resolveDefinition("@b").value(), anon("closure"));
+    assertEquals(env.resolveDefinition("@c").value(), anon("caller"));
+    assertEquals(env.resolveDefinition("@d").value(), anon("bindings"));
+
+    // Popping removes one frame at a time, including the closure's frames.
+    env.pop();
+    env.pop();
+    assertEquals(env.frames(), frames(caller, closureBottom));
+    assertEquals(env.resolveDefinition("@a").value(), anon("closure"));
+    assertEquals(closure.resolveDefinition("@a").value(), anon("closure-top"));
+    env.pop();
+    assertEquals(env.resolveDefinition("@a").value(), anon("caller"));
+    env.pop();
+    assertEquals(env.depth(), 0);
+  }
+
+  private static FlexList<Block> frames(Block... blocks) {
+    FlexList<Block> result = new FlexList<>();
+    for (Block block : blocks) {
+      result.append(block);
+    }
+    return result;
+  }
+
+}
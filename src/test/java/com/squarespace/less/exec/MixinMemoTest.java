@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+
+
+public class MixinMemoTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testPure() throws LessException {
+    String source = ".m(@c) { color: darken(@c, 10%); &:hover { color: @c; } }\n"
+        + ".a { .m(#888); }\n.b { .m(#888); }\n.c { .m(#888) !important; }\n.d { .m(#777); }\n";
+    LessContext ctx = context(false);
+    assertEquals(COMPILER.compile(source, ctx), ".a{color:#6f6f6f}.a:hover{color:#888}"
+        + ".b{color:#6f6f6f}.b:hover{color:#888}"
+        + ".c{color:#6f6f6f !important}.c:hover{color:#888 !important}"
+        + ".d{color:#5e5e5e}.d:hover{color:#777}");
+
+    // Calls with equal arguments reuse the first call's rules.
+    assertEquals(ctx.stats().functionCalls(), 3);
+
+    // Tracing marks each call, so nothing is reused.
+    ctx = context(true);
+    COMPILER.compile(source, ctx);
+    assertEquals(ctx.stats().functionCalls(), 4);
+  }
+
+  @Test
+  public void testDefinitions() throws LessException {
+    String source = ".m(@a) { @x: (@a * 2); }\n"
+        + ".a { .m(1px); width: @x; }\n.b { .m(1px); height: @x; }\n";
+    assertEquals(COMPILER.compile(source, context(false)), ".a{width:2px}.b{height:2px}");
+  }
+
+  @Test
+  public void testArgumentTypes() throws LessException {
+    String source = ".m(@v) { content: @v; }\n"
+        + ".a { .m(\"x\"); }\n.b { .m(~\"x\"); }\n.c { .m(x); }\n";
+    assertEquals(COMPILER.compile(source, context(false)), ".a{content:\"x\"}.b{content:x}.c{content:x}");
+  }
+
+  @Test
+  public void testImpure() throws LessException {
+    // Reads a variable from the caller's scope.
+    String source = ".m() { width: @w; }\n"
+        + ".a { @w: 1px; .m(); }\n.b { @w: 2px; .m(); }\n";
+    assertEquals(COMPILER.compile(source, context(false)), ".a{width:1px}.b{width:2px}");
+
+    // Calls a mixin, which depends on the caller's scope.
+    source = ".m() { .n(); }\n"
+        + ".a { .n() { x: 1; } .m(); }\n.b { .n() { x: 2; } .m(); }\n";
+    assertEquals(COMPILER.compile(source, context(false)), ".a{x:1}.b{x:2}");
+
+    // Reads a variable from the caller's scope through one defined in the body.
+    source = ".m(@a) { @y: (@a + @w); width: @y; }\n"
+        + ".a { @w: 1px; .m(1px); }\n.b { @w: 2px; .m(1px); }\n";
+    assertEquals(COMPILER.compile(source, context(false)), ".a{width:2px}.b{width:3px}");
+  }
+
+  @Test
+  public void testWarnings() throws LessException {
+    // The arguments are equal, but only the call in .b raises a warning.
+    String a = ".a { .m(#898989); }\n";
+    String b = ".b { .m(#888 + 1px); }\n";
+    String mixin = ".m(@c) { color: @c; }\n";
+    String[] sources = new String[] { mixin + a + b, mixin + b + a };
+    for (String source : sources) {
+      LessOptions opts = new LessOptions();
+      opts.strict(false);
+      LessContext ctx = new LessContext(opts);
+      ctx.setCompiler(COMPILER);
+      String css = COMPILER.compile(source, ctx);
+      String ruleA = css.substring(css.indexOf(".a {"));
+      ruleA = ruleA.substring(0, ruleA.indexOf('}'));
+      String ruleB = css.substring(css.indexOf(".b {"));
+      ruleB = ruleB.substring(0, ruleB.indexOf('}'));
+      assertFalse(ruleA.contains("WARNING"), css);
+      assertTrue(ruleB.contains("WARNING"), css);
+    }
+  }
+
+  private static LessContext context(boolean tracing) {
+    LessOptions opts = new LessOptions(true);
+    opts.tracing(tracing);
+    LessContext ctx = new LessContext(opts);
+    ctx.setCompiler(COMPILER);
+    return ctx;
+  }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.jfr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.HashMapLessLoader;
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+
+public class LessEventTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testEvents() throws IOException, LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("base.less"), "@color: #abc;\n.m(@a) {\n  width: darken(@color, @a);\n}\n");
+    String source = "@import 'base.less';\n"
+        + ".x {\n  .m(10%);\n}\n";
+
+    String result = null;
+    Path dump = Files.createTempFile("less-events", ".jfr");
+    dump.toFile().deleteOnExit();
+    try (Recording recording = new Recording()) {
+      recording.enable(LessParseEvent.class);
+      recording.enable(LessImportEvent.class);
+      recording.enable(LessEvaluateEvent.class);
+      recording.enable(LessRenderEvent.class);
+      recording.enable(LessMixinCallEvent.class).withThreshold(null);
+      recording.start();
+
+      LessContext ctx = new LessContext(new LessOptions(true), new HashMapLessLoader(map));
+      ctx.setCompiler(COMPILER);
+      result = COMPILER.compile(source, ctx, path("."), path("main.less"), true);
+      assertEquals(result, ".x{width:#8aa2b9}");
+
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    Map<String, RecordedEvent> events = new HashMap<>();
+    List<RecordedEvent> recorded = RecordingFile.readAllEvents(dump);
+    for (RecordedEvent event : recorded) {
+      String name = event.getEventType().getName();
+      if (name.startsWith("com.squarespace.less.")) {
+        name = name.substring(21);
+        if (name.equals("Parse") && event.getInt("importDepth") > 0) {
+          name = "ImportParse";
+        }
+        assertFalse(events.containsKey(name), name);
+        events.put(name, event);
+      }
+    }
+
+    RecordedEvent parse = events.get("Parse");
+    assertEquals(parse.getString("path"), path("main.less").toString());
+    assertEquals(parse.getInt("size"), source.length());
+
+    parse = events.get("ImportParse");
+    assertEquals(parse.getString("path"), "base.less");
+    assertEquals(parse.getInt("size"), map.get(path("base.less")).length());
+    assertEquals(parse.getInt("importDepth"), 1);
+
+    RecordedEvent imp = events.get("Import");
+    assertEquals(imp.getString("path"), "base.less");
+    assertEquals(imp.getString("importedFrom"), path("main.less").toString());
+    assertEquals(imp.getInt("line"), 1);
+    assertEquals(imp.getInt("filesRead"), 1);
+
+    RecordedEvent eval = events.get("Evaluate");
+    assertEquals(eval.getString("path"), path("main.less").toString());
+    assertEquals(eval.getInt("mixinCalls"), 1);
+    assertEquals(eval.getInt("functionCalls"), 1);
+    assertTrue(eval.getInt("complexity") > 0);
+    assertFalse(eval.getBoolean("thresholdExceeded"));
+
+    RecordedEvent mixin = events.get("MixinCall");
+    assertEquals(mixin.getString("call"), ".m");
+    assertEquals(mixin.getInt("line"), 3);
+    assertEquals(mixin.getInt("matches"), 1);
+
+    RecordedEvent render = events.get("Render");
+    assertEquals(render.getInt("size"), result.length());
+    assertFalse(render.getBoolean("thresholdExceeded"));
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
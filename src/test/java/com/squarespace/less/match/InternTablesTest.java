@@ -0,0 +1,68 @@
+package com.squarespace.less.match;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.model.RGBColor;
+
+/**
+ * Pre-built intern pool table tests.
+ */
+public class InternTablesTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    InternTables expected = InternTables.build();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    expected.write(out);
+    InternTables actual = InternTables.read(out.toByteArray());
+
+    assertEquals(actual.colorsHexKeys, expected.colorsHexKeys);
+    assertEquals(actual.colorsHexValues, expected.colorsHexValues);
+    assertEquals(actual.colorsKeywordKeys, expected.colorsKeywordKeys);
+    assertEquals(actual.colorsKeywordNames, expected.colorsKeywordNames);
+    assertEquals(actual.colorsKeywordValues, expected.colorsKeywordValues);
+    assertEquals(actual.dimensions, expected.dimensions);
+    assertEquals(actual.dimensionValues, expected.dimensionValues);
+    assertEquals(actual.dimensionUnits, expected.dimensionUnits);
+    assertEquals(actual.elements, expected.elements);
+    assertEquals(actual.functions, expected.functions);
+    assertEquals(actual.keywords, expected.keywords);
+    assertEquals(actual.properties, expected.properties);
+    assertEquals(actual.colorNameIndex, expected.colorNameIndex);
+    assertEquals(actual.colorNames, expected.colorNames);
+    assertDatEquals(actual.colorsHexDat, expected.colorsHexDat);
+    assertDatEquals(actual.colorsKeywordDat, expected.colorsKeywordDat);
+    assertDatEquals(actual.dimensionsDat, expected.dimensionsDat);
+    assertDatEquals(actual.elementDat, expected.elementDat);
+    assertDatEquals(actual.functionsDat, expected.functionsDat);
+    assertDatEquals(actual.keywordDat, expected.keywordDat);
+    assertDatEquals(actual.propertyDat, expected.propertyDat);
+    assertDatEquals(actual.unitsDat, expected.unitsDat);
+
+    // Values are constructed from the loaded tables.
+    RGBColor[] colors = actual.colorsKeyword();
+    for (int i = 0; i < colors.length; i++) {
+      String key = actual.colorsKeywordKeys[i];
+      assertEquals(actual.colorsKeywordDat.get(key, 0, key.length()), i);
+      assertEquals(colors[i].keyword(), key.replace("gray", "grey"));
+    }
+  }
+
+  @Test
+  public void testVersion() {
+    assertNull(InternTables.read(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 }));
+  }
+
+  private static void assertDatEquals(DAT actual, DAT expected) {
+    assertEquals(actual.base, expected.base);
+    assertEquals(actual.check, expected.check);
+    assertEquals(actual.indices, expected.indices);
+  }
+
+}
@@ -4,9 +4,11 @@ import static com.squarespace.less.match.Recognizers.FAIL;
 import static com.squarespace.less.match.Recognizers.anon;
 import static com.squarespace.less.match.Recognizers.any;
 import static com.squarespace.less.match.Recognizers.cardinality;
+import static com.squarespace.less.match.Recognizers.charClass;
 import static com.squarespace.less.match.Recognizers.charRange;
 import static com.squarespace.less.match.Recognizers.characters;
 import static com.squarespace.less.match.Recognizers.choice;
+import static com.squarespace.less.match.Recognizers.compile;
 import static com.squarespace.less.match.Recognizers.decimal;
 import static com.squarespace.less.match.Recognizers.digit;
 import static com.squarespace.less.match.Recognizers.digits;
@@ -24,9 +26,14 @@ import static com.squarespace.less.match.Recognizers.whitespace;
 import static com.squarespace.less.match.Recognizers.zeroOrMore;
 import static com.squarespace.less.match.Recognizers.zeroOrOne;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
 
 import org.testng.annotations.Test;
 
+import com.squarespace.less.core.CharClass;
+
 public class RecognizersTest {
 
   @Test
@@ -188,6 +195,53 @@ public class RecognizersTest {
     assertEquals(match(pattern, "x"), 0);
   }
 
+  @Test
+  public void testCompile() {
+    Recognizer[] patterns = new Recognizer[] {
+      Recognizers.attributeKey(),
+      Recognizers.callName(),
+      Recognizers.element0(),
+      Recognizers.element1(),
+      Recognizers.element2(),
+      Recognizers.element3(),
+      Recognizers.escape(),
+      Recognizers.hexcolor(),
+      Recognizers.mixinName(),
+      Recognizers.property(),
+      Recognizers.shorthand(),
+      Recognizers.unicode(),
+      Recognizers.word(),
+      sequence(literal("url", true), zeroOrMore(whitespace()), literal("(")),
+      sequence(sequence(literal("a"), literal("b")), sequence(literal("c"), notAscii())),
+      cardinality(choice(digit(), characters('.'), notWhitespace()), 2, 5),
+      choice(oneOrMore(charRange('a', 'f')), sequence(any(), notCharacters('x')), zeroOrOne(hexdigit())),
+      lookAhead(zeroOrMore(characters('-'), 3))
+    };
+
+    // Compare against the original patterns at every position of random inputs.
+    String alphabet = "aAfxzU09-_.#:%\\ (),;!/@+*?=\t\n\u00a0\u2003\u00e9\u4e2d";
+    Random random = new Random(1);
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder buf = new StringBuilder();
+      int len = random.nextInt(24);
+      for (int j = 0; j < len; j++) {
+        buf.append(random.nextInt(8) == 0 ? "url" : alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String str = buf.toString();
+      for (Recognizer pattern : patterns) {
+        Recognizer compiled = compile(pattern);
+        for (int pos = 0; pos <= str.length(); pos++) {
+          assertEquals(match(compiled, pos, str), match(pattern, pos, str), str + " at " + pos);
+        }
+      }
+    }
+
+    // Repetitions of a character class are lowered to a table lookup.
+    assertTrue(compile(Recognizers.word()) instanceof Recognizers.CharTableSpan);
+    assertTrue(compile(oneOrMore(choice(digit(), charClass(CharClass.UPPERCASE, CharClass.CLASSIFIER))))
+        instanceof Recognizers.CharTableSpan);
+  }
+
   @Test
   public void testDecimal() {
 
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+
+public class ImportPrefetcherTest {
+
+  @Test
+  public void testScanImports() {
+    assertEquals(ImportPrefetcher.scanImports("@import 'a';"), Arrays.asList("a.less"));
+    assertEquals(ImportPrefetcher.scanImports("@import-once \"b.less\";"), Arrays.asList("b.less"));
+    assertEquals(ImportPrefetcher.scanImports("@import 'a'; .x { } @import 'c.less' screen;"),
+        Arrays.asList("a.less", "c.less"));
+
+    // Skipped: css, variables, comments, strings, unquoted urls
+    assertEquals(ImportPrefetcher.scanImports("@import 'a.css';"), Collections.emptyList());
+    assertEquals(ImportPrefetcher.scanImports("@import '@{dir}/a';"), Collections.emptyList());
+    assertEquals(ImportPrefetcher.scanImports("/* @import 'a'; */ // @import 'b';\n"), Collections.emptyList());
+    assertEquals(ImportPrefetcher.scanImports(".x { content: \"@import 'a';\"; }"), Collections.emptyList());
+    assertEquals(ImportPrefetcher.scanImports("@import url('a.less');"), Collections.emptyList());
+    assertEquals(ImportPrefetcher.scanImports("@import 'unterminated"), Collections.emptyList());
+  }
+
+}
@@ -21,6 +21,7 @@ import com.squarespace.less.SyntaxErrorType;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessMaker;
 import com.squarespace.less.model.Combinator;
+import com.squarespace.less.model.MixinCall;
 import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Operator;
 import com.squarespace.less.model.Rule;
@@ -957,6 +958,15 @@ public class LessParserTest extends LessMaker {
 
     t.ok("a{o:1;b{o:1}}", stylesheet(r1));
 
+    // =======
+    MixinCall c1 = mixincall(selector(element(null, ".m")), args(',', arg(quoted('"', false, ";{"))));
+    r1 = ruleset(selector(element(null, ".a")));
+    r1.add(r);
+    r1.add(mixincall(selector(element(null, ".n"))));
+
+    t.ok(".m(\";{\");.a{o:1;.n}", stylesheet(c1, r1));
+    t.ok(".m(\";{\") /* { */;.a /* ; */{o:1;.n}", stylesheet(c1, r1));
+
     t.fail("}}}\n", GENERAL);
     t.fail("@foo:}", GENERAL);
   }
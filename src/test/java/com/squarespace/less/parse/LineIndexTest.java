@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2014 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+
+public class LineIndexTest {
+
+  @Test
+  public void testOffsets() {
+    String raw = "a {\n  color: red;\n\n}\n";
+    LineIndex index = new LineIndex(raw);
+
+    int line = 0;
+    int column = 0;
+    for (int i = 0; i <= raw.length(); i++) {
+      int actual = index.line(i);
+      assertEquals(actual, line);
+      assertEquals(index.column(i, actual), column);
+      if (i < raw.length() && raw.charAt(i) == '\n') {
+        line++;
+        column = 0;
+      } else {
+        column++;
+      }
+    }
+  }
+
+  @Test
+  public void testManyLines() {
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      buf.append("x: ").append(i).append(";\n");
+    }
+    String raw = buf.toString();
+    LineIndex index = new LineIndex(raw);
+    for (int i = 0; i < 1000; i++) {
+      int offset = raw.indexOf("x: " + i + ";");
+      assertEquals(index.line(offset), i);
+      assertEquals(index.column(offset + 3, i), 3);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    LineIndex index = new LineIndex("");
+    assertEquals(index.line(0), 0);
+    assertEquals(index.column(0, 0), 0);
+  }
+
+}